@@ -1,78 +1,300 @@
 package com.asalmi.utilities_api.authentication;
 
 import com.asalmi.utilities_api.constants.Constants;
+import com.asalmi.utilities_api.model.ApiKeyIdentity;
+import com.asalmi.utilities_api.utils.Sha256Hasher;
 import com.asalmi.utilities_api.utils.Utils;
+import com.github.benmanes.caffeine.cache.AsyncLoadingCache;
+import com.github.benmanes.caffeine.cache.Cache;
 import com.github.benmanes.caffeine.cache.CacheLoader;
 import com.github.benmanes.caffeine.cache.Caffeine;
-import com.github.benmanes.caffeine.cache.LoadingCache;
+import com.github.benmanes.caffeine.cache.Expiry;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.Builder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.security.authentication.AuthenticationManager;
+import org.springframework.security.authentication.AuthenticationServiceException;
 import org.springframework.security.authentication.BadCredentialsException;
-import org.springframework.security.core.Authentication;
 import org.springframework.security.core.AuthenticationException;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.AuthorityUtils;
 
 import javax.sql.DataSource;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 /**
  * Handles authenticating API keys against the database.
+ *
+ * Authenticated keys are cached as tokens by their digest, so a request made
+ * with a recently used key is authenticated without looking it up again once
+ * the key has been hashed. Each request gets its own copy of the cached token.
+ *
+ * A cached token is only used until any key is removed from the store, after
+ * which the key is checked against the store again, so that a token can't
+ * outlive its key's revocation even if it was cached while the revocation was
+ * being applied.
  */
-public class ApiKeyAuthManager implements AuthenticationManager {
+public class ApiKeyAuthManager {
   private static final Logger log = LoggerFactory.getLogger(ApiKeyAuthManager.class);
 
-  private final LoadingCache<String, Boolean> keys;
+  private final AsyncLoadingCache<String, Boolean> keys;
+
+  private final Cache<DigestKey, CachedToken> tokens;
+
+  private final ApiKeyStore store;
+
+  private final List<String> defaultScopes;
+
+  private final Map<String, List<String>> consumerScopes;
+
+  private final long loadTimeoutMillis;
 
   /**
    * Constructor - loads API keys from database
+   *
+   * The cache holds at most maximumSize hashes. Valid keys expire after not
+   * being used for ttl, while invalid keys expire negativeTtl after being
+   * loaded, so that unknown keys cannot hold on to the cache for long. Tokens
+   * are rebuilt ttl after they are cached, even while in use. Cache statistics are published to the meter registry as "apikey.auth", and for
+   * the tokens as "apikey.token".
+   *
+   * Keys are loaded on loaderExecutor, and concurrent requests for the same key
+   * share a single load. A request waits at most loadTimeout for its key to be
+   * loaded, and each query is cancelled by the database after queryTimeout.
+   *
+   * Tokens are granted the consumer's scopes, or defaultScopes if the consumer
+   * has none.
    */
-  public ApiKeyAuthManager(DataSource dataSource) {
+  @Builder
+  public ApiKeyAuthManager(DataSource dataSource, ApiKeyStore store, MeterRegistry meterRegistry,
+      Executor loaderExecutor, long maximumSize, Duration ttl, Duration negativeTtl, Duration queryTimeout,
+      Duration loadTimeout, List<String> defaultScopes, Map<String, List<String>> consumerScopes) {
+    this.store = store;
+    this.defaultScopes = defaultScopes;
+    this.consumerScopes = consumerScopes;
+    this.loadTimeoutMillis = loadTimeout.toMillis();
     this.keys = Caffeine.newBuilder()
-        .expireAfterAccess(5, TimeUnit.MINUTES)
-        .build(new DatabaseCacheLoader(dataSource));
+        .maximumSize(maximumSize)
+        .expireAfter(new ValidityExpiry(ttl, negativeTtl))
+        .executor(loaderExecutor)
+        .recordStats()
+        .buildAsync(new DatabaseCacheLoader(dataSource, store, queryTimeout));
+    this.tokens = Caffeine.newBuilder()
+        .maximumSize(maximumSize)
+        .expireAfterWrite(ttl)
+        .recordStats()
+        .build();
+
+    CaffeineCacheMetrics.monitor(meterRegistry, keys, "apikey.auth");
+    CaffeineCacheMetrics.monitor(meterRegistry, tokens, "apikey.token");
+
+    // Revoked keys are dropped as soon as this instance learns about them
+    store.addRemovalListener(digest -> {
+      keys.synchronous().invalidate(Sha256Hasher.toLegacyHex(digest));
+      tokens.invalidate(new DigestKey(digest));
+    });
   }
 
   /**
-   * Compares provided API keys agains API keys in database
+   * Authenticates an API key by its digest. Throws BadCredentialsException if
+   * the key is invalid, and AuthenticationServiceException if it could not be
+   * validated.
    */
-  @Override
-  public Authentication authenticate(Authentication authentication) throws AuthenticationException {
-    String principal = (String) authentication.getPrincipal();
-
-    if (!keys.get(principal)) {
-      throw new BadCredentialsException("The API key was not found or not the expected value.");
-    } else {
-      authentication.setAuthenticated(true);
-      return authentication;
+  public ApiKeyAuthentication authenticate(byte[] digest) throws AuthenticationException {
+    CachedToken cached = tokens.getIfPresent(new DigestKey(digest));
+    if (cached != null && cached.removalGeneration() == store.removalGeneration()) {
+      return cached.token().copy();
     }
+
+    String apiKeyHash = Sha256Hasher.toLegacyHex(digest);
+    byte[] ownDigest = digest.clone();
+    DigestKey key = new DigestKey(ownDigest);
+    while (true) {
+      long removalGeneration = store.removalGeneration();
+      if (!isValid(digest, apiKeyHash)) {
+        throw new BadCredentialsException("The API key was not found or not the expected value.");
+      }
+
+      // Keys authenticated from the preloaded store may not be resolved yet, their
+      // tokens are only cached once they are
+      ApiKeyIdentity identity = store.getIdentity(digest);
+      if (identity == null) {
+        return new ApiKeyAuthentication(ownDigest, apiKeyHash, null, null, AuthorityUtils.NO_AUTHORITIES);
+      }
+
+      ApiKeyAuthentication token = new ApiKeyAuthentication(ownDigest, apiKeyHash, identity.getConsumer(),
+          identity.getApplication(), scopesFor(identity.getConsumer()));
+      cached = new CachedToken(token, removalGeneration);
+      tokens.put(key, cached);
+      // A removal after this check invalidates the token itself. One before it
+      // may have been this key's, which the token would otherwise outlive.
+      if (store.removalGeneration() == removalGeneration) {
+        return token.copy();
+      }
+      tokens.asMap().remove(key, cached);
+    }
+  }
+
+  private List<GrantedAuthority> scopesFor(String consumer) {
+    List<String> scopes = consumerScopes.getOrDefault(consumer, defaultScopes);
+    return AuthorityUtils.createAuthorityList(scopes.stream().map(scope -> "SCOPE_" + scope).toArray(String[]::new));
   }
 
   /**
-   * Caffeine CacheLoader that checks the database for the api key if it not found
-   * in the cache.
+   * Checks the preloaded API keys if they are available, otherwise falls back to
+   * the cache backed by the database. Keys that the bloom filter knows to be
+   * invalid are rejected without querying the database or taking a cache slot.
+   * If the database cannot be reached in time, or the loader's queue is full, the
+   * request is rejected.
+   */
+  private boolean isValid(byte[] digest, String apiKeyHash) {
+    if (store.isActive()) {
+      boolean authorized = store.isAuthorized(digest);
+      if (authorized && store.getIdentity(digest) == null) {
+        // The preloaded keys don't include their consumer, which rate limits need.
+        // It is loaded in the background, without holding up the request, and
+        // skipped if the loader is already busy.
+        try {
+          keys.synchronous().refresh(apiKeyHash);
+        } catch (RejectedExecutionException e) {
+          log.debug("Skipped loading the consumer of an API key, the loader is busy");
+        }
+      }
+      return authorized;
+    }
+    if (!store.mightBeAuthorized(digest)) {
+      return false;
+    }
+
+    // Keys already resolved by this instance, including through the validate
+    // endpoint, don't need to be loaded again
+    ApiKeyIdentity identity = store.getIdentity(digest);
+    if (identity != null) {
+      return Constants.APP_NAME.equals(identity.getApplication());
+    }
+
+    // Failed loads are not cached, so the next request for the key retries
+    try {
+      return keys.get(apiKeyHash).get(loadTimeoutMillis, TimeUnit.MILLISECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new AuthenticationServiceException("Interrupted while validating the API key.", e);
+    } catch (TimeoutException e) {
+      log.error("Timed out retrieving api key from database");
+      throw new AuthenticationServiceException("Timed out validating the API key.", e);
+    } catch (ExecutionException e) {
+      throw new AuthenticationServiceException("Unable to validate the API key.", e.getCause());
+    } catch (RejectedExecutionException e) {
+      log.warn("Rejected loading an api key from database, the loader is busy");
+      throw new AuthenticationServiceException("Too many API keys are being validated.", e);
+    }
+  }
+
+  /*
+   * A token, and the store's removal count when its key was last checked
+   */
+  private record CachedToken(ApiKeyAuthentication token, long removalGeneration) {
+  }
+
+  /**
+   * Caffeine Expiry that keeps valid keys cached while they are in use, and
+   * drops invalid keys after a fixed, shorter time
+   */
+  private static class ValidityExpiry implements Expiry<String, Boolean> {
+    private final long ttlNanos;
+    private final long negativeTtlNanos;
+
+    ValidityExpiry(Duration ttl, Duration negativeTtl) {
+      this.ttlNanos = ttl.toNanos();
+      this.negativeTtlNanos = negativeTtl.toNanos();
+    }
+
+    @Override
+    public long expireAfterCreate(String apiKeyHash, Boolean valid, long currentTime) {
+      return valid ? ttlNanos : negativeTtlNanos;
+    }
+
+    @Override
+    public long expireAfterUpdate(String apiKeyHash, Boolean valid, long currentTime, long currentDuration) {
+      return valid ? ttlNanos : negativeTtlNanos;
+    }
+
+    @Override
+    public long expireAfterRead(String apiKeyHash, Boolean valid, long currentTime, long currentDuration) {
+      return valid ? ttlNanos : currentDuration;
+    }
+  }
+
+  /**
+   * Caffeine CacheLoader that checks the database for the api key hash if it not
+   * found in the cache. The key's consumer and application are shared with the
+   * store. Errors are thrown rather than treated as an invalid key, so that they
+   * are not cached.
+   *
+   * A key removed while it is being loaded is only invalidated in the cache once
+   * the load has started, so the load would put it back. Loads that overlap a
+   * removal are run again, once the removal is visible in the database.
    */
   private static class DatabaseCacheLoader implements CacheLoader<String, Boolean> {
     private final DataSource dataSource;
+    private final ApiKeyStore store;
+    private final int queryTimeoutSeconds;
 
-    DatabaseCacheLoader(DataSource dataSource) {
+    DatabaseCacheLoader(DataSource dataSource, ApiKeyStore store, Duration queryTimeout) {
       this.dataSource = dataSource;
+      this.store = store;
+      // JDBC query timeouts are in whole seconds, rounded up so that the query
+      // gets at least the configured time
+      this.queryTimeoutSeconds = (int) Math.max((queryTimeout.toMillis() + 999) / 1000, 1);
     }
 
+    /**
+     * Loads the key by its legacy hash. Keys stored with canonical hashes enabled
+     * use the full hash, so both forms are looked up.
+     */
     @Override
-    public Boolean load(String key) throws Exception {
+    public Boolean load(String apiKeyHash) throws Exception {
+      byte[] digest = Utils.parseHash(apiKeyHash);
+
+      Boolean valid;
+      do {
+        valid = load(apiKeyHash, digest, store.removalGeneration());
+      } while (valid == null);
+      return valid;
+    }
+
+    /*
+     * Returns null if a key was removed during the load
+     */
+    private Boolean load(String apiKeyHash, byte[] digest, long removalGeneration) throws Exception {
       try (Connection conn = dataSource.getConnection()) {
         try (PreparedStatement ps = conn
-            .prepareStatement("SELECT * FROM api_keys WHERE api_key_hash = ? AND application = ?")) {
-          ps.setObject(1, new Utils().hashString(key));
-          ps.setObject(2, Constants.APP_NAME);
+            .prepareStatement("SELECT consumer, application, requests_per_minute FROM api_keys"
+                + " WHERE api_key_hash IN (?, ?)")) {
+          ps.setQueryTimeout(queryTimeoutSeconds);
+          ps.setObject(1, apiKeyHash);
+          ps.setObject(2, Sha256Hasher.toHex(digest));
 
           try (ResultSet rs = ps.executeQuery()) {
             if (rs.next()) {
-              // Valid API Key
-              return true;
+              // Existing API Key, valid if it was generated for this application
+              ApiKeyIdentity identity = new ApiKeyIdentity(rs.getString(1), rs.getString(2),
+                  rs.getObject(3, Integer.class));
+              if (!store.putIdentity(digest, identity, removalGeneration)) {
+                return null;
+              }
+              return Constants.APP_NAME.equals(identity.getApplication());
             } else {
               // Invalid API Key
               return false;
@@ -81,8 +303,8 @@ public class ApiKeyAuthManager implements AuthenticationManager {
         }
       } catch (Exception e) {
         log.error("An error occurred while retrieving api key from database", e);
-        return false;
+        throw e;
       }
     }
   }
-}
\ No newline at end of file
+}
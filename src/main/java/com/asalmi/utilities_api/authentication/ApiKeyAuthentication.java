@@ -0,0 +1,91 @@
+package com.asalmi.utilities_api.authentication;
+
+import java.util.Collection;
+
+import org.springframework.security.authentication.AbstractAuthenticationToken;
+import org.springframework.security.core.GrantedAuthority;
+
+/**
+ * Authentication for a request made with a valid API key.
+ *
+ * A token is cached for each key, and every request made with the key gets its
+ * own copy, so marking a request's token as not authenticated doesn't affect
+ * other requests, and neither does setting its details. It can't be marked as
+ * authenticated again. The principal is the key's consumer, the granted
+ * authorities are its scopes, and the key itself is only held as its legacy
+ * hash.
+ */
+public final class ApiKeyAuthentication extends AbstractAuthenticationToken {
+
+  private final byte[] digest;
+  private final String apiKeyHash;
+  private final String consumer;
+  private final String application;
+
+  /**
+   * Constructor - consumer and application are null for keys that were
+   * authenticated before they were resolved
+   */
+  public ApiKeyAuthentication(byte[] digest, String apiKeyHash, String consumer, String application,
+      Collection<? extends GrantedAuthority> scopes) {
+    super(scopes);
+    this.digest = digest;
+    this.apiKeyHash = apiKeyHash;
+    this.consumer = consumer;
+    this.application = application;
+    super.setAuthenticated(true);
+  }
+
+  /*
+   * Copy for a single request, with the same key, consumer and scopes
+   */
+  ApiKeyAuthentication copy() {
+    return new ApiKeyAuthentication(digest, apiKeyHash, consumer, application, getAuthorities());
+  }
+
+  /*
+   * The key's digest, which is shared and must not be modified
+   */
+  byte[] getDigest() {
+    return digest;
+  }
+
+  public String getApiKeyHash() {
+    return apiKeyHash;
+  }
+
+  public String getConsumer() {
+    return consumer;
+  }
+
+  public String getApplication() {
+    return application;
+  }
+
+  /**
+   * Whether the key's consumer and application are known
+   */
+  public boolean isResolved() {
+    return consumer != null;
+  }
+
+  @Override
+  public Object getPrincipal() {
+    return consumer;
+  }
+
+  @Override
+  public Object getCredentials() {
+    // No creds when using API key
+    return null;
+  }
+
+  @Override
+  public void setAuthenticated(boolean authenticated) {
+    if (authenticated) {
+      throw new IllegalArgumentException(
+          "Cannot set this token to trusted - use the constructor, which requires a valid API key");
+    }
+    super.setAuthenticated(false);
+  }
+}
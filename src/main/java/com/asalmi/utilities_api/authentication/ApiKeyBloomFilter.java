@@ -0,0 +1,82 @@
+package com.asalmi.utilities_api.authentication;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Bloom filter over SHA-256 API key digests, used to reject unknown API keys without
+ * querying the database.
+ *
+ * A negative answer is always correct, while a positive answer may be a false
+ * positive and must still be confirmed. Keys can be added concurrently with
+ * lookups, but never removed.
+ */
+public class ApiKeyBloomFilter {
+  private static final VarHandle LONGS = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.BIG_ENDIAN);
+
+  private final AtomicLongArray bits;
+  private final long bitCount;
+  private final int hashCount;
+
+  /**
+   * Constructor - sizes the filter for the expected number of keys and the
+   * acceptable false positive rate
+   */
+  public ApiKeyBloomFilter(long expectedKeys, double falsePositiveRate) {
+    long n = Math.max(expectedKeys, 1);
+    long m = (long) Math.ceil(-n * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+    int words = (int) Math.max((m + 63) / 64, 1);
+
+    this.bits = new AtomicLongArray(words);
+    this.bitCount = (long) words * 64;
+    this.hashCount = (int) Math.max(Math.round((double) bitCount / n * Math.log(2)), 1);
+  }
+
+  /**
+   * Adds an API key digest to the filter
+   */
+  public void add(byte[] digest) {
+    long h1 = hash1(digest);
+    long h2 = hash2(digest);
+    for (int i = 0; i < hashCount; i++) {
+      long bit = Math.floorMod(h1 + i * h2, bitCount);
+      int word = (int) (bit >>> 6);
+      long mask = 1L << bit;
+
+      long current = bits.get(word);
+      while ((current & mask) == 0 && !bits.compareAndSet(word, current, current | mask)) {
+        current = bits.get(word);
+      }
+    }
+  }
+
+  /**
+   * Checks whether an API key digest may have been added to the filter
+   */
+  public boolean mightContain(byte[] digest) {
+    long h1 = hash1(digest);
+    long h2 = hash2(digest);
+    for (int i = 0; i < hashCount; i++) {
+      long bit = Math.floorMod(h1 + i * h2, bitCount);
+      if ((bits.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /*
+   * The input is already a SHA-256 digest, so its bits are uniformly
+   * distributed and can be used as the hash functions directly
+   */
+  private static long hash1(byte[] digest) {
+    return (long) LONGS.get(digest, 0);
+  }
+
+  private static long hash2(byte[] digest) {
+    // Forced odd so the probes can never collapse onto a single bit
+    return (long) LONGS.get(digest, 8) | 1;
+  }
+}
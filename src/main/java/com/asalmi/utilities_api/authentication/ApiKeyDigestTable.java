@@ -0,0 +1,166 @@
+package com.asalmi.utilities_api.authentication;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.util.Collection;
+
+/**
+ * Immutable set of SHA-256 API key digests.
+ *
+ * Each digest is stored as four longs in an open addressing table, so the set
+ * holds no object per key. Tables are never modified after being built: adding
+ * or removing keys builds a new copy, which lets any number of threads read a
+ * table without locking.
+ */
+public final class ApiKeyDigestTable {
+  private static final int LONGS_PER_KEY = 4;
+  private static final int DIGEST_LENGTH = LONGS_PER_KEY * Long.BYTES;
+
+  private static final VarHandle LONGS = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.BIG_ENDIAN);
+
+  public static final ApiKeyDigestTable EMPTY = new ApiKeyDigestTable(1);
+
+  // A slot is empty when all four of its longs are zero, which no real digest is
+  private final long[] slots;
+  private final int mask;
+  private final int size;
+
+  private ApiKeyDigestTable(int capacity) {
+    this.slots = new long[capacity * LONGS_PER_KEY];
+    this.mask = capacity - 1;
+    this.size = 0;
+  }
+
+  private ApiKeyDigestTable(long[] slots, int size) {
+    this.slots = slots;
+    this.mask = slots.length / LONGS_PER_KEY - 1;
+    this.size = size;
+  }
+
+  /**
+   * Checks whether a digest is in the table
+   */
+  public boolean contains(byte[] digest) {
+    if (digest.length != DIGEST_LENGTH) {
+      return false;
+    }
+    long a = (long) LONGS.get(digest, 0);
+    long b = (long) LONGS.get(digest, 8);
+    long c = (long) LONGS.get(digest, 16);
+    long d = (long) LONGS.get(digest, 24);
+
+    return indexOf(slots, mask, a, b, c, d) >= 0;
+  }
+
+  /**
+   * Builds a copy of the table with the given digests added
+   */
+  public ApiKeyDigestTable withAll(Collection<byte[]> digests) {
+    if (digests.isEmpty()) {
+      return this;
+    }
+
+    long[] copy = new long[capacityFor(size + digests.size()) * LONGS_PER_KEY];
+    int copyMask = copy.length / LONGS_PER_KEY - 1;
+    int copySize = 0;
+
+    for (int slot = 0; slot < slots.length; slot += LONGS_PER_KEY) {
+      if (!isEmpty(slots, slot)) {
+        insert(copy, copyMask, slots[slot], slots[slot + 1], slots[slot + 2], slots[slot + 3]);
+        copySize++;
+      }
+    }
+    for (byte[] digest : digests) {
+      if (digest.length == DIGEST_LENGTH && insert(copy, copyMask, (long) LONGS.get(digest, 0),
+          (long) LONGS.get(digest, 8), (long) LONGS.get(digest, 16), (long) LONGS.get(digest, 24))) {
+        copySize++;
+      }
+    }
+
+    return new ApiKeyDigestTable(copy, copySize);
+  }
+
+  /**
+   * Builds a copy of the table without the given digests. The table itself is
+   * returned if none of them are in it.
+   */
+  public ApiKeyDigestTable withoutAll(Collection<byte[]> digests) {
+    if (digests.stream().noneMatch(this::contains)) {
+      return this;
+    }
+
+    ApiKeyDigestTable removed = EMPTY.withAll(digests);
+
+    long[] copy = new long[capacityFor(size) * LONGS_PER_KEY];
+    int copyMask = copy.length / LONGS_PER_KEY - 1;
+    int copySize = 0;
+
+    for (int slot = 0; slot < slots.length; slot += LONGS_PER_KEY) {
+      if (!isEmpty(slots, slot) && indexOf(removed.slots, removed.mask, slots[slot], slots[slot + 1],
+          slots[slot + 2], slots[slot + 3]) < 0) {
+        insert(copy, copyMask, slots[slot], slots[slot + 1], slots[slot + 2], slots[slot + 3]);
+        copySize++;
+      }
+    }
+
+    return new ApiKeyDigestTable(copy, copySize);
+  }
+
+  /**
+   * The number of digests in the table
+   */
+  public int size() {
+    return size;
+  }
+
+  /*
+   * Returns the position of the digest's slot, or -1 if it is not in the table
+   */
+  private static int indexOf(long[] slots, int mask, long a, long b, long c, long d) {
+    int index = (int) (a ^ (a >>> 32)) & mask;
+    while (true) {
+      int slot = index * LONGS_PER_KEY;
+      if (isEmpty(slots, slot)) {
+        return -1;
+      }
+      if (slots[slot] == a && slots[slot + 1] == b && slots[slot + 2] == c && slots[slot + 3] == d) {
+        return slot;
+      }
+      index = (index + 1) & mask;
+    }
+  }
+
+  /*
+   * Inserts the digest into the first free slot of its probe sequence, returning
+   * false if it was already present
+   */
+  private static boolean insert(long[] slots, int mask, long a, long b, long c, long d) {
+    int index = (int) (a ^ (a >>> 32)) & mask;
+    while (true) {
+      int slot = index * LONGS_PER_KEY;
+      if (isEmpty(slots, slot)) {
+        slots[slot] = a;
+        slots[slot + 1] = b;
+        slots[slot + 2] = c;
+        slots[slot + 3] = d;
+        return true;
+      }
+      if (slots[slot] == a && slots[slot + 1] == b && slots[slot + 2] == c && slots[slot + 3] == d) {
+        return false;
+      }
+      index = (index + 1) & mask;
+    }
+  }
+
+  private static boolean isEmpty(long[] slots, int slot) {
+    return (slots[slot] | slots[slot + 1] | slots[slot + 2] | slots[slot + 3]) == 0;
+  }
+
+  /*
+   * Keeps the table at most half full, so that probe sequences stay short
+   */
+  private static int capacityFor(int keys) {
+    return Integer.highestOneBit(Math.max(keys, 1) * 2 - 1) << 1;
+  }
+}
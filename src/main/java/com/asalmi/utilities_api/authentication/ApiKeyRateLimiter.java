@@ -0,0 +1,195 @@
+package com.asalmi.utilities_api.authentication;
+
+import com.asalmi.utilities_api.model.ApiKeyIdentity;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Per API key rate limits.
+ *
+ * Every key gets its own token bucket, which allows a burst of requests and
+ * then refills at a steady rate. The rate is the requests_per_minute of the
+ * key's row in api_keys, loaded by the store along with the key, so that it
+ * can be changed without a redeploy. Keys without one get the rate configured
+ * for their consumer with apikey.ratelimit.consumers.{consumer}, or else the
+ * default rate. When the store loads a changed limit, the key's bucket is
+ * replaced, keeping the requests already made against it. Buckets don't share any
+ * state, and each one is a single atomic updated with compare-and-set, so
+ * requests for different keys never contend and requests for the same key
+ * never block.
+ *
+ * Allowed and throttled requests are counted as "apikey.ratelimit.requests",
+ * tagged with the key's consumer and application.
+ */
+@Component
+public class ApiKeyRateLimiter {
+  private static final String UNKNOWN = "unknown";
+
+  private final boolean enabled;
+  private final long requestsPerMinute;
+  private final long burst;
+  private final Map<String, Long> consumerRequestsPerMinute;
+  private final ApiKeyStore store;
+  private final MeterRegistry meterRegistry;
+
+  // Buckets by digest, dropped once a key has been idle long enough to refill
+  private final Cache<DigestKey, TokenBucket> buckets;
+
+  @Autowired
+  public ApiKeyRateLimiter(ApiKeyStore store, MeterRegistry meterRegistry, Environment environment,
+      @Value("${apikey.ratelimit.enabled}") boolean enabled,
+      @Value("${apikey.ratelimit.requestsperminute}") long requestsPerMinute,
+      @Value("${apikey.ratelimit.burst}") long burst,
+      @Value("${apikey.ratelimit.maximumkeys}") long maximumKeys) {
+    this.enabled = enabled;
+    this.requestsPerMinute = requestsPerMinute;
+    this.burst = burst;
+    this.consumerRequestsPerMinute = Binder.get(environment)
+        .bind("apikey.ratelimit.consumers", Bindable.mapOf(String.class, Long.class))
+        .orElse(Map.of());
+    this.store = store;
+    this.meterRegistry = meterRegistry;
+    this.buckets = Caffeine.newBuilder()
+        .maximumSize(maximumKeys)
+        .expireAfter(new RefillExpiry())
+        .recordStats()
+        .build();
+
+    CaffeineCacheMetrics.monitor(meterRegistry, buckets, "apikey.ratelimit");
+  }
+
+  /**
+   * Takes a token from the API key's bucket. Returns zero if the request is
+   * allowed, otherwise how long the caller has to wait before the next request
+   * would be allowed, in nanoseconds. The digest is kept with the bucket, so it
+   * must not be modified afterwards.
+   */
+  public long tryAcquire(byte[] digest) {
+    if (!enabled) {
+      return 0;
+    }
+
+    DigestKey key = new DigestKey(digest);
+    TokenBucket bucket = buckets.get(key, this::newBucket);
+    // Keys authenticated from the preloaded store may only be resolved in the
+    // background, and limits can change, the bucket is replaced with the key's
+    // current limit once known
+    ApiKeyIdentity identity = store.getIdentity(digest);
+    if (identity != null && !Objects.equals(identity, bucket.identity)) {
+      TokenBucket resolved = new TokenBucket(identity, limitFor(identity), burst, meterRegistry);
+      resolved.inheritFrom(bucket);
+      if (buckets.asMap().replace(key, bucket, resolved)) {
+        bucket = resolved;
+      } else {
+        bucket = buckets.get(key, this::newBucket);
+      }
+    }
+
+    return bucket.tryAcquire(System.nanoTime());
+  }
+
+  private TokenBucket newBucket(DigestKey key) {
+    ApiKeyIdentity identity = store.getIdentity(key.digest());
+    return new TokenBucket(identity, limitFor(identity), burst, meterRegistry);
+  }
+
+  private long limitFor(ApiKeyIdentity identity) {
+    if (identity == null) {
+      return requestsPerMinute;
+    }
+    if (identity.getRequestsPerMinute() != null) {
+      return identity.getRequestsPerMinute();
+    }
+    return consumerRequestsPerMinute.getOrDefault(identity.getConsumer(), requestsPerMinute);
+  }
+
+  /**
+   * Caffeine Expiry that drops a bucket once it has been idle long enough to be
+   * full again, so dropping it doesn't let the key make any more requests
+   */
+  private static class RefillExpiry implements Expiry<DigestKey, TokenBucket> {
+    @Override
+    public long expireAfterCreate(DigestKey key, TokenBucket bucket, long currentTime) {
+      return bucket.refillNanos;
+    }
+
+    @Override
+    public long expireAfterUpdate(DigestKey key, TokenBucket bucket, long currentTime, long currentDuration) {
+      return bucket.refillNanos;
+    }
+
+    @Override
+    public long expireAfterRead(DigestKey key, TokenBucket bucket, long currentTime, long currentDuration) {
+      return bucket.refillNanos;
+    }
+  }
+
+  /**
+   * Token bucket kept as a single theoretical arrival time: the time at which
+   * the bucket would be full again if no more requests came in. A request is
+   * allowed if that time is at most a burst's worth of intervals in the future,
+   * and moves it one interval further.
+   */
+  private static class TokenBucket {
+    private final ApiKeyIdentity identity;
+    private final long intervalNanos;
+    private final long toleranceNanos;
+    private final long refillNanos;
+    private final AtomicLong arrival;
+    private final Counter allowed;
+    private final Counter throttled;
+
+    TokenBucket(ApiKeyIdentity identity, long requestsPerMinute, long burst, MeterRegistry meterRegistry) {
+      this.identity = identity;
+      this.intervalNanos = TimeUnit.MINUTES.toNanos(1) / Math.max(requestsPerMinute, 1);
+      this.toleranceNanos = intervalNanos * (Math.max(burst, 1) - 1);
+      this.refillNanos = intervalNanos * Math.max(burst, 1);
+      this.arrival = new AtomicLong(System.nanoTime());
+
+      String consumer = identity == null ? UNKNOWN : identity.getConsumer();
+      String application = identity == null ? UNKNOWN : identity.getApplication();
+      this.allowed = meterRegistry.counter("apikey.ratelimit.requests", "consumer", consumer,
+          "application", application, "result", "allowed");
+      this.throttled = meterRegistry.counter("apikey.ratelimit.requests", "consumer", consumer,
+          "application", application, "result", "throttled");
+    }
+
+    /*
+     * Carries over the requests already made against the bucket this one replaces
+     */
+    void inheritFrom(TokenBucket previous) {
+      arrival.set(previous.arrival.get());
+    }
+
+    long tryAcquire(long now) {
+      while (true) {
+        long current = arrival.get();
+        long start = current - now > 0 ? current : now;
+        long wait = start - now - toleranceNanos;
+        if (wait > 0) {
+          throttled.increment();
+          return wait;
+        }
+        if (arrival.compareAndSet(current, start + intervalNanos)) {
+          allowed.increment();
+          return 0;
+        }
+      }
+    }
+  }
+}
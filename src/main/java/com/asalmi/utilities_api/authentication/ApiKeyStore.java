@@ -0,0 +1,419 @@
+package com.asalmi.utilities_api.authentication;
+
+import com.asalmi.utilities_api.constants.Constants;
+import com.asalmi.utilities_api.model.ApiKeyChange;
+import com.asalmi.utilities_api.model.ApiKeyIdentity;
+import com.asalmi.utilities_api.utils.Utils;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * In-memory view of the API keys in the database, held as SHA-256 digests.
+ *
+ * When preloading is enabled, every key for this application is loaded from
+ * the database on startup and kept up to date by a scheduled delta refresh, so
+ * that authenticating a request never has to query the database. When the
+ * bloom filter is enabled, the same keys are also added to a bloom filter,
+ * which lets unknown keys be rejected without querying the database even when
+ * preloading is disabled. Rows whose hash can't be parsed are skipped.
+ *
+ * The store also caches the consumer, application and rate limit of recently
+ * used keys by their digest, which is shared by the authentication filter, the
+ * rate limiter and the validate endpoint, so that a key is only looked up in the
+ * database once.
+ * Preloaded keys for this application have theirs loaded along with them.
+ *
+ * Revoked keys are written to the api_key_changes table, which every instance
+ * polls, so that keys revoked on any instance are removed from the store and
+ * from the caches of every instance within one poll interval. Keys whose row
+ * was changed, such as their requests_per_minute, are logged as UPDATED, and
+ * are looked up again by every instance. Change rows whose hash can't be parsed
+ * are skipped too, so that they don't hold up the changes after them.
+ */
+@Component
+public class ApiKeyStore {
+  private static final Logger log = LoggerFactory.getLogger(ApiKeyStore.class);
+
+  private static final String SELECT_ALL = "SELECT api_key_hash, application, created_at, consumer, requests_per_minute"
+      + " FROM api_keys";
+  private static final String SELECT_SINCE = SELECT_ALL + " WHERE created_at >= ?";
+  private static final String SELECT_IDENTITY = "SELECT consumer, application, requests_per_minute FROM api_keys"
+      + " WHERE api_key_hash = ?";
+  private static final String SELECT_CHANGES_SINCE = "SELECT api_key_hash, change_type FROM api_key_changes"
+      + " WHERE created_at >= ?";
+
+  // Delta refreshes re-read this far behind the watermark, to pick up rows that
+  // were committed after newer rows had already been loaded
+  private static final Duration WATERMARK_OVERLAP = Duration.ofMinutes(1);
+
+  private final DataSource dataSource;
+  private final boolean preloadEnabled;
+  private final boolean bloomFilterEnabled;
+  private final long bloomFilterExpectedKeys;
+  private final double bloomFilterFalsePositiveRate;
+
+  // Keys with access to this application
+  private volatile ApiKeyDigestTable authorizedKeys = ApiKeyDigestTable.EMPTY;
+
+  // Replaced on every full load, so that it is sized for the number of keys
+  private volatile ApiKeyBloomFilter bloomFilter;
+
+  // Newest created_at loaded so far, used as the watermark for delta refreshes
+  private volatile LocalDateTime watermark;
+
+  // Newest change applied so far. Changes made before startup are already
+  // reflected in the api_keys table.
+  private volatile LocalDateTime changesWatermark = LocalDateTime.now();
+
+  // Set once the initial full load has succeeded
+  private volatile boolean loaded;
+
+  // Consumer and application of recently used keys, by digest, whichever form
+  // of hash the key is stored with
+  private final Cache<DigestKey, ApiKeyIdentity> identities;
+
+  // Called with the digest of every removed key
+  private final List<Consumer<byte[]>> removalListeners = new CopyOnWriteArrayList<>();
+
+  // Incremented before any key is removed, so that lookups that raced with a
+  // removal can tell that their result may be stale
+  private final AtomicLong removalGeneration = new AtomicLong();
+
+  // Serializes updates. A lock rather than synchronized, because refreshes hold
+  // it while querying the database, which would pin a virtual thread
+  private final ReentrantLock lock = new ReentrantLock();
+
+  @Autowired
+  public ApiKeyStore(DataSource dataSource,
+      @Value("${apikey.preload.enabled}") boolean preloadEnabled,
+      @Value("${apikey.bloomfilter.enabled}") boolean bloomFilterEnabled,
+      @Value("${apikey.bloomfilter.expectedkeys}") long bloomFilterExpectedKeys,
+      @Value("${apikey.bloomfilter.falsepositiverate}") double bloomFilterFalsePositiveRate,
+      @Value("${apikey.identitycache.maximumsize}") long identityCacheMaximumSize,
+      @Value("${apikey.identitycache.ttl}") long identityCacheTtl,
+      MeterRegistry meterRegistry) {
+    this.dataSource = dataSource;
+    this.preloadEnabled = preloadEnabled;
+    this.bloomFilterEnabled = bloomFilterEnabled;
+    this.bloomFilterExpectedKeys = bloomFilterExpectedKeys;
+    this.bloomFilterFalsePositiveRate = bloomFilterFalsePositiveRate;
+    this.identities = Caffeine.newBuilder()
+        .maximumSize(identityCacheMaximumSize)
+        .expireAfterWrite(Duration.ofMillis(identityCacheTtl))
+        .recordStats()
+        .build();
+
+    CaffeineCacheMetrics.monitor(meterRegistry, identities, "apikey.identity");
+  }
+
+  /**
+   * Loads every API key for this application on startup
+   */
+  @PostConstruct
+  public void preload() {
+    refresh();
+  }
+
+  /**
+   * Loads the API keys created since the last refresh. If the initial load
+   * failed, all keys are loaded again.
+   */
+  @Scheduled(fixedDelayString = "${apikey.preload.refreshinterval}", initialDelayString = "${apikey.preload.refreshinterval}")
+  public void refresh() {
+    lock.lock();
+    try {
+      if (!preloadEnabled && !bloomFilterEnabled) {
+        return;
+      }
+
+      LocalDateTime since = loaded ? watermark : null;
+      try (Connection conn = dataSource.getConnection()) {
+        try (PreparedStatement ps = conn.prepareStatement(since == null ? SELECT_ALL : SELECT_SINCE)) {
+          if (since != null) {
+            // Rows that were already loaded are read again, adding them a second time has
+            // no effect
+            ps.setTimestamp(1, Timestamp.valueOf(since.minus(WATERMARK_OVERLAP)));
+          }
+
+          int loadedKeys = 0;
+          List<byte[]> loadedAuthorizedKeys = new ArrayList<>();
+          LocalDateTime newest = since;
+          try (ResultSet rs = ps.executeQuery()) {
+            while (rs.next()) {
+              LocalDateTime createdAt = rs.getTimestamp(3).toLocalDateTime();
+              if (newest == null || createdAt.isAfter(newest)) {
+                newest = createdAt;
+              }
+
+              byte[] digest = parseHash(rs.getString(1));
+              if (digest == null) {
+                continue;
+              }
+              loadedKeys++;
+              if (Constants.APP_NAME.equals(rs.getString(2))) {
+                loadedAuthorizedKeys.add(digest);
+                identities.put(new DigestKey(digest),
+                    new ApiKeyIdentity(rs.getString(4), rs.getString(2), rs.getObject(5, Integer.class)));
+              }
+            }
+          }
+
+          if (since == null && bloomFilterEnabled) {
+            ApiKeyBloomFilter filter = new ApiKeyBloomFilter(
+                Math.max(bloomFilterExpectedKeys, 2L * loadedAuthorizedKeys.size()), bloomFilterFalsePositiveRate);
+            loadedAuthorizedKeys.forEach(filter::add);
+            bloomFilter = filter;
+          } else if (bloomFilter != null) {
+            loadedAuthorizedKeys.forEach(bloomFilter::add);
+          }
+          if (preloadEnabled) {
+            authorizedKeys = authorizedKeys.withAll(loadedAuthorizedKeys);
+          }
+
+          watermark = newest;
+          if (!loaded) {
+            loaded = true;
+            log.info("Loaded {} API keys", loadedKeys);
+          } else if (loadedKeys > 0) {
+            log.debug("Refreshed {} API keys", loadedKeys);
+          }
+        }
+      } catch (Exception e) {
+        log.error("An error occurred while loading api keys from database", e);
+      }
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Applies the API key changes made since the last poll, on any instance
+   */
+  @Scheduled(fixedDelayString = "${apikey.changes.pollinterval}", initialDelayString = "${apikey.changes.pollinterval}")
+  public void pollChanges() {
+    lock.lock();
+    try {
+      LocalDateTime since = changesWatermark;
+      LocalDateTime now = LocalDateTime.now();
+      try (Connection conn = dataSource.getConnection()) {
+        try (PreparedStatement ps = conn.prepareStatement(SELECT_CHANGES_SINCE)) {
+          // Changes that were already applied are read again, applying them a second
+          // time has no effect
+          ps.setTimestamp(1, Timestamp.valueOf(since.minus(WATERMARK_OVERLAP)));
+
+          List<byte[]> revokedKeys = new ArrayList<>();
+          List<String> updatedKeys = new ArrayList<>();
+          try (ResultSet rs = ps.executeQuery()) {
+            while (rs.next()) {
+              String apiKeyHash = rs.getString(1);
+              byte[] digest = parseHash(apiKeyHash);
+              if (digest == null) {
+                continue;
+              }
+              if (ApiKeyChange.Type.UPDATED.name().equals(rs.getString(2))) {
+                updatedKeys.add(apiKeyHash);
+              } else {
+                revokedKeys.add(digest);
+              }
+            }
+          }
+
+          removeAll(revokedKeys);
+          for (String apiKeyHash : updatedKeys) {
+            reloadIdentity(conn, apiKeyHash);
+          }
+          changesWatermark = now;
+        }
+      } catch (Exception e) {
+        log.error("An error occurred while loading api key changes from database", e);
+      }
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /*
+   * Looks up the identity of an updated key again. It is only cached if it was
+   * before, or if the key is preloaded, so updates don't fill the cache.
+   */
+  private void reloadIdentity(Connection conn, String apiKeyHash) throws SQLException {
+    byte[] digest = Utils.parseHash(apiKeyHash);
+    DigestKey key = new DigestKey(digest);
+    if (identities.getIfPresent(key) == null && !authorizedKeys.contains(digest)) {
+      return;
+    }
+
+    try (PreparedStatement ps = conn.prepareStatement(SELECT_IDENTITY)) {
+      ps.setString(1, apiKeyHash);
+      try (ResultSet rs = ps.executeQuery()) {
+        if (rs.next()) {
+          identities.put(key, new ApiKeyIdentity(rs.getString(1), rs.getString(2),
+              rs.getObject(3, Integer.class)));
+        } else {
+          identities.invalidate(key);
+        }
+      }
+    }
+  }
+
+  /**
+   * Removes a revoked API key, so that it can no longer be used on this instance
+   * before the next poll
+   */
+  public void remove(String apiKeyHash) {
+    byte[] digest = parseHash(apiKeyHash);
+    if (digest == null) {
+      return;
+    }
+
+    lock.lock();
+    try {
+      removeAll(List.of(digest));
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Registers a listener that is called with the digest of every API key that
+   * is removed, to invalidate caches outside of the store
+   */
+  public void addRemovalListener(Consumer<byte[]> listener) {
+    removalListeners.add(listener);
+  }
+
+  private void removeAll(List<byte[]> digests) {
+    if (digests.isEmpty()) {
+      return;
+    }
+
+    removalGeneration.incrementAndGet();
+    // Revoked keys can't be removed from the bloom filter, but they are no longer
+    // in the database once the change is visible, so they fail the database lookup
+    if (preloadEnabled) {
+      authorizedKeys = authorizedKeys.withoutAll(digests);
+    }
+    for (byte[] digest : digests) {
+      identities.invalidate(new DigestKey(digest));
+      removalListeners.forEach(listener -> listener.accept(digest));
+    }
+  }
+
+  /**
+   * Adds a newly generated API key, so that it can be used on this instance
+   * before the next refresh
+   */
+  public void add(String apiKeyHash, String consumer, String application) {
+    lock.lock();
+    try {
+      byte[] digest = Utils.parseHash(apiKeyHash);
+      boolean authorized = Constants.APP_NAME.equals(application);
+      identities.put(new DigestKey(digest), new ApiKeyIdentity(consumer, application));
+
+      if (preloadEnabled && authorized) {
+        authorizedKeys = authorizedKeys.withAll(List.of(digest));
+      }
+      ApiKeyBloomFilter filter = bloomFilter;
+      if (filter != null && authorized) {
+        filter.add(digest);
+      }
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Gets the cached consumer and application of an API key digest, or null if
+   * the key has not been looked up recently
+   */
+  public ApiKeyIdentity getIdentity(byte[] digest) {
+    return identities.getIfPresent(new DigestKey(digest));
+  }
+
+  /**
+   * Counts the removals so far. Read it before looking a key up in the database,
+   * and pass it to putIdentity.
+   */
+  public long removalGeneration() {
+    return removalGeneration.get();
+  }
+
+  /**
+   * Caches the consumer and application of an API key digest that was looked up
+   * in the database. If any key was removed since removalGeneration was read, the
+   * lookup may have raced with the key's revocation, so nothing is cached and
+   * false is returned.
+   */
+  public boolean putIdentity(byte[] digest, ApiKeyIdentity identity, long removalGeneration) {
+    DigestKey key = new DigestKey(digest.clone());
+    identities.put(key, identity);
+    // Checked after the put, a removal that comes later invalidates it anyway
+    if (this.removalGeneration.get() != removalGeneration) {
+      identities.invalidate(key);
+      return false;
+    }
+    return true;
+  }
+
+  /**
+   * Whether lookups can be answered from memory. This is false when preloading
+   * is disabled, or until the initial load has succeeded.
+   */
+  public boolean isActive() {
+    return preloadEnabled && loaded;
+  }
+
+  /**
+   * Checks whether an API key digest has access to this application
+   */
+  public boolean isAuthorized(byte[] digest) {
+    return authorizedKeys.contains(digest);
+  }
+
+  /*
+   * Parses the hash of an API key row, or returns null if it isn't a valid hash,
+   * so that one bad row doesn't stop the others from being loaded
+   */
+  private static byte[] parseHash(String apiKeyHash) {
+    try {
+      return Utils.parseHash(apiKeyHash);
+    } catch (RuntimeException e) {
+      log.warn("Skipped an API key with an invalid hash: {}", e.getMessage());
+      return null;
+    }
+  }
+
+  /**
+   * Checks whether an API key digest may have access to this application. A
+   * false result means the key is definitely unknown, a true result must still be
+   * confirmed against the database.
+   */
+  public boolean mightBeAuthorized(byte[] digest) {
+    ApiKeyBloomFilter filter = bloomFilter;
+    return filter == null || filter.mightContain(digest);
+  }
+}
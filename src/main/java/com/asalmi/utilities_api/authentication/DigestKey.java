@@ -0,0 +1,37 @@
+package com.asalmi.utilities_api.authentication;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+/**
+ * Cache key for an API key digest, compared by content. Lookups wrap the
+ * caller's digest, while stored keys own a digest that is never modified.
+ */
+final class DigestKey {
+  private static final VarHandle INTS = MethodHandles.byteArrayViewVarHandle(int[].class, ByteOrder.BIG_ENDIAN);
+
+  private final byte[] digest;
+  private final int hash;
+
+  DigestKey(byte[] digest) {
+    this.digest = digest;
+    // The digest is already uniformly distributed
+    this.hash = (int) INTS.get(digest, 0);
+  }
+
+  byte[] digest() {
+    return digest;
+  }
+
+  @Override
+  public int hashCode() {
+    return hash;
+  }
+
+  @Override
+  public boolean equals(Object other) {
+    return other instanceof DigestKey key && hash == key.hash && Arrays.equals(digest, key.digest);
+  }
+}
@@ -0,0 +1,59 @@
+package com.asalmi.utilities_api.authentication;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import com.asalmi.utilities_api.constants.Constants;
+import com.asalmi.utilities_api.model.ErrorResponse;
+import com.asalmi.utilities_api.utils.Utils;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+/**
+ * Rejects requests from API keys that are over their rate limit, with a 429
+ * and a Retry-After header. Runs after the authentication filter, whose tokens
+ * carry the digest of the API key.
+ */
+public class RateLimitFilter extends OncePerRequestFilter {
+
+  private final ApiKeyRateLimiter rateLimiter;
+
+  public RateLimitFilter(ApiKeyRateLimiter rateLimiter) {
+    this.rateLimiter = rateLimiter;
+  }
+
+  @Override
+  protected void doFilterInternal(HttpServletRequest req, HttpServletResponse res, FilterChain chain)
+      throws ServletException, IOException {
+    Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+
+    if (authentication instanceof ApiKeyAuthentication apiKeyAuthentication) {
+      long waitNanos = rateLimiter.tryAcquire(apiKeyAuthentication.getDigest());
+      if (waitNanos > 0) {
+        // Retry-After is in whole seconds, rounded up so that the retry is allowed
+        long retryAfter = Math.max((waitNanos + TimeUnit.SECONDS.toNanos(1) - 1) / TimeUnit.SECONDS.toNanos(1), 1);
+
+        res.setContentType("application/json;charset=UTF-8");
+        res.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+        res.setHeader(HttpHeaders.RETRY_AFTER, Long.toString(retryAfter));
+        PrintWriter writer = res.getWriter();
+        writer.print(Utils.serializeObject(new ErrorResponse(Constants.ERROR_CODE_TOO_MANY_REQUESTS)));
+        writer.flush();
+        writer.close();
+        return;
+      }
+    }
+
+    chain.doFilter(req, res);
+  }
+}
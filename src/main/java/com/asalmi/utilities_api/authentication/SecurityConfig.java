@@ -1,14 +1,34 @@
 package com.asalmi.utilities_api.authentication;
 
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
 import javax.sql.DataSource;
 
+import com.zaxxer.hikari.HikariDataSource;
+
+import jakarta.annotation.PreDestroy;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
 import org.springframework.security.config.http.SessionCreationPolicy;
 import org.springframework.security.web.SecurityFilterChain;
+import org.springframework.security.web.authentication.preauth.AbstractPreAuthenticatedProcessingFilter;
 
 @Configuration
 @EnableWebSecurity
@@ -17,20 +37,104 @@ public class SecurityConfig {
   @Autowired
   private DataSource dataSource;
 
+  @Autowired
+  private ApiKeyStore apiKeyStore;
+
+  @Autowired
+  private MeterRegistry meterRegistry;
+
+  @Autowired
+  private ApiKeyRateLimiter apiKeyRateLimiter;
+
+  @Value("${apikey.cache.maximumsize}")
+  private long cacheMaximumSize;
+
+  @Value("${apikey.cache.ttl}")
+  private long cacheTtl;
+
+  @Value("${apikey.cache.negativettl}")
+  private long cacheNegativeTtl;
+
+  @Value("${apikey.loader.threads}")
+  private int loaderThreads;
+
+  @Value("${apikey.loader.queuesize}")
+  private int loaderQueueSize;
+
+  @Value("${apikey.loader.querytimeout}")
+  private long loaderQueryTimeout;
+
+  @Value("${apikey.loader.timeout}")
+  private long loaderTimeout;
+
+  @Value("${apikey.scopes}")
+  private List<String> defaultScopes;
+
+  @Autowired
+  private Environment environment;
+
+  private ThreadPoolExecutor loaderExecutor;
+
   @Bean
   public SecurityFilterChain filterChain(HttpSecurity http) throws Exception {
-    AuthenticationFilter filter = new AuthenticationFilter();
-    filter.setAuthenticationManager(new ApiKeyAuthManager(dataSource));
+    loaderExecutor = loaderExecutor();
+    ApiKeyAuthManager authManager = ApiKeyAuthManager.builder()
+        .dataSource(dataSource)
+        .store(apiKeyStore)
+        .meterRegistry(meterRegistry)
+        .loaderExecutor(loaderExecutor)
+        .maximumSize(cacheMaximumSize)
+        .ttl(Duration.ofMillis(cacheTtl))
+        .negativeTtl(Duration.ofMillis(cacheNegativeTtl))
+        .queryTimeout(Duration.ofMillis(loaderQueryTimeout))
+        .loadTimeout(Duration.ofMillis(loaderTimeout))
+        .defaultScopes(defaultScopes)
+        .consumerScopes(Binder.get(environment)
+            .bind("apikey.consumerscopes", Bindable.mapOf(String.class, String[].class))
+            .map(scopes -> scopes.entrySet().stream()
+                .collect(Collectors.toMap(Map.Entry::getKey, entry -> List.of(entry.getValue()))))
+            .orElse(Map.of()))
+        .build();
+    CustomAuthenticationEntryPoint entryPoint = new CustomAuthenticationEntryPoint();
+    ApiKeyAuthenticationFilter filter = new ApiKeyAuthenticationFilter(authManager, entryPoint, meterRegistry);
 
     http.csrf(csrf -> csrf.disable())
         .cors(cors -> cors.getClass())
         .authorizeHttpRequests(authorizeRequests -> authorizeRequests.anyRequest().authenticated())
         .sessionManagement(
             sessionManagement -> sessionManagement.sessionCreationPolicy(SessionCreationPolicy.STATELESS))
-        .addFilter(filter)
-        .exceptionHandling(handling -> handling.authenticationEntryPoint(new CustomAuthenticationEntryPoint()));
+        .addFilterAt(filter, AbstractPreAuthenticatedProcessingFilter.class)
+        .addFilterAfter(new RateLimitFilter(apiKeyRateLimiter), ApiKeyAuthenticationFilter.class)
+        .exceptionHandling(handling -> handling.authenticationEntryPoint(entryPoint));
 
     return http.build();
   }
 
-}
\ No newline at end of file
+  @PreDestroy
+  public void shutdown() {
+    if (loaderExecutor != null) {
+      loaderExecutor.shutdownNow();
+    }
+  }
+
+  /**
+   * Executor for loading API keys from the database. It never uses more threads
+   * than there are connections in the pool, and once its queue is full further
+   * loads fail, which rejects the request instead of waiting for a connection.
+   * It is shut down with the application context.
+   */
+  private ThreadPoolExecutor loaderExecutor() {
+    int threads = loaderThreads;
+    if (dataSource instanceof HikariDataSource hikariDataSource) {
+      threads = Math.min(threads, hikariDataSource.getMaximumPoolSize());
+    }
+
+    CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("apikey-loader-");
+    threadFactory.setDaemon(true);
+
+    ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+        new ArrayBlockingQueue<>(loaderQueueSize), threadFactory);
+    executor.allowCoreThreadTimeOut(true);
+    return executor;
+  }
+}
@@ -0,0 +1,92 @@
+package com.asalmi.utilities_api.config;
+
+import java.time.Duration;
+
+import com.zaxxer.hikari.HikariDataSource;
+
+import io.netty.channel.ChannelOption;
+import io.r2dbc.spi.ConnectionFactory;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+/**
+ * Non-blocking clients for the reactive contact pipeline, enabled with the
+ * reactive profile.
+ *
+ * The database is reached through R2DBC, with the connection pool configured
+ * by the spring.r2dbc properties, and the SendGrid API through a WebClient
+ * using the same pool size, timeouts and base URL as the blocking transport.
+ *
+ * Spring Boot only configures a JDBC data source when there is no R2DBC
+ * connection factory, so it is defined here for the blocking repositories,
+ * which are still used by the API key and scheduler services.
+ */
+@Configuration
+@Profile("reactive")
+@EnableConfigurationProperties(DataSourceProperties.class)
+public class ReactiveConfig {
+
+  @Value("${sendgrid.apikey}")
+  private String apiKey;
+
+  @Value("${sendgrid.baseurl}")
+  private String baseUrl;
+
+  @Value("${sendgrid.http.maxconnections}")
+  private int maxConnections;
+
+  @Value("${sendgrid.http.connectionrequesttimeout}")
+  private long connectionRequestTimeout;
+
+  @Value("${sendgrid.http.connecttimeout}")
+  private int connectTimeout;
+
+  @Value("${sendgrid.http.readtimeout}")
+  private long readTimeout;
+
+  @Value("${sendgrid.http.keepalive}")
+  private long keepAlive;
+
+  @Bean
+  @ConfigurationProperties("spring.datasource.hikari")
+  public HikariDataSource dataSource(DataSourceProperties properties) {
+    return properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+  }
+
+  @Bean
+  public DatabaseClient databaseClient(ConnectionFactory connectionFactory) {
+    return DatabaseClient.create(connectionFactory);
+  }
+
+  @Bean
+  public WebClient sendGridWebClient(WebClient.Builder builder) {
+    ConnectionProvider connectionProvider = ConnectionProvider.builder("sendgrid")
+        .maxConnections(maxConnections)
+        .pendingAcquireTimeout(Duration.ofMillis(connectionRequestTimeout))
+        .maxIdleTime(Duration.ofMillis(keepAlive))
+        .build();
+
+    HttpClient httpClient = HttpClient.create(connectionProvider)
+        .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, connectTimeout)
+        .responseTimeout(Duration.ofMillis(readTimeout));
+
+    return builder
+        .baseUrl(baseUrl + "/v3")
+        .defaultHeader(HttpHeaders.AUTHORIZATION, "Bearer " + apiKey)
+        .clientConnector(new ReactorClientHttpConnector(httpClient))
+        .build();
+  }
+}
@@ -0,0 +1,120 @@
+package com.asalmi.utilities_api.config;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.concurrent.TimeUnit;
+
+import com.sendgrid.Client;
+import com.sendgrid.Request;
+import com.sendgrid.Response;
+import com.sendgrid.SendGrid;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * HTTP transport for the SendGrid API.
+ *
+ * All calls share one pool of keep-alive connections, so a call normally
+ * reuses an open connection, and its TLS session, instead of opening a new
+ * one. Idle connections are closed after the keep-alive time, and every call
+ * is bounded by the pool, connect and read timeouts. The base URL can point at
+ * any server, and plain http is used when it isn't https.
+ *
+ * Calls are timed as "sendgrid.requests", tagged with the response status.
+ */
+@Configuration
+public class SendGridConfig {
+
+  @Autowired
+  private MeterRegistry meterRegistry;
+
+  @Value("${sendgrid.apikey}")
+  private String apiKey;
+
+  @Value("${sendgrid.baseurl}")
+  private String baseUrl;
+
+  @Value("${sendgrid.http.maxconnections}")
+  private int maxConnections;
+
+  @Value("${sendgrid.http.connectionrequesttimeout}")
+  private int connectionRequestTimeout;
+
+  @Value("${sendgrid.http.connecttimeout}")
+  private int connectTimeout;
+
+  @Value("${sendgrid.http.readtimeout}")
+  private int readTimeout;
+
+  @Value("${sendgrid.http.keepalive}")
+  private long keepAlive;
+
+  @Bean(destroyMethod = "close")
+  public CloseableHttpClient sendGridHttpClient() {
+    // All calls go to the same host, so it can use every pooled connection
+    PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager(keepAlive,
+        TimeUnit.MILLISECONDS);
+    connectionManager.setMaxTotal(maxConnections);
+    connectionManager.setDefaultMaxPerRoute(maxConnections);
+    connectionManager.setValidateAfterInactivity(1000);
+
+    RequestConfig requestConfig = RequestConfig.custom()
+        .setConnectionRequestTimeout(connectionRequestTimeout)
+        .setConnectTimeout(connectTimeout)
+        .setSocketTimeout(readTimeout)
+        .build();
+
+    return HttpClients.custom()
+        .setConnectionManager(connectionManager)
+        .setDefaultRequestConfig(requestConfig)
+        .setKeepAliveStrategy((response, context) -> keepAlive)
+        .evictExpiredConnections()
+        .evictIdleConnections(keepAlive, TimeUnit.MILLISECONDS)
+        .build();
+  }
+
+  @Bean
+  public SendGrid sendGrid(CloseableHttpClient sendGridHttpClient) {
+    URI uri = URI.create(baseUrl);
+    boolean plainHttp = !"https".equalsIgnoreCase(uri.getScheme());
+
+    SendGrid sendGrid = new SendGrid(apiKey, new TimedClient(sendGridHttpClient, plainHttp, meterRegistry));
+    sendGrid.setHost(uri.getAuthority());
+    return sendGrid;
+  }
+
+  /**
+   * Client recording how long every call to the SendGrid API takes
+   */
+  private static class TimedClient extends Client {
+    private final MeterRegistry meterRegistry;
+
+    TimedClient(CloseableHttpClient httpClient, boolean plainHttp, MeterRegistry meterRegistry) {
+      super(httpClient, plainHttp);
+      this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    public Response api(Request request) throws IOException {
+      Timer.Sample sample = Timer.start(meterRegistry);
+      String status = "IOException";
+      try {
+        Response response = super.api(request);
+        status = Integer.toString(response.getStatusCode());
+        return response;
+      } finally {
+        sample.stop(meterRegistry.timer("sendgrid.requests", "status", status));
+      }
+    }
+  }
+}
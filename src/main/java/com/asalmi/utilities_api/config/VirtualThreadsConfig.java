@@ -0,0 +1,70 @@
+package com.asalmi.utilities_api.config;
+
+import javax.sql.DataSource;
+
+import com.asalmi.utilities_api.utils.VirtualThreads;
+import com.zaxxer.hikari.HikariDataSource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.task.TaskSchedulerBuilder;
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+
+/**
+ * Runs request handling and scheduled jobs on virtual threads, when
+ * threads.virtual.enabled is set. Requires Java 21 or later.
+ *
+ * Work that is blocked on JDBC or HTTP then no longer holds one of a fixed
+ * number of platform threads, so the connection pools become the limit on
+ * concurrency instead of Tomcat's thread pool. A virtual thread that blocks
+ * inside a synchronized block pins its carrier thread though, and the MySQL
+ * driver synchronizes on the connection for every call. At most one thread
+ * uses a pooled connection at a time, so the carrier threads should be sized
+ * to the available processors plus the size of the connection pool, leaving
+ * carriers free even when every connection is in use. The JDK reads the number
+ * of carrier threads when the first virtual thread starts, which may be before
+ * this configuration is created, so it has to be set as a JVM option, with
+ * -Djdk.virtualThreadScheduler.parallelism. A warning is logged when it isn't.
+ */
+@Configuration
+@ConditionalOnProperty(name = "threads.virtual.enabled", havingValue = "true")
+public class VirtualThreadsConfig {
+
+  private static final Logger log = LoggerFactory.getLogger(VirtualThreadsConfig.class);
+
+  private static final String PARALLELISM = "jdk.virtualThreadScheduler.parallelism";
+
+  public VirtualThreadsConfig(DataSource dataSource) {
+    if (!VirtualThreads.isSupported()) {
+      throw new IllegalStateException("threads.virtual.enabled requires Java 21 or later, running on Java "
+          + Runtime.version().feature());
+    }
+
+    if (dataSource instanceof HikariDataSource hikari) {
+      int parallelism = Runtime.getRuntime().availableProcessors() + hikari.getMaximumPoolSize();
+      String configured = System.getProperty(PARALLELISM);
+      if (configured == null) {
+        log.warn("{} is not set, so virtual threads that are pinned while using a connection can use up every "
+            + "carrier thread. Start the JVM with -D{}={}", PARALLELISM, PARALLELISM, parallelism);
+      } else {
+        log.info("Using {} carrier threads for virtual threads, {} recommended", configured, parallelism);
+      }
+    }
+  }
+
+  @Bean
+  public TomcatProtocolHandlerCustomizer<?> virtualThreadsProtocolHandlerCustomizer() {
+    return protocolHandler -> protocolHandler.setExecutor(VirtualThreads.newPerTaskExecutor("tomcat-handler-"));
+  }
+
+  @Bean
+  public ThreadPoolTaskScheduler taskScheduler(TaskSchedulerBuilder builder) {
+    ThreadPoolTaskScheduler taskScheduler = builder.build();
+    taskScheduler.setThreadFactory(VirtualThreads.factory(taskScheduler.getThreadNamePrefix()));
+    return taskScheduler;
+  }
+}
@@ -10,6 +10,12 @@ public class Constants {
   // Header name where the API Key must be passed
   public static final String API_KEY_HEADER = "x-api-key";
 
+  // Header name where a contact request's idempotency key can be passed
+  public static final String IDEMPOTENCY_KEY_HEADER = "Idempotency-Key";
+
+  // Header name where the cursor of the next page of contact requests is returned
+  public static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+
   // Success messaging
   public static final Integer SUCCESS_CODE = 2000;
   public static final String SUCCESS_MESSAGE = "Success";
@@ -18,6 +24,7 @@ public class Constants {
   // Sendgrid related values
   public static final Integer SENDGRID_SEND_SUCCESS_CODE = 202;
   public static final String SENDGRID_ENDPOINT = "mail/send";
+  public static final Integer SENDGRID_MAX_PERSONALIZATIONS = 1000;
   public static final String SENDGRID_PERSONALIZATION_NAME = "name";
   public static final String SENDGRID_PERSONALIZATION_EMAIL = "email";
   public static final String SENDGRID_PERSONALIZATION_MESSAGE = "message";
@@ -34,12 +41,14 @@ public class Constants {
   public static final Integer ERROR_CODE_DEFAULT = 9999;
   public static final Integer ERROR_CODE_BAD_REQUEST = 4000;
   public static final Integer ERROR_CODE_NOT_FOUND = 4004;
+  public static final Integer ERROR_CODE_TOO_MANY_REQUESTS = 4029;
 
   // 6xxx errors: Database related errors
   public static final Integer ERROR_CODE_DATABASE_SAVE_CR = 6000;
   public static final Integer ERROR_CODE_DATABASE_FETCH_CR = 6001;
   public static final Integer ERROR_CODE_DATABASE_SAVE_API_KEY = 6002;
   public static final Integer ERROR_CODE_DATABASE_FETCH_API_KEY = 6003;
+  public static final Integer ERROR_CODE_DATABASE_REVOKE_API_KEY = 6004;
 
   // 7xxx errors: External API errors
   public static final Integer ERROR_CODE_SENDGRID_SEND_ERROR = 7000;
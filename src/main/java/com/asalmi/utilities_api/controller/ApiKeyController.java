@@ -4,6 +4,7 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.CrossOrigin;
+import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
@@ -76,4 +77,27 @@ public class ApiKeyController {
     // If success, send success response
     return ResponseEntity.status(HttpStatus.OK).body(result);
   }
+
+  /**
+   * Revokes an API Key
+   * 
+   * @param {String} The API Key to be revoked
+   * @return Custom Response with success or failure message
+   */
+  @DeleteMapping("/revoke/{apiKey}")
+  public ResponseEntity<CustomResponse> revoke(@PathVariable("apiKey") String apiKey)
+      throws UtilitiesApiException {
+
+    // Call the apiKeyService to revoke the key
+    CustomResponse result = apiKeyService.revoke(apiKey);
+
+    // If an error occurred, send an error response
+    if (result.hasError()) {
+      ErrorResponse errorResponse = (ErrorResponse) result;
+      return ResponseEntity.status(HttpStatus.valueOf(errorResponse.getHttpStatus())).body(result);
+    }
+
+    // If success, send success response
+    return ResponseEntity.status(HttpStatus.OK).body(result);
+  }
 }
@@ -1,52 +1,80 @@
 package com.asalmi.utilities_api.controller;
 
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.zip.GZIPOutputStream;
 
+import com.asalmi.utilities_api.constants.Constants;
 import com.asalmi.utilities_api.exception.UtilitiesApiException;
-import com.asalmi.utilities_api.model.ContactRequest;
+import com.asalmi.utilities_api.model.ContactExportFormat;
 import com.asalmi.utilities_api.model.ContactRequestBody;
+import com.asalmi.utilities_api.model.ContactRequestPage;
+import com.asalmi.utilities_api.model.ContactRequestView;
 import com.asalmi.utilities_api.model.CustomResponse;
 import com.asalmi.utilities_api.model.ErrorResponse;
+import com.asalmi.utilities_api.model.RenderedContactRequest;
 import com.asalmi.utilities_api.service.IContactService;
+import com.asalmi.utilities_api.service.serviceImpl.ContactRequestDeduplicator;
+import com.asalmi.utilities_api.service.serviceImpl.ContactRequestResponseCache;
 
 import jakarta.validation.Valid;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.CrossOrigin;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 /**
- * Controller class for Contact Request operations
+ * Controller class for Contact Request operations, replaced by the Reactive
+ * Contact Controller in the reactive profile
  */
 @RestController
-@CrossOrigin("${cors.whitelist.contactcontroller}")
+@Profile("!reactive")
+@CrossOrigin(origins = "${cors.whitelist.contactcontroller}", exposedHeaders = { Constants.NEXT_CURSOR_HEADER,
+    HttpHeaders.ETAG })
 @RequestMapping("/contact")
 public class ContactController {
 
   @Autowired
   private IContactService contactService;
 
+  @Autowired
+  private ContactRequestDeduplicator deduplicator;
+
+  @Autowired
+  private ContactRequestResponseCache responseCache;
+
   /**
    * Send a contact request to Alex Salmi, and a confirmation email to the sender
    * 
    * @param {ContactRequestBody} The request body, including the sender's email,
    *                             name, message, and phone number (optional)
+   * @param {String}             (Optional) Idempotency key, retries with the
+   *                             same key are only sent once
    * @return Custom Response with success or failure message
    */
   @PostMapping("/send")
-  public ResponseEntity<CustomResponse> send(@Valid @RequestBody ContactRequestBody request)
+  public ResponseEntity<CustomResponse> send(@Valid @RequestBody ContactRequestBody request,
+      @RequestHeader(name = Constants.IDEMPOTENCY_KEY_HEADER, required = false) String idempotencyKey)
       throws UtilitiesApiException {
 
-    // Call the ContactService to send the contact request
-    CustomResponse result = contactService.send(request);
+    // Call the ContactService to send the contact request, unless it was already
+    // sent
+    CustomResponse result = deduplicator.send(request, idempotencyKey, () -> contactService.send(request));
 
     // If an error occurred, send an error response
     if (result.hasError()) {
@@ -59,36 +87,106 @@ public class ContactController {
   }
 
   /**
-   * Get contact requests from the database
+   * Get a page of contact requests from the database. The cursor of the next
+   * page is returned in the X-Next-Cursor header, if there is one.
    * 
-   * @param {String} (Optional) Email address
+   * @param {String}        (Optional) Email address
+   * @param {LocalDateTime} (Optional) Only contact requests created at or after
+   * @param {LocalDateTime} (Optional) Only contact requests created before
+   * @param {String}        (Optional) Cursor of the page, from the previous page
+   * @param {Integer}       (Optional) Maximum number of contact requests
    * @return List of contact request entries
    */
   @GetMapping("/get")
-  public ResponseEntity<List<ContactRequest>> get(@RequestParam(required = false) String email)
+  public ResponseEntity<List<ContactRequestView>> get(@RequestParam(required = false) String email,
+      @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+      @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+      @RequestParam(required = false) String cursor,
+      @RequestParam(required = false) Integer limit)
       throws UtilitiesApiException {
 
     // Call the ContactService to get the contact requests
-    List<ContactRequest> result = contactService.get(email);
+    ContactRequestPage result = contactService.get(email, from, to, cursor, limit);
 
-    // Send the fetched contact requests in the response
-    return ResponseEntity.status(HttpStatus.OK).body(result);
+    // Send the fetched contact requests in the response, and where the next page
+    // starts
+    ResponseEntity.BodyBuilder response = ResponseEntity.status(HttpStatus.OK);
+    if (result.getNextCursor() != null) {
+      response.header(Constants.NEXT_CURSOR_HEADER, result.getNextCursor());
+    }
+    return response.body(result.getContactRequests());
   }
 
   /**
-   * Get a specific contact request from the database
+   * Export all contact requests from the database as a file, which is written
+   * while the contact requests are read. Compressed with gzip if the client
+   * accepts it.
+   * 
+   * @param {String} (Optional) Format of the file, ndjson (default) or csv
+   * @param {String} (Optional) Accept-Encoding header
+   * @return Contact requests file
+   */
+  @GetMapping("/export")
+  public ResponseEntity<StreamingResponseBody> export(@RequestParam(defaultValue = "ndjson") String format,
+      @RequestHeader(name = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding)
+      throws UtilitiesApiException {
+
+    ContactExportFormat exportFormat = ContactExportFormat.of(format);
+    if (exportFormat == null) {
+      throw new UtilitiesApiException(Constants.ERROR_CODE_BAD_REQUEST, "Unsupported export format " + format);
+    }
+    boolean gzip = acceptEncoding != null && acceptEncoding.contains("gzip");
+
+    // Call the ContactService to write the contact requests, once the response is
+    // being sent
+    StreamingResponseBody body = out -> {
+      if (!gzip) {
+        contactService.export(exportFormat, out);
+        return;
+      }
+      try (GZIPOutputStream gzipOut = new GZIPOutputStream(out, 8192)) {
+        contactService.export(exportFormat, gzipOut);
+      }
+    };
+
+    ResponseEntity.BodyBuilder response = ResponseEntity.status(HttpStatus.OK)
+        .contentType(MediaType.parseMediaType(exportFormat.getMediaType()))
+        .header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment()
+            .filename("contact-requests." + exportFormat.getExtension())
+            .build()
+            .toString())
+        .header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+    if (gzip) {
+      response.header(HttpHeaders.CONTENT_ENCODING, "gzip");
+    }
+    return response.body(body);
+  }
+
+  /**
+   * Get a specific contact request from the database, or from the cache of
+   * rendered contact requests. Responds with 304 Not Modified if the request's
+   * If-None-Match header has the contact request's ETag.
    * 
    * @param {Long} Contact request ID
    * @return Contact request entry
    */
   @GetMapping("/get/{id}")
-  public ResponseEntity<ContactRequest> getById(@PathVariable("id") Long id)
+  public ResponseEntity<byte[]> getById(@PathVariable("id") Long id)
       throws UtilitiesApiException {
 
-    // Call the ContactService to get the contact request
-    ContactRequest result = contactService.getById(id);
+    // Call the ContactService to get the contact request, if it isn't cached
+    RenderedContactRequest result = responseCache.get(id, () -> contactService.getById(id));
+    if (result == null) {
+      return ResponseEntity.status(HttpStatus.OK).build();
+    }
 
-    // Send the fetched contact request in the response
-    return ResponseEntity.status(HttpStatus.OK).body(result);
+    // Send the rendered contact request in the response, which is replaced with
+    // 304 Not Modified if the ETag matches
+    return ResponseEntity.status(HttpStatus.OK)
+        .contentType(MediaType.APPLICATION_JSON)
+        .eTag(result.getETag())
+        .cacheControl(responseCache.getCacheControl())
+        .varyBy(Constants.API_KEY_HEADER)
+        .body(result.getBody());
   }
 }
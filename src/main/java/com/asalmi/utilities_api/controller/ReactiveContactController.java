@@ -0,0 +1,242 @@
+package com.asalmi.utilities_api.controller;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+import com.asalmi.utilities_api.constants.Constants;
+import com.asalmi.utilities_api.exception.UtilitiesApiException;
+import com.asalmi.utilities_api.model.ContactExportFormat;
+import com.asalmi.utilities_api.model.ContactRequestBody;
+import com.asalmi.utilities_api.model.ContactRequestView;
+import com.asalmi.utilities_api.model.CustomResponse;
+import com.asalmi.utilities_api.model.ErrorResponse;
+import com.asalmi.utilities_api.service.IReactiveContactService;
+import com.asalmi.utilities_api.service.serviceImpl.ContactRequestDeduplicator;
+import com.asalmi.utilities_api.service.serviceImpl.ContactRequestResponseCache;
+
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.validation.Valid;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.CrossOrigin;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * Controller class for Contact Request operations, replacing the Contact
+ * Controller in the reactive profile, with the same endpoints and responses.
+ *
+ * Requests are handled asynchronously, so no request thread is held while the
+ * emails are sent or the database is queried. Exports are written as the
+ * contact requests are read, a chunk at a time, and the next chunk is only
+ * read once the previous one was written.
+ */
+@RestController
+@Profile("reactive")
+@CrossOrigin(origins = "${cors.whitelist.contactcontroller}", exposedHeaders = { Constants.NEXT_CURSOR_HEADER,
+    HttpHeaders.ETAG })
+@RequestMapping("/contact")
+public class ReactiveContactController {
+
+  @Autowired
+  private IReactiveContactService contactService;
+
+  @Autowired
+  private ContactRequestDeduplicator deduplicator;
+
+  @Autowired
+  private ContactRequestResponseCache responseCache;
+
+  /**
+   * Send a contact request to Alex Salmi, and a confirmation email to the sender
+   *
+   * @param {ContactRequestBody} The request body, including the sender's email,
+   *                             name, message, and phone number (optional)
+   * @param {String}             (Optional) Idempotency key, retries with the
+   *                             same key are only sent once
+   * @return Custom Response with success or failure message
+   */
+  @PostMapping("/send")
+  public Mono<ResponseEntity<CustomResponse>> send(@Valid @RequestBody ContactRequestBody request,
+      @RequestHeader(name = Constants.IDEMPOTENCY_KEY_HEADER, required = false) String idempotencyKey) {
+
+    // Call the ContactService to send the contact request, unless it was already
+    // sent
+    return deduplicator.send(request, idempotencyKey, contactService::isSaved,
+        () -> contactService.send(request)).map(result -> {
+          // If an error occurred, send an error response
+          if (result.hasError()) {
+            ErrorResponse errorResponse = (ErrorResponse) result;
+            return ResponseEntity.status(HttpStatus.valueOf(errorResponse.getHttpStatus())).body(result);
+          }
+
+          // If success, send success response
+          return ResponseEntity.status(HttpStatus.OK).body(result);
+        });
+  }
+
+  /**
+   * Get a page of contact requests from the database. The cursor of the next
+   * page is returned in the X-Next-Cursor header, if there is one.
+   *
+   * @param {String}        (Optional) Email address
+   * @param {LocalDateTime} (Optional) Only contact requests created at or after
+   * @param {LocalDateTime} (Optional) Only contact requests created before
+   * @param {String}        (Optional) Cursor of the page, from the previous page
+   * @param {Integer}       (Optional) Maximum number of contact requests
+   * @return List of contact request entries
+   */
+  @GetMapping("/get")
+  public Mono<ResponseEntity<List<ContactRequestView>>> get(@RequestParam(required = false) String email,
+      @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+      @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+      @RequestParam(required = false) String cursor,
+      @RequestParam(required = false) Integer limit) {
+
+    // Call the ContactService to get the contact requests, and send them with
+    // where the next page starts
+    return contactService.get(email, from, to, cursor, limit).map(result -> {
+      ResponseEntity.BodyBuilder response = ResponseEntity.status(HttpStatus.OK);
+      if (result.getNextCursor() != null) {
+        response.header(Constants.NEXT_CURSOR_HEADER, result.getNextCursor());
+      }
+      return response.body(result.getContactRequests());
+    });
+  }
+
+  /**
+   * Export all contact requests from the database as a file, which is written
+   * while the contact requests are read. Compressed with gzip if the client
+   * accepts it.
+   *
+   * @param {String} (Optional) Format of the file, ndjson (default) or csv
+   * @param {String} (Optional) Accept-Encoding header
+   * @return Contact requests file
+   */
+  @GetMapping("/export")
+  public ResponseEntity<ResponseBodyEmitter> export(@RequestParam(defaultValue = "ndjson") String format,
+      @RequestHeader(name = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding)
+      throws UtilitiesApiException {
+
+    ContactExportFormat exportFormat = ContactExportFormat.of(format);
+    if (exportFormat == null) {
+      throw new UtilitiesApiException(Constants.ERROR_CODE_BAD_REQUEST, "Unsupported export format " + format);
+    }
+    boolean gzip = acceptEncoding != null && acceptEncoding.contains("gzip");
+
+    MediaType mediaType = MediaType.parseMediaType(exportFormat.getMediaType());
+
+    // Call the ContactService to encode the contact requests
+    Flux<byte[]> body = contactService.export(exportFormat);
+
+    ResponseEntity.BodyBuilder response = ResponseEntity.status(HttpStatus.OK)
+        .contentType(mediaType)
+        .header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment()
+            .filename("contact-requests." + exportFormat.getExtension())
+            .build()
+            .toString())
+        .header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+    if (gzip) {
+      response.header(HttpHeaders.CONTENT_ENCODING, "gzip");
+      body = gzip(body);
+    }
+
+    // Writing a chunk blocks until the client takes it, so chunks are written
+    // one at a time, off the database driver's threads
+    ResponseBodyEmitter emitter = new ResponseBodyEmitter();
+    Disposable export = body
+        .concatMap(chunk -> Mono.fromCallable(() -> {
+          emitter.send(chunk, mediaType);
+          return chunk.length;
+        }).subscribeOn(Schedulers.boundedElastic()))
+        .subscribe(null, emitter::completeWithError, emitter::complete);
+    emitter.onTimeout(export::dispose);
+    emitter.onError(ex -> export.dispose());
+    return response.body(emitter);
+  }
+
+  /**
+   * Get a specific contact request from the database, or from the cache of
+   * rendered contact requests. Responds with 304 Not Modified if the request's
+   * If-None-Match header has the contact request's ETag.
+   *
+   * @param {Long} Contact request ID
+   * @return Contact request entry
+   */
+  @GetMapping("/get/{id}")
+  public Mono<ResponseEntity<byte[]>> getById(@PathVariable("id") Long id, HttpServletResponse response) {
+
+    // Spring Security sets its no-cache header when the request goes async,
+    // unless the response already has one
+    response.setHeader(HttpHeaders.CACHE_CONTROL, responseCache.getCacheControl().getHeaderValue());
+
+    // Call the ContactService to get the contact request, if it isn't cached, and
+    // send it rendered, which is replaced with 304 Not Modified if the ETag
+    // matches
+    return responseCache.get(id, contactService.getById(id))
+        .map(result -> ResponseEntity.status(HttpStatus.OK)
+            .contentType(MediaType.APPLICATION_JSON)
+            .eTag(result.getETag())
+            .varyBy(Constants.API_KEY_HEADER)
+            .body(result.getBody()))
+        .defaultIfEmpty(ResponseEntity.status(HttpStatus.OK).build());
+  }
+
+  /*
+   * Compresses the chunks of an export as one gzip stream, flushing the
+   * compressed bytes of every chunk as it is written
+   */
+  private static Flux<byte[]> gzip(Flux<byte[]> chunks) {
+    return Flux.defer(() -> {
+      ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+      GZIPOutputStream gzip;
+      try {
+        gzip = new GZIPOutputStream(compressed, 8192, true);
+      } catch (IOException ex) {
+        return Flux.error(ex);
+      }
+
+      return chunks.map(chunk -> {
+        try {
+          gzip.write(chunk);
+          gzip.flush();
+        } catch (IOException ex) {
+          throw new UncheckedIOException(ex);
+        }
+        return drain(compressed);
+      }).concatWith(Mono.fromCallable(() -> {
+        gzip.finish();
+        return drain(compressed);
+      }));
+    });
+  }
+
+  private static byte[] drain(ByteArrayOutputStream compressed) {
+    byte[] bytes = compressed.toByteArray();
+    compressed.reset();
+    return bytes;
+  }
+}
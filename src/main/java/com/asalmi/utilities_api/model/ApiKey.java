@@ -38,4 +38,8 @@ public class ApiKey {
   @Column(name = "created_at", nullable = false)
   private LocalDateTime createdAt;
 
+  // Requests per minute allowed for this key, or null for the configured default
+  @Column(name = "requests_per_minute", nullable = true)
+  private Integer requestsPerMinute;
+
 }
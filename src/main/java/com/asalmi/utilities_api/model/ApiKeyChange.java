@@ -0,0 +1,52 @@
+package com.asalmi.utilities_api.model;
+
+import java.time.LocalDateTime;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.EnumType;
+import jakarta.persistence.Enumerated;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+ * API Key change entity class, an entry in the log of changes that every
+ * instance applies to its in-memory API keys
+ */
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+@Entity
+@Table(name = "api_key_changes")
+public class ApiKeyChange {
+
+  public enum Type {
+    REVOKED,
+    UPDATED
+  }
+
+  @Id
+  @GeneratedValue(strategy = GenerationType.IDENTITY)
+  private Integer id;
+
+  @Column(name = "api_key_hash", nullable = false)
+  private String apiKeyHash;
+
+  @Enumerated(EnumType.STRING)
+  @Column(name = "change_type", nullable = false)
+  private Type changeType;
+
+  @Column(name = "created_at", nullable = false)
+  private LocalDateTime createdAt;
+
+}
@@ -0,0 +1,26 @@
+package com.asalmi.utilities_api.model;
+
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+
+/**
+ * The consumer and application an API Key was generated for, and its own rate
+ * limit if it has one
+ */
+@Getter
+@AllArgsConstructor
+@EqualsAndHashCode
+public class ApiKeyIdentity {
+
+  private final String consumer;
+
+  private final String application;
+
+  // Requests per minute, or null for the configured default
+  private final Integer requestsPerMinute;
+
+  public ApiKeyIdentity(String consumer, String application) {
+    this(consumer, application, null);
+  }
+}
@@ -0,0 +1,90 @@
+package com.asalmi.utilities_api.model;
+
+import java.time.LocalDateTime;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.EnumType;
+import jakarta.persistence.Enumerated;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
+import org.hibernate.id.enhanced.SequenceStyleGenerator;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+ * Contact Email entity class, an email for a contact request that is waiting
+ * in the outbox to be sent
+ */
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+@Entity
+@Table(name = "contact_emails")
+public class ContactEmail {
+
+  public enum Type {
+    CONTACT_REQUEST,
+    NOTIFICATION
+  }
+
+  public enum Status {
+    PENDING,
+    SENT,
+    FAILED
+  }
+
+  // Allocated from a sequence table like contact request ids
+  @Id
+  @Column(name = "id")
+  @GeneratedValue(generator = "contact_emails_seq")
+  @GenericGenerator(name = "contact_emails_seq", type = SequenceStyleGenerator.class, parameters = {
+      @Parameter(name = "sequence_name", value = "contact_emails_seq"),
+      @Parameter(name = "force_table_use", value = "true"),
+      @Parameter(name = "increment_size", value = "50"),
+      @Parameter(name = "optimizer", value = "pooled-lo")
+  })
+  private Long id;
+
+  @Column(name = "contact_request_id", nullable = false)
+  private Long contactRequestId;
+
+  @Enumerated(EnumType.STRING)
+  @Column(name = "email_type", nullable = false)
+  private Type type;
+
+  @Enumerated(EnumType.STRING)
+  @Column(name = "status", nullable = false)
+  private Status status;
+
+  @Column(name = "attempts", nullable = false)
+  private Integer attempts;
+
+  @Column(name = "next_attempt_at", nullable = false)
+  private LocalDateTime nextAttemptAt;
+
+  @Column(name = "claimed_by", nullable = true)
+  private String claimedBy;
+
+  @Column(name = "claimed_until", nullable = true)
+  private LocalDateTime claimedUntil;
+
+  @Column(name = "last_error", nullable = true, length = 1024)
+  private String lastError;
+
+  @Column(name = "created_at", nullable = false)
+  private LocalDateTime createdAt;
+
+  @Column(name = "sent_at", nullable = true)
+  private LocalDateTime sentAt;
+}
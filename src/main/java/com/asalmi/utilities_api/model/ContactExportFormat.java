@@ -0,0 +1,38 @@
+package com.asalmi.utilities_api.model;
+
+import java.util.Locale;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Formats that contact requests can be exported in
+ */
+@Getter
+@AllArgsConstructor
+public enum ContactExportFormat {
+  // One JSON object per line
+  NDJSON("application/x-ndjson", "ndjson"),
+
+  // Comma separated values, with a header row
+  CSV("text/csv", "csv");
+
+  private final String mediaType;
+
+  private final String extension;
+
+  /**
+   * Get the format with the given name, ignoring case
+   * 
+   * @param {String} Name of the format
+   * @return The format, or null if there is none with that name
+   */
+  public static ContactExportFormat of(String name) {
+    for (ContactExportFormat format : values()) {
+      if (format.name().equals(name.toUpperCase(Locale.ROOT))) {
+        return format;
+      }
+    }
+    return null;
+  }
+}
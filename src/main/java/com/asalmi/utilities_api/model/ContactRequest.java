@@ -2,13 +2,18 @@ package com.asalmi.utilities_api.model;
 
 import java.time.LocalDateTime;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
 import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
 import jakarta.persistence.GeneratedValue;
-import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
 import jakarta.persistence.Table;
 
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
+import org.hibernate.id.enhanced.SequenceStyleGenerator;
+
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Getter;
@@ -27,9 +32,20 @@ import lombok.Setter;
 @Table(name = "contact_requests")
 public class ContactRequest {
 
+  // Ids are allocated 50 at a time from a sequence table, so that inserts can
+  // be batched, unlike with auto increment ids. Instances that still insert
+  // with auto increment ids would take ids from the blocks allocated here, so
+  // they must all be stopped before the first instance allocating from the
+  // sequence starts, rather than replaced by a rolling deploy.
   @Id
   @Column(name = "id")
-  @GeneratedValue(strategy = GenerationType.IDENTITY)
+  @GeneratedValue(generator = "contact_requests_seq")
+  @GenericGenerator(name = "contact_requests_seq", type = SequenceStyleGenerator.class, parameters = {
+      @Parameter(name = "sequence_name", value = "contact_requests_seq"),
+      @Parameter(name = "force_table_use", value = "true"),
+      @Parameter(name = "increment_size", value = "50"),
+      @Parameter(name = "optimizer", value = "pooled-lo")
+  })
   private Long id;
 
   @Column(name = "name", nullable = false)
@@ -46,4 +62,9 @@ public class ContactRequest {
 
   @Column(name = "created_at", nullable = false)
   private LocalDateTime createdAt;
+
+  // Identifies retries and resubmissions of the same contact request
+  @JsonIgnore
+  @Column(name = "idempotency_key", nullable = true, unique = true, length = 64)
+  private String idempotencyKey;
 }
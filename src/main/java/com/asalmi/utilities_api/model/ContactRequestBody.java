@@ -1,5 +1,7 @@
 package com.asalmi.utilities_api.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
 import jakarta.validation.constraints.Email;
 import jakarta.validation.constraints.NotNull;
 
@@ -30,4 +32,16 @@ public class ContactRequestBody {
   private String name;
 
   private String phone;
+
+  // Set from the Idempotency-Key header or the request's content, never read
+  // from the body
+  @JsonIgnore
+  private String idempotencyKey;
+
+  // Selected by the summary query, which only reads these columns
+  public ContactRequestBody(String email, String message, String name) {
+    this.email = email;
+    this.message = message;
+    this.name = name;
+  }
 }
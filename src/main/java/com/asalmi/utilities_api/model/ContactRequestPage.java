@@ -0,0 +1,24 @@
+package com.asalmi.utilities_api.model;
+
+import java.util.List;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+ * A page of contact requests, and the cursor of the next page if there is one
+ */
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class ContactRequestPage {
+
+  private List<ContactRequestView> contactRequests;
+
+  private String nextCursor;
+}
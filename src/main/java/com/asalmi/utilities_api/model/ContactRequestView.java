@@ -0,0 +1,27 @@
+package com.asalmi.utilities_api.model;
+
+import java.time.LocalDateTime;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * A read-only copy of a contact request, as it is listed and exported. Selected
+ * directly from the columns, so it is never managed by a persistence context.
+ */
+@Getter
+@AllArgsConstructor
+public class ContactRequestView {
+
+  private final Long id;
+
+  private final String name;
+
+  private final String email;
+
+  private final String message;
+
+  private final String phone;
+
+  private final LocalDateTime createdAt;
+}
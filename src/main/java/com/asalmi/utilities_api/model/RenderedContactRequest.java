@@ -0,0 +1,17 @@
+package com.asalmi.utilities_api.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * A contact request serialized as a JSON response body, and the strong ETag of
+ * that body
+ */
+@Getter
+@AllArgsConstructor
+public class RenderedContactRequest {
+
+  private final byte[] body;
+
+  private final String eTag;
+}
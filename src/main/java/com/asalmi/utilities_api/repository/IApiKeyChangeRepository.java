@@ -0,0 +1,13 @@
+package com.asalmi.utilities_api.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import com.asalmi.utilities_api.model.ApiKeyChange;
+
+/**
+ * Repository class for API Key change log database operations
+ */
+@Repository
+public interface IApiKeyChangeRepository extends JpaRepository<ApiKeyChange, Integer> {
+}
@@ -0,0 +1,45 @@
+package com.asalmi.utilities_api.repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import com.asalmi.utilities_api.model.ContactEmail;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Repository class for the contact email outbox database operations
+ */
+@Repository
+public interface IContactEmailRepository extends JpaRepository<ContactEmail, Long> {
+  // Get the ids of pending emails that are due and not claimed by any instance
+  @Query("SELECT e.id FROM ContactEmail e WHERE e.status = 'PENDING' AND e.nextAttemptAt <= :now"
+      + " AND (e.claimedUntil IS NULL OR e.claimedUntil < :now) ORDER BY e.id")
+  List<Long> findClaimableIds(@Param("now") LocalDateTime now, Pageable pageable);
+
+  // Claim a pending email until the given time, returns 0 if another instance
+  // claimed it first
+  @Transactional
+  @Modifying
+  @Query("UPDATE ContactEmail e SET e.claimedBy = :owner, e.claimedUntil = :until WHERE e.id = :id"
+      + " AND e.status = 'PENDING' AND (e.claimedUntil IS NULL OR e.claimedUntil < :now)")
+  int claim(@Param("id") Long id, @Param("owner") String owner, @Param("now") LocalDateTime now,
+      @Param("until") LocalDateTime until);
+
+  // Record the outcome of a send and release the claim, returns 0 if the claim
+  // was lost in the meantime
+  @Transactional
+  @Modifying
+  @Query("UPDATE ContactEmail e SET e.status = :status, e.attempts = :attempts, e.nextAttemptAt = :nextAttemptAt,"
+      + " e.lastError = :lastError, e.sentAt = :sentAt, e.claimedBy = NULL, e.claimedUntil = NULL"
+      + " WHERE e.id = :id AND e.claimedBy = :owner")
+  int release(@Param("id") Long id, @Param("owner") String owner, @Param("status") ContactEmail.Status status,
+      @Param("attempts") Integer attempts, @Param("nextAttemptAt") LocalDateTime nextAttemptAt,
+      @Param("lastError") String lastError, @Param("sentAt") LocalDateTime sentAt);
+}
@@ -2,10 +2,20 @@ package com.asalmi.utilities_api.repository;
 
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.stream.Stream;
 
 import com.asalmi.utilities_api.model.ContactRequest;
+import com.asalmi.utilities_api.model.ContactRequestBody;
+import com.asalmi.utilities_api.model.ContactRequestView;
 
+import jakarta.persistence.QueryHint;
+
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 /**
@@ -16,9 +26,48 @@ public interface IContactRepository extends JpaRepository<ContactRequest, Long>
   // Get a specific contact request
   ContactRequest findOneById(Long id);
 
-  // Get a list of contact requests specific to an email address
-  List<ContactRequest> findByEmail(String email);
+  // Check whether a contact request with an idempotency key was saved
+  boolean existsByIdempotencyKey(String idempotencyKey);
+
+  // Get the messages saved from a lower case email address since a date,
+  // whatever the case they were saved with. Reads the range of the created at
+  // index, which the window keeps short.
+  @Query("SELECT c.message FROM ContactRequest c WHERE c.createdAt > :since AND LOWER(c.email) = :email")
+  List<String> findMessagesByEmailSince(@Param("email") String email, @Param("since") LocalDateTime since);
+
+  // Get a page of contact requests created before a date, that come after the
+  // given created at and id, in created at and id order. Only the listed
+  // columns are read, into views that aren't managed entities.
+  @Query("SELECT new com.asalmi.utilities_api.model.ContactRequestView("
+      + "c.id, c.name, c.email, c.message, c.phone, c.createdAt) FROM ContactRequest c"
+      + " WHERE (c.createdAt, c.id) > (:afterCreatedAt, :afterId) AND c.createdAt < :to"
+      + " ORDER BY c.createdAt, c.id")
+  List<ContactRequestView> findPage(@Param("afterCreatedAt") LocalDateTime afterCreatedAt,
+      @Param("afterId") Long afterId, @Param("to") LocalDateTime to, Pageable page);
+
+  // Get a page of contact requests specific to an email address, like findPage
+  @Query("SELECT new com.asalmi.utilities_api.model.ContactRequestView("
+      + "c.id, c.name, c.email, c.message, c.phone, c.createdAt) FROM ContactRequest c"
+      + " WHERE c.email = :email AND (c.createdAt, c.id) > (:afterCreatedAt, :afterId) AND c.createdAt < :to"
+      + " ORDER BY c.createdAt, c.id")
+  List<ContactRequestView> findPageByEmail(@Param("email") String email,
+      @Param("afterCreatedAt") LocalDateTime afterCreatedAt, @Param("afterId") Long afterId,
+      @Param("to") LocalDateTime to, Pageable page);
+
+  // Stream all contact requests in created at and id order, read from a forward
+  // only cursor a batch of rows at a time, into views that aren't managed
+  // entities. Must be read in a transaction, and the stream closed.
+  @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"))
+  @Query("SELECT new com.asalmi.utilities_api.model.ContactRequestView("
+      + "c.id, c.name, c.email, c.message, c.phone, c.createdAt) FROM ContactRequest c"
+      + " ORDER BY c.createdAt, c.id")
+  Stream<ContactRequestView> streamAll();
 
-  // Get a list of contact requests between two dates
-  List<ContactRequest> findByCreatedAtBetween(LocalDateTime createdAtStart, LocalDateTime createdAtEnd);
+  // Get the name, email address and message of the contact requests between
+  // two dates, read a batch of rows at a time
+  @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"))
+  @Query("SELECT new com.asalmi.utilities_api.model.ContactRequestBody(c.email, c.message, c.name)"
+      + " FROM ContactRequest c WHERE c.createdAt BETWEEN :start AND :end")
+  List<ContactRequestBody> findSummariesByCreatedAtBetween(@Param("start") LocalDateTime createdAtStart,
+      @Param("end") LocalDateTime createdAtEnd);
 }
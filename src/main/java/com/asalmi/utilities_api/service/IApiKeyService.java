@@ -13,4 +13,7 @@ public interface IApiKeyService {
 
   // Validate an API Key
   CustomResponse validate(String apiKey) throws UtilitiesApiException;
+
+  // Revoke an API Key on every instance
+  CustomResponse revoke(String apiKey) throws UtilitiesApiException;
 }
@@ -1,10 +1,14 @@
 package com.asalmi.utilities_api.service;
 
-import java.util.List;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.LocalDateTime;
 
 import com.asalmi.utilities_api.exception.UtilitiesApiException;
+import com.asalmi.utilities_api.model.ContactExportFormat;
 import com.asalmi.utilities_api.model.ContactRequest;
 import com.asalmi.utilities_api.model.ContactRequestBody;
+import com.asalmi.utilities_api.model.ContactRequestPage;
 import com.asalmi.utilities_api.model.CustomResponse;
 
 /**
@@ -15,8 +19,12 @@ public interface IContactService {
   // Send a contact request to Alex Salmi, and a confirmation email to the sender
   CustomResponse send(ContactRequestBody request) throws UtilitiesApiException;
 
-  // Get the contact requests from the DB
-  List<ContactRequest> get(String email) throws UtilitiesApiException;
+  // Get a page of the contact requests from the DB
+  ContactRequestPage get(String email, LocalDateTime from, LocalDateTime to, String cursor, Integer limit)
+      throws UtilitiesApiException;
+
+  // Write all the contact requests from the DB to a stream
+  void export(ContactExportFormat format, OutputStream out) throws IOException;
 
   // Get a specific contact reqeust from the DB
   ContactRequest getById(Long id) throws UtilitiesApiException;
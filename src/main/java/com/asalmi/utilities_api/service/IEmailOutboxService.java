@@ -0,0 +1,9 @@
+package com.asalmi.utilities_api.service;
+
+/**
+ * Interface for Email Outbox Service class
+ */
+public interface IEmailOutboxService {
+  // Send the pending emails in the outbox that this instance is able to claim
+  void dispatch();
+}
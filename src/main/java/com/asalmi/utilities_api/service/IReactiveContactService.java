@@ -0,0 +1,34 @@
+package com.asalmi.utilities_api.service;
+
+import java.time.LocalDateTime;
+
+import com.asalmi.utilities_api.model.ContactExportFormat;
+import com.asalmi.utilities_api.model.ContactRequest;
+import com.asalmi.utilities_api.model.ContactRequestBody;
+import com.asalmi.utilities_api.model.ContactRequestPage;
+import com.asalmi.utilities_api.model.CustomResponse;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Interface for Reactive Contact Request Service class, with the same
+ * operations as the Contact Request Service
+ */
+public interface IReactiveContactService {
+
+  // Send a contact request to Alex Salmi, and a confirmation email to the sender
+  Mono<CustomResponse> send(ContactRequestBody request);
+
+  // Get a page of the contact requests from the DB
+  Mono<ContactRequestPage> get(String email, LocalDateTime from, LocalDateTime to, String cursor, Integer limit);
+
+  // Encode all the contact requests from the DB, as they are read
+  Flux<byte[]> export(ContactExportFormat format);
+
+  // Get a specific contact reqeust from the DB
+  Mono<ContactRequest> getById(Long id);
+
+  // Whether a contact request was saved, by its idempotency key or message
+  Mono<Boolean> isSaved(ContactRequestBody request, LocalDateTime since);
+}
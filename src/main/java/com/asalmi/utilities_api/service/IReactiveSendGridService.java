@@ -0,0 +1,17 @@
+package com.asalmi.utilities_api.service;
+
+import com.asalmi.utilities_api.model.ContactRequestBody;
+import com.asalmi.utilities_api.model.CustomResponse;
+
+import reactor.core.publisher.Mono;
+
+/**
+ * Interface for Reactive SendGrid Service class
+ */
+public interface IReactiveSendGridService {
+  // Send email to user's email notifying them that Alex got their message
+  Mono<CustomResponse> sendNotificationEmail(ContactRequestBody request);
+
+  // Send contact request email to Alex Salmi's email
+  Mono<CustomResponse> sendContactRequest(ContactRequestBody request);
+}
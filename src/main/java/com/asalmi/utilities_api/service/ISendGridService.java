@@ -16,6 +16,9 @@ public interface ISendGridService {
   // Send contact request email to Alex Salmi's email
   CustomResponse sendContactRequest(ContactRequestBody request) throws UtilitiesApiException;
 
+  // Send the contact request and notification emails at the same time
+  CustomResponse sendContactRequestEmails(ContactRequestBody request) throws UtilitiesApiException;
+
   // Send email to Alex Salmi's email with a weekly summary of emails being sent
   // in the past month
   CustomResponse sendSummaryEmail(List<ContactRequestBody> monthlyRequests, long totalRequests)
@@ -6,17 +6,24 @@ import java.util.UUID;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
+import com.asalmi.utilities_api.authentication.ApiKeyStore;
 import com.asalmi.utilities_api.constants.Constants;
 import com.asalmi.utilities_api.exception.UtilitiesApiException;
 import com.asalmi.utilities_api.model.ApiKey;
+import com.asalmi.utilities_api.model.ApiKeyChange;
+import com.asalmi.utilities_api.model.ApiKeyIdentity;
 import com.asalmi.utilities_api.model.ApiKeyResponse;
 import com.asalmi.utilities_api.model.CustomResponse;
 import com.asalmi.utilities_api.model.ErrorResponse;
 import com.asalmi.utilities_api.model.SuccessResponse;
+import com.asalmi.utilities_api.repository.IApiKeyChangeRepository;
 import com.asalmi.utilities_api.repository.IApiKeyRepository;
 import com.asalmi.utilities_api.service.IApiKeyService;
+import com.asalmi.utilities_api.utils.Sha256Hasher;
 import com.asalmi.utilities_api.utils.Utils;
 
 /**
@@ -27,9 +34,18 @@ public class ApiKeyService implements IApiKeyService {
   @Autowired
   private IApiKeyRepository apiKeyRepository;
 
+  @Autowired
+  private IApiKeyChangeRepository apiKeyChangeRepository;
+
   @Autowired
   private Utils utils;
 
+  @Autowired
+  private ApiKeyStore apiKeyStore;
+
+  @Value("${apikey.hash.canonical}")
+  private boolean canonicalHashes;
+
   private static final Logger log = LogManager.getLogger(ApiKeyService.class);
 
   /**
@@ -48,7 +64,7 @@ public class ApiKeyService implements IApiKeyService {
     // Create hash from API Key
     String apiKeyHash;
     try {
-      apiKeyHash = utils.hashString(apiKey);
+      apiKeyHash = canonicalHashes ? utils.canonicalHashString(apiKey) : utils.hashString(apiKey);
     } catch (Exception ex) {
       log.info("Failed to hash API Key: " + ex.getMessage());
       throw new UtilitiesApiException(Constants.ERROR_CODE_HASH_API_KEY, ex.getMessage());
@@ -71,6 +87,9 @@ public class ApiKeyService implements IApiKeyService {
       throw new UtilitiesApiException(Constants.ERROR_CODE_DATABASE_SAVE_API_KEY, ex.getMessage());
     }
 
+    // Make the new API Key usable on this instance without waiting for a refresh
+    apiKeyStore.add(apiKeyHash, consumer, application);
+
     log.info("API Key created successfully");
     // If no errors occurred, return success response with the new API Key
     ApiKeyResponse response = ApiKeyResponse.builder()
@@ -88,6 +107,52 @@ public class ApiKeyService implements IApiKeyService {
   public CustomResponse validate(String apiKey) throws UtilitiesApiException {
     log.info("Validating API Key");
 
+    // Return the cached API Key if it was used recently, by its digest like the
+    // authentication filter
+    byte[] digest = Sha256Hasher.digest(apiKey);
+    ApiKeyIdentity identity = apiKeyStore.getIdentity(digest);
+    if (identity == null) {
+      // Create hash from API Key
+      String apiKeyHash;
+      try {
+        apiKeyHash = utils.hashString(apiKey);
+      } catch (Exception ex) {
+        log.info("Failed to hash API Key: " + ex.getMessage());
+        throw new UtilitiesApiException(Constants.ERROR_CODE_HASH_API_KEY, ex.getMessage());
+      }
+
+      identity = findIdentity(apiKey, apiKeyHash, digest);
+    }
+
+    // If API Key was not found in the database, return an error
+    if (identity == null) {
+      log.info("API Key not found");
+      return new ErrorResponse(Constants.ERROR_CODE_NOT_FOUND, Constants.ERROR_MESSAGE_API_KEY_NOT_FOUND);
+    }
+
+    // If no errors occurred, return success response with the API Key's consumer
+    // and target application
+    log.info("API Key found");
+    ApiKeyResponse response = ApiKeyResponse.builder()
+        .application(identity.getApplication())
+        .consumer(identity.getConsumer())
+        .build();
+    return new SuccessResponse(response);
+  }
+
+  /**
+   * Revokes an API Key. The key is deleted and the revocation is written to the
+   * API Key change log in the same transaction, which every instance polls to
+   * drop the key from its caches.
+   * 
+   * @param {String} The API Key to be revoked
+   * @return Custom Response with the revoked API Key's consumer and application,
+   *         or failure message
+   */
+  @Transactional(rollbackFor = UtilitiesApiException.class)
+  public CustomResponse revoke(String apiKey) throws UtilitiesApiException {
+    log.info("Revoking API Key");
+
     // Create hash from API Key
     String apiKeyHash;
     try {
@@ -97,16 +162,7 @@ public class ApiKeyService implements IApiKeyService {
       throw new UtilitiesApiException(Constants.ERROR_CODE_HASH_API_KEY, ex.getMessage());
     }
 
-    ApiKey apiKeyObj = null;
-
-    // Fetch the API Key from the database
-    try {
-      log.info("Checking if API Key exists in database");
-      apiKeyObj = apiKeyRepository.findOneByApiKeyHash(apiKeyHash);
-    } catch (Exception ex) {
-      log.info("Failed to fetch API Key from database: " + ex.getMessage());
-      throw new UtilitiesApiException(Constants.ERROR_CODE_DATABASE_FETCH_API_KEY, ex.getMessage());
-    }
+    ApiKey apiKeyObj = findApiKey(apiKey, apiKeyHash);
 
     // If API Key was not found in the database, return an error
     if (apiKeyObj == null) {
@@ -114,13 +170,85 @@ public class ApiKeyService implements IApiKeyService {
       return new ErrorResponse(Constants.ERROR_CODE_NOT_FOUND, Constants.ERROR_MESSAGE_API_KEY_NOT_FOUND);
     }
 
-    // If no errors occurred, return success response with the API Key's consumer
-    // and target application
-    log.info("API Key found");
+    // Delete the API Key and record the revocation for the other instances
+    try {
+      log.info("Deleting API Key from database");
+      apiKeyRepository.delete(apiKeyObj);
+      apiKeyChangeRepository.save(ApiKeyChange.builder()
+          .apiKeyHash(apiKeyObj.getApiKeyHash())
+          .changeType(ApiKeyChange.Type.REVOKED)
+          .createdAt(LocalDateTime.now())
+          .build());
+    } catch (Exception ex) {
+      log.info("Failed to revoke API Key: " + ex.getMessage());
+      throw new UtilitiesApiException(Constants.ERROR_CODE_DATABASE_REVOKE_API_KEY, ex.getMessage());
+    }
+
+    // Stop accepting the API Key on this instance without waiting for a poll
+    apiKeyStore.remove(apiKeyObj.getApiKeyHash());
+
+    log.info("API Key revoked successfully");
     ApiKeyResponse response = ApiKeyResponse.builder()
         .application(apiKeyObj.getApplication())
         .consumer(apiKeyObj.getConsumer())
         .build();
     return new SuccessResponse(response);
   }
+
+  /**
+   * Looks up an API Key's consumer and application, and caches them for later
+   * requests
+   * 
+   * @param {String} The API Key
+   * @param {String} The legacy hash of the API Key
+   * @param {byte[]} The digest of the API Key
+   * @return The API Key's consumer and application, or null if it was not found
+   */
+  private ApiKeyIdentity findIdentity(String apiKey, String apiKeyHash, byte[] digest)
+      throws UtilitiesApiException {
+    // Keys that aren't cached are always looked up in the database, since they may
+    // have been generated by another instance since its last refresh
+    long removalGeneration = apiKeyStore.removalGeneration();
+    ApiKey apiKeyObj = findApiKey(apiKey, apiKeyHash);
+    if (apiKeyObj == null) {
+      return null;
+    }
+
+    ApiKeyIdentity identity = new ApiKeyIdentity(apiKeyObj.getConsumer(), apiKeyObj.getApplication(),
+        apiKeyObj.getRequestsPerMinute());
+    // Not cached if it may have been revoked during the lookup
+    apiKeyStore.putIdentity(digest, identity, removalGeneration);
+    return identity;
+  }
+
+  /**
+   * Fetches an API Key from the database by either of its hashes
+   * 
+   * @param {String} The API Key
+   * @param {String} The legacy hash of the API Key
+   * @return The API Key entity, or null if it was not found
+   */
+  private ApiKey findApiKey(String apiKey, String apiKeyHash) throws UtilitiesApiException {
+    ApiKey apiKeyObj = null;
+
+    // Fetch the API Key from the database
+    try {
+      log.info("Checking if API Key exists in database");
+      apiKeyObj = apiKeyRepository.findOneByApiKeyHash(apiKeyHash);
+
+      // Keys generated with canonical hashes enabled are stored with the full hash,
+      // which differs from the legacy hash when the hash starts with a zero
+      if (apiKeyObj == null && canonicalHashes) {
+        String canonicalHash = utils.canonicalHashString(apiKey);
+        if (!canonicalHash.equals(apiKeyHash)) {
+          apiKeyObj = apiKeyRepository.findOneByApiKeyHash(canonicalHash);
+        }
+      }
+    } catch (Exception ex) {
+      log.info("Failed to fetch API Key from database: " + ex.getMessage());
+      throw new UtilitiesApiException(Constants.ERROR_CODE_DATABASE_FETCH_API_KEY, ex.getMessage());
+    }
+
+    return apiKeyObj;
+  }
 }
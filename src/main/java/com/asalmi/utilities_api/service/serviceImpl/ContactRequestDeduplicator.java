@@ -0,0 +1,336 @@
+package com.asalmi.utilities_api.service.serviceImpl;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Locale;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Supplier;
+
+import com.asalmi.utilities_api.constants.Constants;
+import com.asalmi.utilities_api.exception.UtilitiesApiException;
+import com.asalmi.utilities_api.model.ContactRequestBody;
+import com.asalmi.utilities_api.model.CustomResponse;
+import com.asalmi.utilities_api.model.SuccessResponse;
+import com.asalmi.utilities_api.repository.IContactRepository;
+import com.asalmi.utilities_api.utils.Sha256Hasher;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import reactor.core.publisher.Mono;
+
+/**
+ * Makes sending a contact request idempotent, so that double submits and
+ * client retries only send the emails and save the contact request once.
+ *
+ * A request is identified by its Idempotency-Key header together with the
+ * sender's email, or without one by a fingerprint of the sender's email and
+ * message. Requests are coalesced in memory: a duplicate of a request that is
+ * still being sent waits for it and gets the same response, and a duplicate of
+ * a request that was sent successfully within the last contact.idempotency
+ * .window gets its response right away. The window slides, since requests are
+ * forgotten that long after they were sent. Failed requests are forgotten right
+ * away, so they can be retried, and so are requests whose client cancelled
+ * them, whose duplicates are sent again instead.
+ *
+ * Idempotency keys are saved with the contact request in a unique column, and
+ * fingerprinted requests are looked up by their email, ignoring case, and their
+ * message, ignoring leading and trailing whitespace, like their key. Only those
+ * sent within the window are looked up. This catches duplicates that were sent
+ * before this instance started, or to another instance.
+ *
+ * Duplicates sent to two instances at the same time are only caught when the
+ * outbox is enabled and the request has an Idempotency-Key. The unique column
+ * then rejects the second save, which rolls back its emails. With the outbox
+ * disabled, the emails are sent before the contact request is saved, so both
+ * instances send them, and fingerprinted requests have no unique column at
+ * all. Duplicates are counted as
+ * "contact.requests.duplicate", tagged with where they were found. The reactive
+ * contact controller deduplicates the same way, checking the database with
+ * R2DBC instead.
+ */
+@Component
+public class ContactRequestDeduplicator {
+
+  private final IContactRepository contactRepository;
+  private final MeterRegistry meterRegistry;
+  private final boolean enabled;
+  private final long window;
+
+  // Requests by key, while they are being sent and then if they succeeded
+  private final Cache<String, CompletableFuture<CustomResponse>> requests;
+
+  private static final Logger log = LogManager.getLogger(ContactRequestDeduplicator.class);
+
+  @Autowired
+  public ContactRequestDeduplicator(IContactRepository contactRepository, MeterRegistry meterRegistry,
+      @Value("${contact.idempotency.enabled}") boolean enabled,
+      @Value("${contact.idempotency.window}") long window,
+      @Value("${contact.idempotency.maximumsize}") long maximumSize) {
+    this.contactRepository = contactRepository;
+    this.meterRegistry = meterRegistry;
+    this.enabled = enabled;
+    this.window = window;
+    this.requests = Caffeine.newBuilder()
+        .maximumSize(maximumSize)
+        .expireAfterWrite(Duration.ofMillis(window))
+        .recordStats()
+        .build();
+
+    CaffeineCacheMetrics.monitor(meterRegistry, requests, "contact.idempotency");
+  }
+
+  /**
+   * Sends a contact request, unless it is a duplicate of one that was already
+   * sent
+   *
+   * @param {ContactRequestBody} The request body, which gets the request's key
+   * @param {String}             (Optional) The Idempotency-Key header
+   * @param {Send}               Sends the contact request
+   * @return Custom Response with success or failure message
+   */
+  public CustomResponse send(ContactRequestBody request, String idempotencyKey, Send send)
+      throws UtilitiesApiException {
+    if (!enabled) {
+      return send.send();
+    }
+
+    String key = key(request, idempotencyKey);
+    request.setIdempotencyKey(idempotencyKey != null ? key : null);
+
+    CompletableFuture<CustomResponse> execution = new CompletableFuture<>();
+    CompletableFuture<CustomResponse> original;
+    while ((original = requests.asMap().putIfAbsent(key, execution)) != null) {
+      log.info("Contact request is a duplicate of one sent by this instance");
+      duplicate("memory");
+      try {
+        return await(original);
+      } catch (CancellationException ex) {
+        // The original's client cancelled it, and it was forgotten
+        log.info("Original contact request was cancelled, sending the duplicate instead");
+      }
+    }
+
+    try {
+      CustomResponse response = sendOnce(request, send);
+      if (response.hasError()) {
+        requests.asMap().remove(key, execution);
+      }
+      execution.complete(response);
+      return response;
+    } catch (UtilitiesApiException | RuntimeException ex) {
+      requests.asMap().remove(key, execution);
+      execution.completeExceptionally(ex);
+      throw ex;
+    }
+  }
+
+  /**
+   * Sends a contact request without blocking, unless it is a duplicate of one
+   * that was already sent
+   *
+   * @param {ContactRequestBody} The request body, which gets the request's key
+   * @param {String}             (Optional) The Idempotency-Key header
+   * @param {Saved}              Whether the contact request was already saved
+   * @param {Supplier}           Sends the contact request
+   * @return Custom Response with success or failure message
+   */
+  public Mono<CustomResponse> send(ContactRequestBody request, String idempotencyKey,
+      Saved saved, Supplier<Mono<CustomResponse>> send) {
+    if (!enabled) {
+      return send.get();
+    }
+
+    return Mono.defer(() -> {
+      String key = key(request, idempotencyKey);
+      request.setIdempotencyKey(idempotencyKey != null ? key : null);
+      return send(key, request, saved, send);
+    });
+  }
+
+  /*
+   * Sends a contact request by its key, or waits for the request with the same
+   * key that is being sent. If that one is cancelled, this one is sent instead.
+   */
+  private Mono<CustomResponse> send(String key, ContactRequestBody request, Saved saved,
+      Supplier<Mono<CustomResponse>> send) {
+    return Mono.defer(() -> {
+      CompletableFuture<CustomResponse> execution = new CompletableFuture<>();
+      CompletableFuture<CustomResponse> original = requests.asMap().putIfAbsent(key, execution);
+      if (original != null) {
+        log.info("Contact request is a duplicate of one sent by this instance");
+        duplicate("memory");
+        // Cancelling the duplicate must not cancel the original
+        return Mono.fromFuture(original, true)
+            .onErrorResume(CancellationException.class, ex -> {
+              log.info("Original contact request was cancelled, sending the duplicate instead");
+              return send(key, request, saved, send);
+            });
+      }
+
+      return sendOnce(request, saved, send)
+          .doOnNext(response -> {
+            if (response.hasError()) {
+              requests.asMap().remove(key, execution);
+            }
+            execution.complete(response);
+          })
+          .doOnError(ex -> {
+            requests.asMap().remove(key, execution);
+            execution.completeExceptionally(ex);
+          })
+          .doOnCancel(() -> {
+            // Duplicates waiting for it are sent again
+            requests.asMap().remove(key, execution);
+            execution.cancel(false);
+          });
+    });
+  }
+
+  /*
+   * Sends the contact request if it isn't in the database yet, like the
+   * blocking sendOnce
+   */
+  private Mono<CustomResponse> sendOnce(ContactRequestBody request, Saved saved,
+      Supplier<Mono<CustomResponse>> send) {
+    return saved.saved(request, since()).flatMap(found -> {
+      if (found) {
+        log.info("Contact request is a duplicate of one in the database");
+        duplicate("database");
+        return Mono.just((CustomResponse) new SuccessResponse(Constants.SUCCESS_DETAILS_SEND_CONTACT_REQUEST));
+      }
+
+      return send.get().onErrorResume(UtilitiesApiException.class,
+          ex -> !Constants.ERROR_CODE_DATABASE_SAVE_CR.equals(ex.getErrorResponse().getCode())
+              ? Mono.error(ex)
+              : saved.saved(request, since()).flatMap(savedConcurrently -> {
+                if (!savedConcurrently) {
+                  return Mono.error(ex);
+                }
+                log.info("Contact request was saved by a concurrent duplicate");
+                duplicate("database");
+                return Mono.just(new SuccessResponse(Constants.SUCCESS_DETAILS_SEND_CONTACT_REQUEST));
+              }));
+    });
+  }
+
+  /*
+   * Sends the contact request if it isn't in the database yet. If saving it
+   * fails because the same request was saved in the meantime, it was sent by
+   * another instance and this one's transaction was rolled back.
+   */
+  private CustomResponse sendOnce(ContactRequestBody request, Send send) throws UtilitiesApiException {
+    if (saved(request)) {
+      log.info("Contact request is a duplicate of one in the database");
+      duplicate("database");
+      return new SuccessResponse(Constants.SUCCESS_DETAILS_SEND_CONTACT_REQUEST);
+    }
+
+    try {
+      return send.send();
+    } catch (UtilitiesApiException ex) {
+      if (Constants.ERROR_CODE_DATABASE_SAVE_CR.equals(ex.getErrorResponse().getCode())
+          && saved(request)) {
+        log.info("Contact request was saved by a concurrent duplicate");
+        duplicate("database");
+        return new SuccessResponse(Constants.SUCCESS_DETAILS_SEND_CONTACT_REQUEST);
+      }
+      throw ex;
+    }
+  }
+
+  /*
+   * Whether the contact request is in the database, by its idempotency key, or
+   * by its email and message if it was sent within the window
+   */
+  private boolean saved(ContactRequestBody request) {
+    if (request.getIdempotencyKey() != null) {
+      return contactRepository.existsByIdempotencyKey(request.getIdempotencyKey());
+    }
+    List<String> messages = contactRepository.findMessagesByEmailSince(fingerprintEmail(request), since());
+    return messages.stream().anyMatch(message -> sameMessage(message, request));
+  }
+
+  // Fingerprinted requests saved after this are duplicates
+  private LocalDateTime since() {
+    return LocalDateTime.now().minus(Duration.ofMillis(window));
+  }
+
+  /*
+   * The key of a contact request. Idempotency keys are only unique per sender.
+   * Fingerprints aren't tied to a time, the same message is only sent again
+   * once its request expired from the cache, a window after it was sent.
+   */
+  String key(ContactRequestBody request, String idempotencyKey) {
+    String email = fingerprintEmail(request);
+    String identity = idempotencyKey != null
+        ? "key\n" + email + "\n" + idempotencyKey
+        : "fingerprint\n" + email + "\n" + request.getMessage().strip();
+
+    return Sha256Hasher.toHex(Sha256Hasher.digest(identity));
+  }
+
+  /*
+   * The sender's email as it is fingerprinted, and looked up in the database
+   * with LOWER
+   */
+  static String fingerprintEmail(ContactRequestBody request) {
+    return request.getEmail().toLowerCase(Locale.ROOT);
+  }
+
+  /*
+   * Whether a saved message is the same as the request's, as fingerprinted
+   */
+  static boolean sameMessage(String savedMessage, ContactRequestBody request) {
+    return savedMessage != null && savedMessage.strip().equals(request.getMessage().strip());
+  }
+
+  private static CustomResponse await(CompletableFuture<CustomResponse> original) throws UtilitiesApiException {
+    try {
+      return original.get();
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while waiting for the original contact request", ex);
+    } catch (ExecutionException ex) {
+      if (ex.getCause() instanceof UtilitiesApiException cause) {
+        throw cause;
+      }
+      if (ex.getCause() instanceof RuntimeException cause) {
+        throw cause;
+      }
+      throw new IllegalStateException(ex.getCause());
+    }
+  }
+
+  private void duplicate(String source) {
+    meterRegistry.counter("contact.requests.duplicate", "source", source).increment();
+  }
+
+  /**
+   * Sends a contact request
+   */
+  @FunctionalInterface
+  public interface Send {
+    CustomResponse send() throws UtilitiesApiException;
+  }
+
+  /**
+   * Whether a contact request was saved, by its idempotency key if it has one,
+   * or else by its email and message, created after a date
+   */
+  @FunctionalInterface
+  public interface Saved {
+    Mono<Boolean> saved(ContactRequestBody request, LocalDateTime since);
+  }
+}
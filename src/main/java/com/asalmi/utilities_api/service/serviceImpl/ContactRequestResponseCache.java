@@ -0,0 +1,138 @@
+package com.asalmi.utilities_api.service.serviceImpl;
+
+import java.time.Duration;
+
+import com.asalmi.utilities_api.constants.Constants;
+import com.asalmi.utilities_api.exception.UtilitiesApiException;
+import com.asalmi.utilities_api.model.ContactRequest;
+import com.asalmi.utilities_api.model.RenderedContactRequest;
+import com.asalmi.utilities_api.utils.Sha256Hasher;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.CacheControl;
+import org.springframework.stereotype.Component;
+
+import reactor.core.publisher.Mono;
+
+/**
+ * Keeps the rendered responses of single contact requests, so that polling a
+ * contact request doesn't read it from the database and serialize it every
+ * time.
+ *
+ * Contact requests never change once they are saved, so a rendered response
+ * stays valid, and the cache is only bounded by contact.responsecache
+ * .maximumsize. The ETag is the SHA-256 of the response body, so it changes
+ * only if the row's contents do. Contact requests are personal data, so
+ * responses are private: only the client may keep them, and only for the short
+ * contact.responsecache.maxage, after which it revalidates them with
+ * If-None-Match. Shared caches never store them. Hits and misses are recorded
+ * as "contact.responsecache" cache metrics.
+ */
+@Component
+public class ContactRequestResponseCache {
+
+  private final ObjectMapper objectMapper;
+  private final CacheControl cacheControl;
+
+  // Rendered responses by contact request id
+  private final Cache<Long, RenderedContactRequest> responses;
+
+  @Autowired
+  public ContactRequestResponseCache(ObjectMapper objectMapper, MeterRegistry meterRegistry,
+      @Value("${contact.responsecache.maximumsize}") long maximumSize,
+      @Value("${contact.responsecache.maxage}") long maxAge) {
+    this.objectMapper = objectMapper;
+    this.cacheControl = CacheControl.maxAge(Duration.ofMillis(maxAge)).cachePrivate();
+    this.responses = Caffeine.newBuilder()
+        .maximumSize(maximumSize)
+        .recordStats()
+        .build();
+
+    CaffeineCacheMetrics.monitor(meterRegistry, responses, "contact.responsecache");
+  }
+
+  /**
+   * Gets the rendered response of a contact request, rendering it if it isn't
+   * cached yet
+   *
+   * @param {Long} Contact request ID
+   * @param {Load} Gets the contact request from the database
+   * @return Rendered contact request, or null if there is none with the ID
+   */
+  public RenderedContactRequest get(Long id, Load load) throws UtilitiesApiException {
+    RenderedContactRequest rendered = responses.getIfPresent(id);
+    if (rendered != null) {
+      return rendered;
+    }
+
+    // Missing contact requests aren't cached, since they may be saved later
+    ContactRequest contactRequest = load.load();
+    if (contactRequest == null) {
+      return null;
+    }
+    rendered = render(contactRequest);
+    responses.put(id, rendered);
+    return rendered;
+  }
+
+  /**
+   * Gets the rendered response of a contact request without blocking, rendering
+   * it if it isn't cached yet
+   *
+   * @param {Long} Contact request ID
+   * @param {Mono} Gets the contact request from the database, only subscribed
+   *               to if it isn't cached
+   * @return Rendered contact request, or empty if there is none with the ID
+   */
+  public Mono<RenderedContactRequest> get(Long id, Mono<ContactRequest> load) {
+    return Mono.defer(() -> {
+      RenderedContactRequest rendered = responses.getIfPresent(id);
+      if (rendered != null) {
+        return Mono.just(rendered);
+      }
+
+      return load.handle((contactRequest, sink) -> {
+        try {
+          RenderedContactRequest loaded = render(contactRequest);
+          responses.put(id, loaded);
+          sink.next(loaded);
+        } catch (UtilitiesApiException ex) {
+          sink.error(ex);
+        }
+      });
+    });
+  }
+
+  /**
+   * How long the client may keep a rendered contact request. Responses are
+   * private, so shared caches don't keep them at all.
+   */
+  public CacheControl getCacheControl() {
+    return cacheControl;
+  }
+
+  private RenderedContactRequest render(ContactRequest contactRequest) throws UtilitiesApiException {
+    try {
+      byte[] body = objectMapper.writeValueAsBytes(contactRequest);
+      return new RenderedContactRequest(body, "\"" + Sha256Hasher.toHex(Sha256Hasher.digest(body)) + "\"");
+    } catch (JsonProcessingException ex) {
+      throw new UtilitiesApiException(Constants.ERROR_CODE_DATABASE_FETCH_CR, ex.getMessage());
+    }
+  }
+
+  /**
+   * Gets a contact request
+   */
+  @FunctionalInterface
+  public interface Load {
+    ContactRequest load() throws UtilitiesApiException;
+  }
+}
@@ -0,0 +1,253 @@
+package com.asalmi.utilities_api.service.serviceImpl;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Saves contact requests, grouping the saves of concurrent requests into a
+ * single transaction when the write-behind buffer is enabled.
+ *
+ * Saves are queued and written by one thread, which waits at most the linger
+ * time after the first queued save for more to arrive, up to the batch size.
+ * Contact requests get their ids from a pooled sequence, so the inserts of a
+ * batch are sent to the database as JDBC batches on commit. Callers wait for
+ * their save to be committed, so a saved contact request is never only in
+ * memory. If a batch fails, its saves are retried one transaction each, so
+ * one bad contact request doesn't fail the others, and if the buffer is full
+ * the caller saves its contact request itself.
+ *
+ * Saves are only queued while the writer is running, which shutdown stops
+ * under a lock, so every queued save is written by the writer or the final
+ * drain. Callers wait at most contact.writebehind.timeout for their save, and
+ * the writer as long to finish when shutting down, after which the saves still
+ * queued fail.
+ *
+ * The number of saves per transaction is recorded as
+ * "contact.writebehind.batchsize".
+ */
+@Component
+public class ContactRequestWriter {
+  @Autowired
+  private PlatformTransactionManager transactionManager;
+
+  @Autowired
+  private MeterRegistry meterRegistry;
+
+  @Value("${contact.writebehind.enabled}")
+  private boolean enabled;
+
+  @Value("${contact.writebehind.linger}")
+  private long linger;
+
+  @Value("${contact.writebehind.batchsize}")
+  private int batchSize;
+
+  @Value("${contact.writebehind.queuesize}")
+  private int queueSize;
+
+  @Value("${contact.writebehind.timeout}")
+  private long timeout;
+
+  private TransactionTemplate transactionTemplate;
+  private DistributionSummary batchSizes;
+  private BlockingQueue<Write> queue;
+  private Thread writer;
+  private volatile boolean running;
+
+  // Held to queue saves, and exclusively to stop queueing them
+  private final ReadWriteLock queueing = new ReentrantReadWriteLock();
+
+  private static final Logger log = LogManager.getLogger(ContactRequestWriter.class);
+
+  // How long the idle writer waits for a save before checking for shutdown (ms)
+  private static final long IDLE_POLL = 100;
+
+  @PostConstruct
+  public void init() {
+    transactionTemplate = new TransactionTemplate(transactionManager);
+    batchSizes = DistributionSummary.builder("contact.writebehind.batchsize")
+        .register(meterRegistry);
+
+    if (!enabled) {
+      return;
+    }
+    queue = new ArrayBlockingQueue<>(queueSize);
+    running = true;
+    CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("contact-writer-");
+    threadFactory.setDaemon(true);
+    writer = threadFactory.newThread(this::run);
+    writer.start();
+  }
+
+  @PreDestroy
+  public void shutdown() throws InterruptedException {
+    if (writer == null) {
+      return;
+    }
+    // Queued saves are still written before the writer stops, and no more are
+    // queued once it is stopping
+    queueing.writeLock().lock();
+    try {
+      running = false;
+    } finally {
+      queueing.writeLock().unlock();
+    }
+    writer.join(timeout);
+
+    List<Write> remaining = new ArrayList<>();
+    queue.drainTo(remaining);
+    if (!writer.isAlive()) {
+      if (!remaining.isEmpty()) {
+        writeAll(remaining);
+      }
+      return;
+    }
+
+    // The writer is stuck on a batch, fail the saves it won't get to
+    log.error("Contact request writer didn't stop within " + timeout + "ms, failing " + remaining.size()
+        + " queued contact requests");
+    writer.interrupt();
+    IllegalStateException stopped = new IllegalStateException("Contact request writer was shut down");
+    remaining.forEach(write -> write.committed.completeExceptionally(stopped));
+  }
+
+  /**
+   * Runs a save of a contact request in a transaction, and returns once it is
+   * committed
+   *
+   * @param {Runnable} Saves the contact request with the repositories
+   */
+  public void write(Runnable save) {
+    Write write = new Write(save);
+    if (!enabled || !queue(write)) {
+      writeAll(List.of(write));
+    }
+
+    try {
+      write.committed.get(timeout, TimeUnit.MILLISECONDS);
+    } catch (ExecutionException ex) {
+      if (ex.getCause() instanceof RuntimeException cause) {
+        throw cause;
+      }
+      throw new IllegalStateException(ex.getCause());
+    } catch (TimeoutException ex) {
+      throw new IllegalStateException("Contact request wasn't saved within " + timeout + "ms");
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while waiting for the contact request to be saved", ex);
+    }
+  }
+
+  /*
+   * Queues a save for the writer, unless it is stopping or the buffer is full
+   */
+  private boolean queue(Write write) {
+    queueing.readLock().lock();
+    try {
+      if (!running) {
+        return false;
+      }
+      if (!queue.offer(write)) {
+        log.warn("Write-behind buffer is full, saving contact request directly");
+        return false;
+      }
+      return true;
+    } finally {
+      queueing.readLock().unlock();
+    }
+  }
+
+  private void run() {
+    List<Write> batch = new ArrayList<>(batchSize);
+    while (running || !queue.isEmpty()) {
+      try {
+        Write first = queue.poll(IDLE_POLL, TimeUnit.MILLISECONDS);
+        if (first == null) {
+          continue;
+        }
+        batch.add(first);
+
+        // Wait for more saves, until the batch is full or the first one lingered
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(linger);
+        while (batch.size() < batchSize) {
+          long remaining = deadline - System.nanoTime();
+          Write next = remaining > 0 && running ? queue.poll(remaining, TimeUnit.NANOSECONDS) : queue.poll();
+          if (next == null) {
+            break;
+          }
+          batch.add(next);
+        }
+      } catch (InterruptedException ex) {
+        // Nothing else interrupts the writer's own thread, stop after the queued saves
+        running = false;
+      }
+
+      if (!batch.isEmpty()) {
+        writeAll(batch);
+        batch = new ArrayList<>(batchSize);
+      }
+    }
+  }
+
+  /*
+   * Runs the saves in one transaction, or each in its own transaction if that
+   * fails
+   */
+  private void writeAll(List<Write> batch) {
+    try {
+      transactionTemplate.executeWithoutResult(status -> batch.forEach(write -> write.save.run()));
+      batchSizes.record(batch.size());
+      batch.forEach(write -> write.committed.complete(null));
+      return;
+    } catch (RuntimeException ex) {
+      if (batch.size() == 1) {
+        batch.get(0).committed.completeExceptionally(ex);
+        return;
+      }
+      log.warn("Failed to save " + batch.size() + " contact requests together, saving them one at a time: "
+          + ex.getMessage());
+    }
+
+    for (Write write : batch) {
+      try {
+        transactionTemplate.executeWithoutResult(status -> write.save.run());
+        batchSizes.record(1);
+        write.committed.complete(null);
+      } catch (RuntimeException ex) {
+        write.committed.completeExceptionally(ex);
+      }
+    }
+  }
+
+  private static class Write {
+    private final Runnable save;
+    private final CompletableFuture<Void> committed = new CompletableFuture<>();
+
+    Write(Runnable save) {
+      this.save = save;
+    }
+  }
+}
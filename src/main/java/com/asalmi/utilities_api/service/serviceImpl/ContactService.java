@@ -1,22 +1,43 @@
 package com.asalmi.utilities_api.service.serviceImpl;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+import java.util.Iterator;
 import java.util.List;
+import java.util.stream.Stream;
 
 import com.asalmi.utilities_api.constants.Constants;
 import com.asalmi.utilities_api.exception.UtilitiesApiException;
+import com.asalmi.utilities_api.model.ContactEmail;
+import com.asalmi.utilities_api.model.ContactExportFormat;
 import com.asalmi.utilities_api.model.ContactRequest;
 import com.asalmi.utilities_api.model.ContactRequestBody;
+import com.asalmi.utilities_api.model.ContactRequestPage;
+import com.asalmi.utilities_api.model.ContactRequestView;
 import com.asalmi.utilities_api.model.CustomResponse;
 import com.asalmi.utilities_api.model.SuccessResponse;
+import com.asalmi.utilities_api.repository.IContactEmailRepository;
 import com.asalmi.utilities_api.repository.IContactRepository;
 import com.asalmi.utilities_api.service.IContactService;
 import com.asalmi.utilities_api.service.ISendGridService;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.csv.CsvGenerator;
+import com.fasterxml.jackson.dataformat.csv.CsvMapper;
+import com.fasterxml.jackson.dataformat.csv.CsvSchema;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 /**
  * Service class for Contact Request operations
@@ -26,14 +47,59 @@ public class ContactService implements IContactService {
   @Autowired
   private IContactRepository contactRepository;
 
+  @Autowired
+  private IContactEmailRepository contactEmailRepository;
+
   @Autowired
   private ISendGridService sendGridService;
 
+  @Autowired
+  private ContactRequestWriter contactRequestWriter;
+
+  @Autowired
+  private ObjectMapper objectMapper;
+
+  @Value("${contact.outbox.enabled}")
+  private boolean outboxEnabled;
+
+  @Value("${sendgrid.concurrent.enabled}")
+  private boolean concurrentEmails;
+
+  @Value("${contact.page.defaultsize}")
+  private int defaultPageSize;
+
+  @Value("${contact.page.maxsize}")
+  private int maxPageSize;
+
   private static final Logger log = LogManager.getLogger(ContactService.class);
 
+  // Bounds of the created at filter when none is given, the range of a MySQL
+  // DATETIME
+  private static final LocalDateTime EARLIEST = LocalDateTime.of(1000, 1, 1, 0, 0);
+  private static final LocalDateTime LATEST = LocalDateTime.of(9999, 12, 31, 23, 59, 59);
+
+  // Columns of exported CSV files, named like the JSON fields
+  private static final CsvMapper CSV_MAPPER = new CsvMapper();
+  private static final CsvSchema CSV_SCHEMA = CsvSchema.builder()
+      .addColumn("id")
+      .addColumn("name")
+      .addColumn("email")
+      .addColumn("message")
+      .addColumn("phone")
+      .addColumn("createdAt")
+      .setUseHeader(true)
+      .build();
+
   /**
    * Send a contact request to Alex Salmi, and a confirmation email to the sender
    * 
+   * When the outbox is enabled, the contact request is saved along with its two
+   * pending emails in a single transaction, and the emails are sent in the
+   * background. Otherwise both emails are sent before the contact request is
+   * saved, either one after the other or at the same time. The contact request
+   * is saved by the Contact Request Writer, along with those of other concurrent
+   * requests.
+   * 
    * @param {ContactRequestBody} The request body, including the sender's email,
    *                             name, message, and phone number (optional)
    * @return Custom Response with success or failure message
@@ -41,34 +107,30 @@ public class ContactService implements IContactService {
   public CustomResponse send(ContactRequestBody request) throws UtilitiesApiException {
     log.info("Started send contact request operation");
 
-    // Send contact request email to Alex Salmi's email
-    CustomResponse sgResponse = sendGridService.sendContactRequest(request);
-    if (sgResponse.hasError()) {
-      return sgResponse;
-    }
-
-    // Send email to user's email notifying them that Alex got their message
-    sgResponse = sendGridService.sendNotificationEmail(request);
-    if (sgResponse.hasError()) {
-      return sgResponse;
-    }
-
-    // Build contact request entity to save to database
-    ContactRequest message = ContactRequest.builder()
-        .name(request.getName())
-        .email(request.getEmail())
-        .message(request.getMessage())
-        .createdAt(LocalDateTime.now())
-        .build();
+    if (!outboxEnabled && concurrentEmails) {
+      // Send both emails at the same time, nothing is saved if either fails
+      CustomResponse sgResponse = sendGridService.sendContactRequestEmails(request);
+      if (sgResponse.hasError()) {
+        return sgResponse;
+      }
+    } else if (!outboxEnabled) {
+      // Send contact request email to Alex Salmi's email
+      CustomResponse sgResponse = sendGridService.sendContactRequest(request);
+      if (sgResponse.hasError()) {
+        return sgResponse;
+      }
 
-    if (request.getPhone() != null) {
-      message.setPhone(request.getPhone());
+      // Send email to user's email notifying them that Alex got their message
+      sgResponse = sendGridService.sendNotificationEmail(request);
+      if (sgResponse.hasError()) {
+        return sgResponse;
+      }
     }
 
     // Save contact request to database
     try {
       log.info("Saving contact request to database");
-      contactRepository.save(message);
+      contactRequestWriter.write(() -> save(request));
     } catch (Exception ex) {
       log.info("Failed to save contact request to database: " + ex.getMessage());
       throw new UtilitiesApiException(Constants.ERROR_CODE_DATABASE_SAVE_CR, ex.getMessage());
@@ -79,29 +141,78 @@ public class ContactService implements IContactService {
   }
 
   /**
-   * Get contact requests from the database
+   * Get a page of contact requests from the database, in the order they were
+   * created
    * 
-   * @param {String} (Optional) Email address
-   * @return List of contact request entries
+   * Pages start where the previous page ended, rather than at an offset, so
+   * every page is read with an index range scan of the same size, however many
+   * contact requests come before it.
+   * 
+   * @param {String}        (Optional) Email address
+   * @param {LocalDateTime} (Optional) Only contact requests created at or after
+   * @param {LocalDateTime} (Optional) Only contact requests created before
+   * @param {String}        (Optional) Cursor of the page, from the previous page
+   * @param {Integer}       (Optional) Maximum number of contact requests
+   * @return Page of contact request entries, and the cursor of the next page
    */
-  public List<ContactRequest> get(String email) throws UtilitiesApiException {
+  @Transactional(readOnly = true)
+  public ContactRequestPage get(String email, LocalDateTime from, LocalDateTime to, String cursor, Integer limit)
+      throws UtilitiesApiException {
+    ContactRequest start = pageStart(from, cursor);
+    LocalDateTime afterCreatedAt = start.getCreatedAt();
+    Long afterId = start.getId();
+    LocalDateTime before = pageEnd(to);
+    int size = pageSize(limit, defaultPageSize, maxPageSize);
+
     try {
       log.info("Fetching contact requests from database");
 
-      // If no email was present in query, return all contact requests from database
+      // Fetch one more than the page size, to know whether there is a next page
+      PageRequest page = PageRequest.ofSize(size + 1);
+      List<ContactRequestView> contactRequests;
       if (email == null) {
-        return contactRepository.findAll();
+        contactRequests = contactRepository.findPage(afterCreatedAt, afterId, before, page);
+      } else {
+        // If email address was present, only return contact requests with that email
+        log.info("Searching for contact requests with email address " + email);
+        contactRequests = contactRepository.findPageByEmail(email, afterCreatedAt, afterId, before, page);
       }
 
-      // If email address was present, return all contact requests with that email
-      log.info("Searching for contact requests with email address " + email);
-      return contactRepository.findByEmail(email);
+      return page(contactRequests, size);
     } catch (Exception ex) {
       log.error("Failed to fetch contact requests from database: " + ex.getMessage());
       throw new UtilitiesApiException(Constants.ERROR_CODE_DATABASE_FETCH_CR, ex.getMessage());
     }
   }
 
+  /**
+   * Export all contact requests from the database, in the order they were
+   * created
+   * 
+   * Contact requests are read from a database cursor and written to the output
+   * one at a time, as read-only views that aren't kept by the persistence
+   * context, so memory use doesn't grow with the number of contact requests.
+   * 
+   * @param {ContactExportFormat} The format to write
+   * @param {OutputStream}        Where to write the contact requests, left open
+   */
+  @Transactional(readOnly = true)
+  public void export(ContactExportFormat format, OutputStream out) throws IOException {
+    log.info("Exporting contact requests from database as " + format);
+
+    long count = 0;
+    try (Stream<ContactRequestView> contactRequests = contactRepository.streamAll();
+        JsonGenerator generator = exportGenerator(objectMapper, format, out, true)) {
+      Iterator<ContactRequestView> iterator = contactRequests.iterator();
+      while (iterator.hasNext()) {
+        writeExportRow(generator, format, iterator.next());
+        count++;
+      }
+    }
+
+    log.info("Exported " + count + " contact requests");
+  }
+
   /**
    * Get a specific contact request from the database
    * 
@@ -119,4 +230,192 @@ public class ContactService implements IContactService {
       throw new UtilitiesApiException(Constants.ERROR_CODE_DATABASE_FETCH_CR, ex.getMessage());
     }
   }
+
+  /*
+   * Pages and exports, shared with the reactive contact service
+   */
+
+  /**
+   * Where a page starts: after the cursor's contact request, or at the start of
+   * the date range if that is later
+   * 
+   * @param {LocalDateTime} (Optional) Only contact requests created at or after
+   * @param {String}        (Optional) Cursor of the page, from the previous page
+   * @return Contact request with only the created at and id to start after
+   */
+  static ContactRequest pageStart(LocalDateTime from, String cursor) throws UtilitiesApiException {
+    LocalDateTime afterCreatedAt = from == null ? EARLIEST : from;
+    Long afterId = 0L;
+    if (cursor != null) {
+      ContactRequest last = decodeCursor(cursor);
+      if (last.getCreatedAt().isAfter(afterCreatedAt)
+          || (last.getCreatedAt().isEqual(afterCreatedAt) && last.getId() > afterId)) {
+        afterCreatedAt = last.getCreatedAt();
+        afterId = last.getId();
+      }
+    }
+    return ContactRequest.builder().createdAt(afterCreatedAt).id(afterId).build();
+  }
+
+  // Where a page ends, before the end of the date range
+  static LocalDateTime pageEnd(LocalDateTime to) {
+    return to == null ? LATEST : to;
+  }
+
+  // How many contact requests a page has at most
+  static int pageSize(Integer limit, int defaultPageSize, int maxPageSize) {
+    return Math.max(1, Math.min(limit == null ? defaultPageSize : limit, maxPageSize));
+  }
+
+  /**
+   * Build a page from the contact requests read for it, one more than the page
+   * size if there is a next page
+   * 
+   * @param {List<ContactRequestView>} The contact requests read
+   * @param {int}                      The page size
+   * @return Page of contact request entries, and the cursor of the next page
+   */
+  static ContactRequestPage page(List<ContactRequestView> contactRequests, int size) {
+    if (contactRequests.size() <= size) {
+      return new ContactRequestPage(contactRequests, null);
+    }
+    contactRequests = contactRequests.subList(0, size);
+    return new ContactRequestPage(contactRequests, encodeCursor(contactRequests.get(size - 1)));
+  }
+
+  /**
+   * Create a streaming generator for an export, which doesn't close the output
+   * 
+   * @param {ObjectMapper}        Serializes the JSON formats
+   * @param {ContactExportFormat} The format to write
+   * @param {OutputStream}        Where to write the contact requests
+   * @param {boolean}             Whether to start with the CSV header
+   * @return Generator for the format
+   */
+  static JsonGenerator exportGenerator(ObjectMapper objectMapper, ContactExportFormat format, OutputStream out,
+      boolean header) throws IOException {
+    JsonGenerator generator;
+    if (format == ContactExportFormat.CSV) {
+      CsvGenerator csvGenerator = CSV_MAPPER.getFactory().createGenerator(out);
+      csvGenerator.setSchema(header ? CSV_SCHEMA : CSV_SCHEMA.withoutHeader());
+      generator = csvGenerator;
+    } else {
+      // Serialized like the responses of the other endpoints
+      generator = objectMapper.getFactory().createGenerator(out);
+    }
+    return generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+  }
+
+  /**
+   * Write a contact request as a line of an export
+   * 
+   * @param {JsonGenerator}       The export's generator
+   * @param {ContactExportFormat} The format to write
+   * @param {ContactRequestView}  The contact request
+   */
+  static void writeExportRow(JsonGenerator generator, ContactExportFormat format, ContactRequestView contactRequest)
+      throws IOException {
+    if (format == ContactExportFormat.CSV) {
+      writeCsvRow(generator, contactRequest);
+    } else {
+      generator.writeObject(contactRequest);
+      generator.writeRaw('\n');
+    }
+  }
+
+  /**
+   * Write a contact request as a CSV row
+   * 
+   * @param {JsonGenerator}      The CSV generator
+   * @param {ContactRequestView} The contact request
+   */
+  private static void writeCsvRow(JsonGenerator generator, ContactRequestView contactRequest) throws IOException {
+    generator.writeStartArray();
+    generator.writeNumber(contactRequest.getId());
+    generator.writeString(contactRequest.getName());
+    generator.writeString(contactRequest.getEmail());
+    generator.writeString(contactRequest.getMessage());
+    // Written as an empty cell, the CSV generator doesn't keep the column of null values
+    generator.writeString(contactRequest.getPhone() != null ? contactRequest.getPhone() : "");
+    generator.writeString(DateTimeFormatter.ISO_LOCAL_DATE_TIME.format(contactRequest.getCreatedAt()));
+    generator.writeEndArray();
+  }
+
+  /**
+   * Encode the position of a contact request as an opaque cursor
+   * 
+   * @param {ContactRequestView} The last contact request of a page
+   * @return Cursor of the next page
+   */
+  private static String encodeCursor(ContactRequestView last) {
+    String position = last.getCreatedAt() + "," + last.getId();
+    return Base64.getUrlEncoder().withoutPadding().encodeToString(position.getBytes(StandardCharsets.UTF_8));
+  }
+
+  /**
+   * Decode a cursor into the position of the contact request it ends with
+   * 
+   * @param {String} Cursor of a page
+   * @return Contact request with only the created at and id
+   */
+  private static ContactRequest decodeCursor(String cursor) throws UtilitiesApiException {
+    try {
+      String position = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+      int separator = position.lastIndexOf(',');
+      return ContactRequest.builder()
+          .createdAt(LocalDateTime.parse(position.substring(0, separator)))
+          .id(Long.parseLong(position.substring(separator + 1)))
+          .build();
+    } catch (IllegalArgumentException | IndexOutOfBoundsException | DateTimeParseException ex) {
+      throw new UtilitiesApiException(Constants.ERROR_CODE_BAD_REQUEST, "Invalid cursor");
+    }
+  }
+
+  /**
+   * Save a contact request to the database, in the writer's transaction
+   * 
+   * @param {ContactRequestBody} The request body
+   */
+  private void save(ContactRequestBody request) {
+    // Build contact request entity to save to database
+    ContactRequest message = ContactRequest.builder()
+        .name(request.getName())
+        .email(request.getEmail())
+        .message(request.getMessage())
+        .createdAt(LocalDateTime.now())
+        .idempotencyKey(request.getIdempotencyKey())
+        .build();
+
+    if (request.getPhone() != null) {
+      message.setPhone(request.getPhone());
+    }
+
+    message = contactRepository.save(message);
+
+    // Queue both emails, to be sent once the contact request is committed
+    if (outboxEnabled) {
+      log.info("Adding contact request emails to the outbox");
+      contactEmailRepository.saveAll(List.of(
+          pendingEmail(message, ContactEmail.Type.CONTACT_REQUEST),
+          pendingEmail(message, ContactEmail.Type.NOTIFICATION)));
+    }
+  }
+
+  /**
+   * Build an outbox entry for one of a contact request's emails
+   * 
+   * @param {ContactRequest} The saved contact request
+   * @param {Type}           Which of the emails to send
+   * @return Pending contact email entity
+   */
+  private ContactEmail pendingEmail(ContactRequest message, ContactEmail.Type type) {
+    return ContactEmail.builder()
+        .contactRequestId(message.getId())
+        .type(type)
+        .status(ContactEmail.Status.PENDING)
+        .attempts(0)
+        .nextAttemptAt(message.getCreatedAt())
+        .createdAt(message.getCreatedAt())
+        .build();
+  }
 }
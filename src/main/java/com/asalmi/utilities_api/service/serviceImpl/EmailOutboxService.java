@@ -0,0 +1,188 @@
+package com.asalmi.utilities_api.service.serviceImpl;
+
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+
+import com.asalmi.utilities_api.model.ContactEmail;
+import com.asalmi.utilities_api.model.ContactRequest;
+import com.asalmi.utilities_api.model.ContactRequestBody;
+import com.asalmi.utilities_api.model.CustomResponse;
+import com.asalmi.utilities_api.repository.IContactEmailRepository;
+import com.asalmi.utilities_api.repository.IContactRepository;
+import com.asalmi.utilities_api.service.IEmailOutboxService;
+import com.asalmi.utilities_api.service.ISendGridService;
+import com.asalmi.utilities_api.utils.VirtualThreads;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Service class for sending the emails in the contact email outbox.
+ *
+ * Every instance polls the outbox and claims due emails one row at a time with
+ * a conditional update, so an email is only ever claimed by one instance. A
+ * claim expires after the claim timeout, so emails claimed by an instance that
+ * stopped are picked up again by another one. Failed emails are retried with
+ * exponential backoff, and given up on after the maximum number of attempts.
+ */
+@Service
+public class EmailOutboxService implements IEmailOutboxService {
+  @Autowired
+  private IContactEmailRepository contactEmailRepository;
+
+  @Autowired
+  private IContactRepository contactRepository;
+
+  @Autowired
+  private ISendGridService sendGridService;
+
+  @Value("${contact.outbox.enabled}")
+  private boolean outboxEnabled;
+
+  @Value("${contact.outbox.workers}")
+  private int workers;
+
+  @Value("${contact.outbox.batchsize}")
+  private int batchSize;
+
+  @Value("${contact.outbox.claimtimeout}")
+  private long claimTimeout;
+
+  @Value("${contact.outbox.maxattempts}")
+  private int maxAttempts;
+
+  @Value("${contact.outbox.retrybackoff}")
+  private long retryBackoff;
+
+  @Value("${threads.virtual.enabled}")
+  private boolean virtualThreads;
+
+  // Identifies this instance's claims
+  private final String owner = ManagementFactory.getRuntimeMXBean().getName() + "-" + UUID.randomUUID();
+
+  private ExecutorService executor;
+
+  // Completes once every email claimed by the last poll has been sent
+  private volatile CompletableFuture<Void> inFlight = CompletableFuture.completedFuture(null);
+
+  private static final Logger log = LogManager.getLogger(EmailOutboxService.class);
+
+  // Longest error message kept on an email
+  private static final int MAX_ERROR_LENGTH = 1024;
+
+  @PostConstruct
+  public void init() {
+    if (virtualThreads) {
+      // A poll never claims more than the batch size
+      executor = VirtualThreads.newPerTaskExecutor("email-outbox-");
+      return;
+    }
+    CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("email-outbox-");
+    threadFactory.setDaemon(true);
+    executor = Executors.newFixedThreadPool(workers, threadFactory);
+  }
+
+  @PreDestroy
+  public void shutdown() {
+    executor.shutdown();
+  }
+
+  /**
+   * Scheduled method to send the pending emails in the outbox. Claimed emails are
+   * sent concurrently by the workers, and polls are skipped until they are all
+   * done. The poll returns as soon as the emails are claimed, so the sends don't
+   * hold up the other scheduled jobs.
+   */
+  @Scheduled(fixedDelayString = "${contact.outbox.pollinterval}", initialDelayString = "${contact.outbox.pollinterval}")
+  public void dispatch() {
+    if (!outboxEnabled || !inFlight.isDone()) {
+      return;
+    }
+
+    try {
+      LocalDateTime now = LocalDateTime.now();
+      List<Long> ids = contactEmailRepository.findClaimableIds(now, PageRequest.ofSize(batchSize));
+      if (ids.isEmpty()) {
+        return;
+      }
+
+      LocalDateTime claimedUntil = now.plus(Duration.ofMillis(claimTimeout));
+      CompletableFuture<?>[] sends = ids.stream()
+          .filter(id -> contactEmailRepository.claim(id, owner, now, claimedUntil) == 1)
+          .map(id -> CompletableFuture.runAsync(() -> send(id), executor)
+              .exceptionally(ex -> {
+                log.error("Failed to send email " + id + ": " + ex.getMessage());
+                return null;
+              }))
+          .toArray(CompletableFuture[]::new);
+
+      log.info("Claimed " + sends.length + " of " + ids.size() + " pending emails");
+      inFlight = CompletableFuture.allOf(sends);
+    } catch (Exception ex) {
+      log.error("Failed to dispatch pending emails: " + ex.getMessage());
+    }
+  }
+
+  /**
+   * Sends a claimed email and records the outcome
+   *
+   * @param {Long} The id of the claimed email
+   */
+  private void send(Long id) {
+    ContactEmail email = contactEmailRepository.findById(id).orElse(null);
+    if (email == null) {
+      return;
+    }
+
+    int attempts = email.getAttempts() + 1;
+    String error;
+    try {
+      ContactRequest contactRequest = contactRepository.findOneById(email.getContactRequestId());
+      ContactRequestBody request = ContactRequestBody.builder()
+          .name(contactRequest.getName())
+          .email(contactRequest.getEmail())
+          .message(contactRequest.getMessage())
+          .phone(contactRequest.getPhone())
+          .build();
+
+      CustomResponse sgResponse = email.getType() == ContactEmail.Type.CONTACT_REQUEST
+          ? sendGridService.sendContactRequest(request)
+          : sendGridService.sendNotificationEmail(request);
+
+      if (!sgResponse.hasError()) {
+        contactEmailRepository.release(id, owner, ContactEmail.Status.SENT, attempts, email.getNextAttemptAt(),
+            null, LocalDateTime.now());
+        return;
+      }
+      error = sgResponse.getMessage() + ": " + sgResponse.getDetails();
+    } catch (Exception ex) {
+      error = ex.getMessage();
+    }
+
+    // Retry later, waiting twice as long after every failed attempt
+    ContactEmail.Status status = attempts < maxAttempts ? ContactEmail.Status.PENDING : ContactEmail.Status.FAILED;
+    LocalDateTime nextAttemptAt = LocalDateTime.now()
+        .plus(Duration.ofMillis(retryBackoff).multipliedBy(1L << Math.min(attempts - 1, 20)));
+    log.error("Failed to send email " + id + " (attempt " + attempts + "): " + error);
+
+    if (error != null && error.length() > MAX_ERROR_LENGTH) {
+      error = error.substring(0, MAX_ERROR_LENGTH);
+    }
+    contactEmailRepository.release(id, owner, status, attempts, nextAttemptAt, error, null);
+  }
+}
@@ -0,0 +1,323 @@
+package com.asalmi.utilities_api.service.serviceImpl;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import com.asalmi.utilities_api.constants.Constants;
+import com.asalmi.utilities_api.exception.UtilitiesApiException;
+import com.asalmi.utilities_api.model.ContactExportFormat;
+import com.asalmi.utilities_api.model.ContactRequest;
+import com.asalmi.utilities_api.model.ContactRequestBody;
+import com.asalmi.utilities_api.model.ContactRequestPage;
+import com.asalmi.utilities_api.model.ContactRequestView;
+import com.asalmi.utilities_api.model.CustomResponse;
+import com.asalmi.utilities_api.model.SuccessResponse;
+import com.asalmi.utilities_api.service.IReactiveContactService;
+import com.asalmi.utilities_api.service.IReactiveSendGridService;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.r2dbc.spi.Readable;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Service;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Signal;
+
+/**
+ * Service class for Contact Request operations that never block a thread, for
+ * the reactive profile.
+ *
+ * Sending a contact request sends both emails at the same time and then saves
+ * the contact request, like the Contact Service does with the outbox disabled.
+ * Contact requests are read with R2DBC, in the same pages as the Contact
+ * Service reads them, and exports are encoded as rows arrive from the
+ * database, at the pace the subscriber requests them.
+ */
+@Service
+@Profile("reactive")
+public class ReactiveContactService implements IReactiveContactService {
+  @Autowired
+  private DatabaseClient databaseClient;
+
+  @Autowired
+  private IReactiveSendGridService sendGridService;
+
+  @Autowired
+  private ObjectMapper objectMapper;
+
+  @Value("${contact.page.defaultsize}")
+  private int defaultPageSize;
+
+  @Value("${contact.page.maxsize}")
+  private int maxPageSize;
+
+  private static final Logger log = LogManager.getLogger(ReactiveContactService.class);
+
+  private static final String SELECT = "SELECT id, name, email_address, message, phone_number, created_at"
+      + " FROM contact_requests";
+
+  // Pages start after the given created at and id, like the Contact Service's
+  private static final String SELECT_PAGE = SELECT
+      + " WHERE (created_at, id) > (:afterCreatedAt, :afterId) AND created_at < :to";
+  private static final String ORDER_PAGE = " ORDER BY created_at, id LIMIT :limit";
+
+  private static final String SELECT_EXPORT = SELECT + " ORDER BY created_at, id";
+
+  private static final String SELECT_IDEMPOTENCY_KEY = "SELECT id FROM contact_requests"
+      + " WHERE idempotency_key = :idempotencyKey";
+
+  private static final String SELECT_MESSAGES = "SELECT message FROM contact_requests"
+      + " WHERE created_at > :since AND LOWER(email_address) = :email";
+
+  private static final String INSERT = "INSERT INTO contact_requests"
+      + " (id, name, email_address, message, phone_number, created_at, idempotency_key)"
+      + " VALUES (:id, :name, :email, :message, :phone, :createdAt, :idempotencyKey)";
+
+  // How many exported contact requests are encoded into each chunk of the export
+  private static final int EXPORT_CHUNK_SIZE = 100;
+
+  // Contact request ids come from the same sequence table that JPA allocates
+  // them from, one at a time
+  private static final String SELECT_NEXT_ID = "SELECT next_val FROM contact_requests_seq";
+  private static final String UPDATE_NEXT_ID = "UPDATE contact_requests_seq SET next_val = :next"
+      + " WHERE next_val = :current";
+
+  // How often allocating an id is retried when another instance allocated one
+  // at the same time
+  private static final int MAX_ID_ATTEMPTS = 10;
+
+  /**
+   * Send a contact request to Alex Salmi, and a confirmation email to the sender
+   *
+   * Both emails are always attempted, and a failure of the contact request email
+   * is returned first, then a failure of the notification email. The contact
+   * request is only saved once both emails were sent.
+   *
+   * @param {ContactRequestBody} The request body, including the sender's email,
+   *                             name, message, and phone number (optional)
+   * @return Custom Response with success or failure message
+   */
+  public Mono<CustomResponse> send(ContactRequestBody request) {
+    log.info("Started send contact request operation");
+
+    return Mono.zip(
+        sendGridService.sendContactRequest(request).materialize(),
+        sendGridService.sendNotificationEmail(request).materialize())
+        .flatMap(results -> result(results.getT1())
+            .flatMap(sgResponse -> sgResponse.hasError() ? Mono.just(sgResponse) : result(results.getT2())))
+        .flatMap(sgResponse -> sgResponse.hasError() ? Mono.just(sgResponse) : save(request));
+  }
+
+  /**
+   * Get a page of contact requests from the database, in the order they were
+   * created, like the Contact Service
+   *
+   * @param {String}        (Optional) Email address
+   * @param {LocalDateTime} (Optional) Only contact requests created at or after
+   * @param {LocalDateTime} (Optional) Only contact requests created before
+   * @param {String}        (Optional) Cursor of the page, from the previous page
+   * @param {Integer}       (Optional) Maximum number of contact requests
+   * @return Page of contact request entries, and the cursor of the next page
+   */
+  public Mono<ContactRequestPage> get(String email, LocalDateTime from, LocalDateTime to, String cursor,
+      Integer limit) {
+    ContactRequest start;
+    try {
+      start = ContactService.pageStart(from, cursor);
+    } catch (UtilitiesApiException ex) {
+      return Mono.error(ex);
+    }
+    int size = ContactService.pageSize(limit, defaultPageSize, maxPageSize);
+
+    log.info("Fetching contact requests from database");
+
+    // If email address was present, only return contact requests with that email.
+    // Fetch one more than the page size, to know whether there is a next page
+    DatabaseClient.GenericExecuteSpec query = email == null
+        ? databaseClient.sql(SELECT_PAGE + ORDER_PAGE)
+        : databaseClient.sql(SELECT_PAGE + " AND email_address = :email" + ORDER_PAGE).bind("email", email);
+
+    return query.bind("afterCreatedAt", start.getCreatedAt())
+        .bind("afterId", start.getId())
+        .bind("to", ContactService.pageEnd(to))
+        .bind("limit", size + 1)
+        .map(ReactiveContactService::toContactRequestView)
+        .all()
+        .collectList()
+        .map(contactRequests -> ContactService.page(contactRequests, size))
+        .onErrorMap(ex -> !(ex instanceof UtilitiesApiException), ex -> {
+          log.error("Failed to fetch contact requests from database: " + ex.getMessage());
+          return new UtilitiesApiException(Constants.ERROR_CODE_DATABASE_FETCH_CR, ex.getMessage());
+        });
+  }
+
+  /**
+   * Export all contact requests from the database, in the order they were
+   * created, in the same format as the Contact Service
+   *
+   * Contact requests are encoded a chunk at a time as they are read, so memory
+   * use doesn't grow with the number of contact requests.
+   *
+   * @param {ContactExportFormat} The format to write
+   * @return Chunks of the encoded export
+   */
+  public Flux<byte[]> export(ContactExportFormat format) {
+    log.info("Exporting contact requests from database as " + format);
+
+    return databaseClient.sql(SELECT_EXPORT)
+        .map(ReactiveContactService::toContactRequestView)
+        .all()
+        .buffer(EXPORT_CHUNK_SIZE)
+        .index()
+        .map(chunk -> encode(format, chunk.getT2(), chunk.getT1() == 0))
+        .doOnError(ex -> log.error("Failed to export contact requests from database: " + ex.getMessage()));
+  }
+
+  /**
+   * Whether a contact request was saved, by its idempotency key if it has one,
+   * or else by its email, ignoring case, and its message, ignoring leading and
+   * trailing whitespace
+   *
+   * @param {ContactRequestBody} The request body
+   * @param {LocalDateTime}      Only contact requests without a key created after
+   * @return Whether there is a matching contact request
+   */
+  public Mono<Boolean> isSaved(ContactRequestBody request, LocalDateTime since) {
+    if (request.getIdempotencyKey() != null) {
+      return databaseClient.sql(SELECT_IDEMPOTENCY_KEY)
+          .bind("idempotencyKey", request.getIdempotencyKey())
+          .map(row -> true)
+          .first()
+          .defaultIfEmpty(false);
+    }
+
+    // Compared like the deduplicator's fingerprint
+    return databaseClient.sql(SELECT_MESSAGES)
+        .bind("email", ContactRequestDeduplicator.fingerprintEmail(request))
+        .bind("since", since)
+        .map(row -> row.get("message", String.class))
+        .all()
+        .any(message -> ContactRequestDeduplicator.sameMessage(message, request));
+  }
+
+  /**
+   * Get a specific contact request from the database
+   *
+   * @param {Long} Contact request ID
+   * @return Contact request entry, or empty if there is none
+   */
+  public Mono<ContactRequest> getById(Long id) {
+    log.info("Fetching contact request with id " + id + " from database");
+
+    return databaseClient.sql(SELECT + " WHERE id = :id")
+        .bind("id", id)
+        .map(ReactiveContactService::toContactRequest)
+        .one()
+        .onErrorMap(ex -> {
+          log.error("Failed to fetch contact request with id " + id + " from database: " + ex.getMessage());
+          return new UtilitiesApiException(Constants.ERROR_CODE_DATABASE_FETCH_CR, ex.getMessage());
+        });
+  }
+
+  /**
+   * Save the contact request to the database
+   */
+  private Mono<CustomResponse> save(ContactRequestBody request) {
+    log.info("Saving contact request to database");
+
+    return nextId().flatMap(id -> {
+      DatabaseClient.GenericExecuteSpec insert = databaseClient.sql(INSERT)
+          .bind("id", id)
+          .bind("name", request.getName())
+          .bind("email", request.getEmail())
+          .bind("message", request.getMessage())
+          .bind("createdAt", LocalDateTime.now());
+      insert = request.getPhone() == null
+          ? insert.bindNull("phone", String.class)
+          : insert.bind("phone", request.getPhone());
+      insert = request.getIdempotencyKey() == null
+          ? insert.bindNull("idempotencyKey", String.class)
+          : insert.bind("idempotencyKey", request.getIdempotencyKey());
+      return insert.then();
+    })
+        .thenReturn((CustomResponse) new SuccessResponse(Constants.SUCCESS_DETAILS_SEND_CONTACT_REQUEST))
+        .onErrorMap(ex -> {
+          log.info("Failed to save contact request to database: " + ex.getMessage());
+          return new UtilitiesApiException(Constants.ERROR_CODE_DATABASE_SAVE_CR, ex.getMessage());
+        });
+  }
+
+  /*
+   * Allocates the next contact request id, by only moving the sequence on if no
+   * one else did in the meantime
+   */
+  private Mono<Long> nextId() {
+    return databaseClient.sql(SELECT_NEXT_ID)
+        .map(row -> row.get("next_val", Long.class))
+        .one()
+        .flatMap(current -> databaseClient.sql(UPDATE_NEXT_ID)
+            .bind("next", current + 1)
+            .bind("current", current)
+            .fetch()
+            .rowsUpdated()
+            .filter(updated -> updated == 1)
+            .map(updated -> current))
+        .repeatWhenEmpty(MAX_ID_ATTEMPTS, repeats -> repeats);
+  }
+
+  /*
+   * The outcome of one of the emails, which was materialized so that both emails
+   * are always attempted
+   */
+  private static Mono<CustomResponse> result(Signal<CustomResponse> signal) {
+    return signal.hasError() ? Mono.error(signal.getThrowable()) : Mono.justOrEmpty(signal.get());
+  }
+
+  /*
+   * Encodes a chunk of an export, starting with the CSV header if it is the
+   * first one
+   */
+  private byte[] encode(ContactExportFormat format, List<ContactRequestView> contactRequests, boolean first) {
+    ByteArrayOutputStream out = new ByteArrayOutputStream(contactRequests.size() * 256);
+    try (JsonGenerator generator = ContactService.exportGenerator(objectMapper, format, out, first)) {
+      for (ContactRequestView contactRequest : contactRequests) {
+        ContactService.writeExportRow(generator, format, contactRequest);
+      }
+    } catch (IOException ex) {
+      throw new UncheckedIOException(ex);
+    }
+    return out.toByteArray();
+  }
+
+  private static ContactRequestView toContactRequestView(Readable row) {
+    return new ContactRequestView(
+        row.get("id", Long.class),
+        row.get("name", String.class),
+        row.get("email_address", String.class),
+        row.get("message", String.class),
+        row.get("phone_number", String.class),
+        row.get("created_at", LocalDateTime.class));
+  }
+
+  private static ContactRequest toContactRequest(Readable row) {
+    return ContactRequest.builder()
+        .id(row.get("id", Long.class))
+        .name(row.get("name", String.class))
+        .email(row.get("email_address", String.class))
+        .message(row.get("message", String.class))
+        .phone(row.get("phone_number", String.class))
+        .createdAt(row.get("created_at", LocalDateTime.class))
+        .build();
+  }
+}
@@ -0,0 +1,146 @@
+package com.asalmi.utilities_api.service.serviceImpl;
+
+import java.time.Duration;
+import java.util.List;
+
+import com.asalmi.utilities_api.constants.Constants;
+import com.asalmi.utilities_api.exception.UtilitiesApiException;
+import com.asalmi.utilities_api.model.ContactRequestBody;
+import com.asalmi.utilities_api.model.CustomResponse;
+import com.asalmi.utilities_api.model.ErrorResponse;
+import com.asalmi.utilities_api.model.SuccessResponse;
+import com.asalmi.utilities_api.service.IReactiveSendGridService;
+import com.sendgrid.helpers.mail.objects.Email;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
+
+/**
+ * Service class sending the contact request emails with non-blocking calls to
+ * the SendGrid API, for the reactive profile.
+ *
+ * Emails are rendered from the same templates as the blocking service, and
+ * responses are handled the same way: a 202 is a success, other statuses are
+ * returned as errors, and 429 and 5xx responses are retried with jittered
+ * exponential backoff first.
+ */
+@Service
+@Profile("reactive")
+public class ReactiveSendGridService implements IReactiveSendGridService {
+
+  private final WebClient sendGridWebClient;
+  private final SendGridMailTemplate contactRequestTemplate;
+  private final SendGridMailTemplate notificationTemplate;
+
+  @Value("${sendgrid.retry.maxattempts}")
+  private int retryMaxAttempts;
+  @Value("${sendgrid.retry.backoff}")
+  private long retryBackoff;
+  @Value("${sendgrid.retry.maxbackoff}")
+  private long retryMaxBackoff;
+
+  private static final Logger log = LogManager.getLogger(ReactiveSendGridService.class);
+
+  @Autowired
+  public ReactiveSendGridService(WebClient sendGridWebClient,
+      @Value("${sendgrid.templateid.contactrequest}") String contactRequestTemplateId,
+      @Value("${sendgrid.templateid.notificationemail}") String notificationTemplateId) {
+    this.sendGridWebClient = sendGridWebClient;
+    this.contactRequestTemplate = new SendGridMailTemplate(contactRequestTemplateId,
+        SendGridService.CONTACT_REQUEST_FROM);
+    this.notificationTemplate = new SendGridMailTemplate(notificationTemplateId, SendGridService.NOTIFICATION_FROM);
+  }
+
+  /**
+   * Send contact request email to Alex Salmi's email
+   *
+   * @param {ContactRequestBody} The request body
+   * @return Custom Response with success or failure message
+   */
+  public Mono<CustomResponse> sendContactRequest(ContactRequestBody request) {
+    // Rendered on subscription, so that it runs on the subscribing thread
+    return Mono.fromSupplier(() -> contactRequestTemplate.render(new Email(request.getEmail(), request.getName()),
+        List.of(SendGridService.contactRequestPersonalization(contactRequestTemplate, request))))
+        .flatMap(this::sendEmail);
+  }
+
+  /**
+   * Send email to user's email notifying them that Alex got their message
+   *
+   * @param {ContactRequestBody} The request body
+   * @return Custom Response with success or failure message
+   */
+  public Mono<CustomResponse> sendNotificationEmail(ContactRequestBody request) {
+    return Mono.fromSupplier(() -> notificationTemplate.render(null,
+        List.of(SendGridService.notificationPersonalization(notificationTemplate, request))))
+        .flatMap(this::sendEmail);
+  }
+
+  /**
+   * Send an email using the SendGrid API. Fails with an UtilitiesApiException if
+   * the API couldn't be reached.
+   *
+   * @param {String} The JSON request body
+   * @return Custom Response with success or failure message
+   */
+  private Mono<CustomResponse> sendEmail(String body) {
+    return sendGridWebClient.post()
+        .uri("/" + Constants.SENDGRID_ENDPOINT)
+        .contentType(MediaType.APPLICATION_JSON)
+        .bodyValue(body)
+        .exchangeToMono(response -> response.bodyToMono(String.class)
+            .defaultIfEmpty("")
+            .map(responseBody -> new SendGridResponse(response.statusCode().value(), responseBody)))
+        // Retry the responses that mean SendGrid didn't take the email
+        .flatMap(response -> isRetryable(response.statusCode())
+            ? Mono.<SendGridResponse>error(new RetryableResponseException(response))
+            : Mono.just(response))
+        .retryWhen(Retry.backoff(Math.max(retryMaxAttempts - 1, 0), Duration.ofMillis(retryBackoff))
+            .maxBackoff(Duration.ofMillis(retryMaxBackoff))
+            .jitter(0.5)
+            .filter(RetryableResponseException.class::isInstance)
+            .onRetryExhaustedThrow((spec, signal) -> signal.failure()))
+        .onErrorResume(RetryableResponseException.class, ex -> Mono.just(ex.response))
+        .map(response -> {
+          log.info("SendGrid reponse: " + response.statusCode());
+
+          // If SendGrid returns a failed statuscode, return error response
+          if (response.statusCode() != Constants.SENDGRID_SEND_SUCCESS_CODE) {
+            log.error("Email failed to send using SendGrid API");
+            log.error("SendGrid response: " + response.body());
+            return (CustomResponse) new ErrorResponse(Constants.ERROR_CODE_SENDGRID_SEND_FAILED, response.body());
+          }
+          return (CustomResponse) new SuccessResponse();
+        })
+        .onErrorMap(ex -> !(ex instanceof UtilitiesApiException), ex -> {
+          log.error("Error sending email with SendGrid API: " + ex.getMessage());
+          return new UtilitiesApiException(Constants.ERROR_CODE_SENDGRID_SEND_ERROR, ex.getMessage());
+        });
+  }
+
+  // Too many requests, or an error on SendGrid's side
+  private static boolean isRetryable(int statusCode) {
+    return statusCode == 429 || statusCode >= 500;
+  }
+
+  private record SendGridResponse(int statusCode, String body) {
+  }
+
+  private static class RetryableResponseException extends RuntimeException {
+    private final SendGridResponse response;
+
+    RetryableResponseException(SendGridResponse response) {
+      super("SendGrid response: " + response.statusCode(), null, false, false);
+      this.response = response;
+    }
+  }
+}
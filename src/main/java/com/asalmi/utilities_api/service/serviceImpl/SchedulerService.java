@@ -1,7 +1,6 @@
 package com.asalmi.utilities_api.service.serviceImpl;
 
 import java.time.LocalDateTime;
-import java.util.ArrayList;
 import java.util.List;
 
 import org.springframework.beans.factory.annotation.Autowired;
@@ -10,7 +9,6 @@ import org.springframework.stereotype.Service;
 
 import com.asalmi.utilities_api.constants.Constants;
 import com.asalmi.utilities_api.exception.UtilitiesApiException;
-import com.asalmi.utilities_api.model.ContactRequest;
 import com.asalmi.utilities_api.model.ContactRequestBody;
 import com.asalmi.utilities_api.model.CustomResponse;
 import com.asalmi.utilities_api.repository.IContactRepository;
@@ -47,18 +45,9 @@ public class SchedulerService implements ISchedulerService {
       // Get date a month ago
       LocalDateTime monthAgoDate = nowDate.minusMonths(1);
 
-      // Get contact requests in the past month
-      List<ContactRequest> temp_monthlyRequests = contactRepository.findByCreatedAtBetween(monthAgoDate, nowDate);
-      List<ContactRequestBody> monthlyRequests = new ArrayList<ContactRequestBody>();
-      for (ContactRequest request : temp_monthlyRequests) {
-        ContactRequestBody converted_request = ContactRequestBody.builder()
-            .email(request.getEmail())
-            .name(request.getName())
-            .message(request.getMessage())
-            .build();
-
-        monthlyRequests.add(converted_request);
-      }
+      // Get the name, email and message of contact requests in the past month
+      List<ContactRequestBody> monthlyRequests = contactRepository.findSummariesByCreatedAtBetween(monthAgoDate,
+          nowDate);
 
       // Get total number of contact requests
       long totalRequests = contactRepository.count();
@@ -0,0 +1,138 @@
+package com.asalmi.utilities_api.service.serviceImpl;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Circuit breaker for calls to the SendGrid API.
+ *
+ * While closed, the outcomes of the last calls are kept in a sliding window,
+ * and the breaker opens once the share of failed calls in it reaches the
+ * failure rate. While open, calls are rejected without being made. After the
+ * open time, a few trial calls are let through: the breaker closes again if
+ * they all succeed, and opens again as soon as one fails.
+ */
+public class SendGridCircuitBreaker {
+
+  public enum State {
+    CLOSED, OPEN, HALF_OPEN
+  }
+
+  private final int minimumCalls;
+  private final int failureRate;
+  private final long openNanos;
+  private final int halfOpenCalls;
+
+  // Outcomes of the last calls while closed, true for failures
+  private final boolean[] window;
+  private int windowIndex;
+  private int windowCalls;
+  private int windowFailures;
+
+  private State state = State.CLOSED;
+  private long openUntil;
+  private int halfOpenPermits;
+  private int halfOpenSuccesses;
+
+  /**
+   * Constructor
+   *
+   * @param {int}  The number of calls in the sliding window
+   * @param {int}  The number of calls needed before the breaker can open
+   * @param {int}  The percentage of failed calls that opens the breaker
+   * @param {long} How long in milliseconds the breaker stays open
+   * @param {int}  The number of trial calls after the open time
+   */
+  public SendGridCircuitBreaker(int windowSize, int minimumCalls, int failureRate, long openTime, int halfOpenCalls) {
+    this.window = new boolean[Math.max(windowSize, 1)];
+    this.minimumCalls = Math.max(Math.min(minimumCalls, window.length), 1);
+    this.failureRate = failureRate;
+    this.openNanos = TimeUnit.MILLISECONDS.toNanos(openTime);
+    this.halfOpenCalls = Math.max(halfOpenCalls, 1);
+  }
+
+  /**
+   * Whether a call can be made now. Every permitted call must be followed by
+   * onSuccess or onFailure.
+   */
+  public synchronized boolean tryAcquirePermission() {
+    if (state == State.OPEN) {
+      if (System.nanoTime() - openUntil < 0) {
+        return false;
+      }
+      state = State.HALF_OPEN;
+      halfOpenPermits = halfOpenCalls;
+      halfOpenSuccesses = 0;
+    }
+
+    if (state == State.HALF_OPEN) {
+      if (halfOpenPermits == 0) {
+        return false;
+      }
+      halfOpenPermits--;
+    }
+    return true;
+  }
+
+  public synchronized void onSuccess() {
+    if (state == State.HALF_OPEN) {
+      if (++halfOpenSuccesses == halfOpenCalls) {
+        close();
+      }
+      return;
+    }
+    record(false);
+  }
+
+  public synchronized void onFailure() {
+    if (state == State.HALF_OPEN) {
+      open();
+      return;
+    }
+    record(true);
+    if (windowCalls >= minimumCalls && windowFailures * 100 >= failureRate * windowCalls) {
+      open();
+    }
+  }
+
+  public synchronized State getState() {
+    return state;
+  }
+
+  /**
+   * The percentage of failed calls in the sliding window
+   */
+  public synchronized double getFailureRate() {
+    return windowCalls == 0 ? 0 : windowFailures * 100.0 / windowCalls;
+  }
+
+  private void record(boolean failure) {
+    if (state != State.CLOSED) {
+      // Outcome of a call made before the breaker opened
+      return;
+    }
+    if (windowCalls == window.length) {
+      if (window[windowIndex]) {
+        windowFailures--;
+      }
+    } else {
+      windowCalls++;
+    }
+    window[windowIndex] = failure;
+    if (failure) {
+      windowFailures++;
+    }
+    windowIndex = (windowIndex + 1) % window.length;
+  }
+
+  private void open() {
+    state = State.OPEN;
+    openUntil = System.nanoTime() + openNanos;
+  }
+
+  private void close() {
+    state = State.CLOSED;
+    windowIndex = 0;
+    windowCalls = 0;
+    windowFailures = 0;
+  }
+}
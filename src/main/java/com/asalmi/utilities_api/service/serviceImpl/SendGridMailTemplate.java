@@ -0,0 +1,161 @@
+package com.asalmi.utilities_api.service.serviceImpl;
+
+import java.util.List;
+
+import com.asalmi.utilities_api.utils.ObjectPool;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sendgrid.helpers.mail.objects.Email;
+
+/**
+ * Request body for the SendGrid mail/send endpoint, for one template and sender.
+ *
+ * The parts of the body that are the same for every email, the sender and the
+ * template ID, are rendered to JSON once. Every email then only writes its
+ * recipient and dynamic template data, escaped, into a pooled buffer.
+ * Produces the same JSON as building a Mail with a Personalization for every
+ * recipient.
+ */
+public class SendGridMailTemplate {
+
+  private static final ObjectMapper MAPPER = new ObjectMapper();
+
+  private static final ObjectPool<StringBuilder> BUFFERS = new ObjectPool<>(() -> new StringBuilder(1024));
+
+  // Don't keep buffers that grew for an unusually large email
+  private static final int MAX_BUFFER_CAPACITY = 64 * 1024;
+
+  private final String skeleton;
+
+  public SendGridMailTemplate(String templateId, Email from) {
+    StringBuilder json = new StringBuilder("{\"from\":");
+    appendEmail(json, from);
+    json.append(",\"template_id\":");
+    appendValue(json, templateId);
+    this.skeleton = json.toString();
+  }
+
+  /**
+   * Renders a single personalization
+   *
+   * @param {Email}     The recipient
+   * @param {Object...} The dynamic template data, as alternating names and values
+   * @return The personalization as JSON
+   */
+  public String personalization(Email to, Object... dynamicData) {
+    StringBuilder json = BUFFERS.acquire();
+    try {
+      json.append("{\"to\":[");
+      appendEmail(json, to);
+      json.append("],\"dynamic_template_data\":{");
+      for (int i = 0; i < dynamicData.length; i += 2) {
+        if (i > 0) {
+          json.append(',');
+        }
+        appendString(json, (String) dynamicData[i]);
+        json.append(':');
+        appendValue(json, dynamicData[i + 1]);
+      }
+      return json.append("}}").toString();
+    } finally {
+      release(json);
+    }
+  }
+
+  /**
+   * Renders the request body
+   *
+   * @param {Email}        The reply-to address, or null
+   * @param {List<String>} The rendered personalizations
+   * @return The request body as JSON
+   */
+  public String render(Email replyTo, List<String> personalizations) {
+    StringBuilder json = BUFFERS.acquire();
+    try {
+      json.append(skeleton);
+      if (replyTo != null) {
+        json.append(",\"reply_to\":");
+        appendEmail(json, replyTo);
+      }
+      json.append(",\"personalizations\":[");
+      for (int i = 0; i < personalizations.size(); i++) {
+        if (i > 0) {
+          json.append(',');
+        }
+        json.append(personalizations.get(i));
+      }
+      return json.append("]}").toString();
+    } finally {
+      release(json);
+    }
+  }
+
+  private static void release(StringBuilder buffer) {
+    if (buffer.capacity() <= MAX_BUFFER_CAPACITY) {
+      buffer.setLength(0);
+      BUFFERS.release(buffer);
+    }
+  }
+
+  private static void appendEmail(StringBuilder json, Email email) {
+    json.append('{');
+    if (email.getName() != null && !email.getName().isEmpty()) {
+      json.append("\"name\":");
+      appendString(json, email.getName());
+      json.append(',');
+    }
+    json.append("\"email\":");
+    appendString(json, email.getEmail());
+    json.append('}');
+  }
+
+  private static void appendValue(StringBuilder json, Object value) {
+    if (value == null) {
+      json.append("null");
+    } else if (value instanceof String string) {
+      appendString(json, string);
+    } else if (value instanceof Integer || value instanceof Long) {
+      json.append(value);
+    } else {
+      // Anything else, like the summary email's list of requests, is rare enough
+      // to go through Jackson
+      try {
+        json.append(MAPPER.writeValueAsString(value));
+      } catch (JsonProcessingException ex) {
+        throw new IllegalArgumentException(ex);
+      }
+    }
+  }
+
+  private static void appendString(StringBuilder json, String value) {
+    json.append('"');
+    for (int i = 0; i < value.length(); i++) {
+      char c = value.charAt(i);
+      switch (c) {
+        case '"':
+          json.append("\\\"");
+          break;
+        case '\\':
+          json.append("\\\\");
+          break;
+        case '\n':
+          json.append("\\n");
+          break;
+        case '\r':
+          json.append("\\r");
+          break;
+        case '\t':
+          json.append("\\t");
+          break;
+        default:
+          if (c < 0x20) {
+            json.append("\\u00").append(Character.forDigit(c >> 4, 16)).append(Character.forDigit(c & 0xF, 16));
+          } else {
+            json.append(c);
+          }
+      }
+    }
+    json.append('"');
+  }
+}
@@ -1,7 +1,21 @@
 package com.asalmi.utilities_api.service.serviceImpl;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 import com.asalmi.utilities_api.constants.Constants;
 import com.asalmi.utilities_api.exception.UtilitiesApiException;
@@ -10,22 +24,33 @@ import com.asalmi.utilities_api.model.CustomResponse;
 import com.asalmi.utilities_api.model.ErrorResponse;
 import com.asalmi.utilities_api.model.SuccessResponse;
 import com.asalmi.utilities_api.service.ISendGridService;
+import com.asalmi.utilities_api.utils.VirtualThreads;
 import com.sendgrid.Method;
 import com.sendgrid.Request;
 import com.sendgrid.Response;
 import com.sendgrid.SendGrid;
-import com.sendgrid.helpers.mail.Mail;
 import com.sendgrid.helpers.mail.objects.Email;
-import com.sendgrid.helpers.mail.objects.Personalization;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
 import org.springframework.stereotype.Service;
 
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
 /**
  * Service class for operations calling the SendGrid third party API
+ *
+ * Calls to the API go through a bulkhead limiting how many are made at the
+ * same time, and a circuit breaker that fails fast while SendGrid is failing.
+ * Calls rejected by SendGrid with a 429 or 5xx are retried a few times, with
+ * jittered exponential backoff.
  */
 @Service
 public class SendGridService implements ISendGridService {
@@ -37,13 +62,135 @@ public class SendGridService implements ISendGridService {
   @Value("${sendgrid.templateid.summaryemail}")
   private String TEMPLATEID_SUMMARY_EMAIL;
 
+  @Value("${sendgrid.concurrent.threads}")
+  private int concurrentThreads;
+  @Value("${sendgrid.concurrent.queuesize}")
+  private int concurrentQueueSize;
+
+  @Value("${threads.virtual.enabled}")
+  private boolean virtualThreads;
+
+  @Value("${sendgrid.batch.enabled}")
+  private boolean batchEnabled;
+  @Value("${sendgrid.batch.linger}")
+  private long batchLinger;
+  @Value("${sendgrid.batch.maxsize}")
+  private int batchMaxSize;
+
+  @Value("${sendgrid.bulkhead.maxconcurrent}")
+  private int bulkheadMaxConcurrent;
+  @Value("${sendgrid.bulkhead.maxwait}")
+  private long bulkheadMaxWait;
+
+  @Value("${sendgrid.circuitbreaker.windowsize}")
+  private int breakerWindowSize;
+  @Value("${sendgrid.circuitbreaker.minimumcalls}")
+  private int breakerMinimumCalls;
+  @Value("${sendgrid.circuitbreaker.failurerate}")
+  private int breakerFailureRate;
+  @Value("${sendgrid.circuitbreaker.opentime}")
+  private long breakerOpenTime;
+  @Value("${sendgrid.circuitbreaker.halfopencalls}")
+  private int breakerHalfOpenCalls;
+
+  @Value("${sendgrid.retry.maxattempts}")
+  private int retryMaxAttempts;
+  @Value("${sendgrid.retry.backoff}")
+  private long retryBackoff;
+  @Value("${sendgrid.retry.maxbackoff}")
+  private long retryMaxBackoff;
+
   private static final Logger log = LogManager.getLogger(SendGridService.class);
 
-  public SendGrid sendGrid;
+  // Senders of each email
+  static final Email CONTACT_REQUEST_FROM = new Email(Constants.SENDGRID_NOREPLY_EMAIL, Constants.SENDGRID_NOREPLY_NAME);
+  static final Email NOTIFICATION_FROM = new Email(Constants.SENDGRID_NOREPLY_EMAIL, Constants.SENDGRID_ASALMI_NAME);
+  static final Email SUMMARY_FROM = new Email(Constants.SENDGRID_NOREPLY_EMAIL, Constants.SENDGRID_NOREPLY_NAME);
+
+  // Client using the pooled transport from SendGridConfig
+  private final SendGrid sendGrid;
+
+  private final MeterRegistry meterRegistry;
+
+  // Limits the calls to the SendGrid API made at the same time
+  private Semaphore bulkhead;
+
+  private SendGridCircuitBreaker circuitBreaker;
+
+  // Sends emails that are sent together, once its queue is full the calling
+  // thread sends them itself
+  private ExecutorService executor;
+
+  // Sends the batches whose linger time is up. Separate from the executor,
+  // whose threads may all be waiting for a batch to be sent
+  private ExecutorService batchExecutor;
+
+  // Set once the service is shut down, after which emails are no longer batched
+  private boolean batchesClosed;
+
+  // Compiled templates, by template ID and sender
+  private final Map<String, SendGridMailTemplate> templates = new ConcurrentHashMap<>();
+
+  // Batches that are still collecting emails, by template and sender
+  private final Map<BatchKey, Batch> batches = new HashMap<>();
 
   @Autowired
-  public SendGridService(@Value("${sendgrid.apikey}") final String API_KEY) {
-    this.sendGrid = new SendGrid(API_KEY);
+  public SendGridService(SendGrid sendGrid, MeterRegistry meterRegistry) {
+    this.sendGrid = sendGrid;
+    this.meterRegistry = meterRegistry;
+  }
+
+  @PostConstruct
+  public void init() {
+    if (virtualThreads) {
+      // Concurrency is limited by the bulkhead instead
+      executor = VirtualThreads.newPerTaskExecutor("sendgrid-");
+      batchExecutor = VirtualThreads.newPerTaskExecutor("sendgrid-batch-");
+    } else {
+      CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("sendgrid-");
+      threadFactory.setDaemon(true);
+      executor = new ThreadPoolExecutor(concurrentThreads, concurrentThreads, 60, TimeUnit.SECONDS,
+          new ArrayBlockingQueue<>(concurrentQueueSize), threadFactory, new ThreadPoolExecutor.CallerRunsPolicy());
+
+      // No more batches can be sent at once than the bulkhead lets through. The
+      // queue is bounded by the callers, which each wait for their batch
+      CustomizableThreadFactory batchThreadFactory = new CustomizableThreadFactory("sendgrid-batch-");
+      batchThreadFactory.setDaemon(true);
+      ThreadPoolExecutor batchPool = new ThreadPoolExecutor(bulkheadMaxConcurrent, bulkheadMaxConcurrent, 60,
+          TimeUnit.SECONDS, new LinkedBlockingQueue<>(), batchThreadFactory);
+      batchPool.allowCoreThreadTimeOut(true);
+      batchExecutor = batchPool;
+    }
+
+    bulkhead = new Semaphore(bulkheadMaxConcurrent);
+    circuitBreaker = new SendGridCircuitBreaker(breakerWindowSize, breakerMinimumCalls, breakerFailureRate,
+        breakerOpenTime, breakerHalfOpenCalls);
+
+    for (SendGridCircuitBreaker.State state : SendGridCircuitBreaker.State.values()) {
+      Gauge.builder("sendgrid.circuitbreaker.state", circuitBreaker, breaker -> breaker.getState() == state ? 1 : 0)
+          .tag("state", state.name().toLowerCase())
+          .register(meterRegistry);
+    }
+    Gauge.builder("sendgrid.circuitbreaker.failurerate", circuitBreaker, SendGridCircuitBreaker::getFailureRate)
+        .register(meterRegistry);
+    Gauge.builder("sendgrid.bulkhead.available", bulkhead, Semaphore::availablePermits)
+        .register(meterRegistry);
+  }
+
+  @PreDestroy
+  public void shutdown() {
+    // The batches still collecting emails are sent now, since their flush
+    // would be rejected once the batch executor is shut down
+    List<Batch> pending;
+    synchronized (batches) {
+      batchesClosed = true;
+      pending = new ArrayList<>(batches.values());
+      batches.clear();
+    }
+    pending.forEach(this::send);
+
+    executor.shutdown();
+    batchExecutor.shutdown();
   }
 
   /**
@@ -56,32 +203,38 @@ public class SendGridService implements ISendGridService {
   public CustomResponse sendContactRequest(ContactRequestBody request) throws UtilitiesApiException {
     log.info("Sending contact request");
 
-    // Build Mail object to send to Alex Salmi
-    Email from = new Email(Constants.SENDGRID_NOREPLY_EMAIL, Constants.SENDGRID_NOREPLY_NAME);
-    String templateId = TEMPLATEID_CONTACT_REQUEST;
-    Email to = new Email(Constants.SENDGRID_ASALMI_EMAIL);
+    // Build the email to send to Alex Salmi
+    SendGridMailTemplate template = template(TEMPLATEID_CONTACT_REQUEST, CONTACT_REQUEST_FROM);
     Email replyTo = new Email(request.getEmail(), request.getName());
+    String personalization = contactRequestPersonalization(template, request);
 
-    // Add the dynamic data to the email template
-    Personalization personalization = new Personalization();
-    personalization.addTo(to);
-    personalization.addDynamicTemplateData(Constants.SENDGRID_PERSONALIZATION_NAME, request.getName());
-    personalization.addDynamicTemplateData(Constants.SENDGRID_PERSONALIZATION_EMAIL, request.getEmail());
-    personalization.addDynamicTemplateData(Constants.SENDGRID_PERSONALIZATION_MESSAGE, request.getMessage());
-    if (request.getPhone() == null) {
-      personalization.addDynamicTemplateData(Constants.SENDGRID_PERSONALIZATION_PHONE, "N/A");
-    } else {
-      personalization.addDynamicTemplateData(Constants.SENDGRID_PERSONALIZATION_PHONE, request.getPhone());
-    }
+    // Send the email using the SendGrid API
+    return sendBatched(template, replyTo, personalization);
+  }
+
+  /**
+   * Send the contact request email to Alex Salmi and the notification email to
+   * the user at the same time. Both emails are always attempted, and the result
+   * is the same as sending them one after the other: a failure of the contact
+   * request email is returned or thrown first, then a failure of the
+   * notification email.
+   * 
+   * @param {ContactRequestBody} The request body, including the sender's email,
+   *                             name, message, and phone number (optional)
+   * @return Custom Response with success or failure message
+   */
+  public CustomResponse sendContactRequestEmails(ContactRequestBody request) throws UtilitiesApiException {
+    CompletableFuture<CustomResponse> contactRequest = sendAsync(() -> sendContactRequest(request));
+    CompletableFuture<CustomResponse> notification = sendAsync(() -> sendNotificationEmail(request));
 
-    Mail mail = new Mail();
-    mail.setFrom(from);
-    mail.setTemplateId(templateId);
-    mail.addPersonalization(personalization);
-    mail.replyTo = replyTo;
+    // Wait for both, so that no email is still being sent once this returns
+    CompletableFuture.allOf(contactRequest, notification).exceptionally(ex -> null).join();
 
-    // Send the email using the SendGrid API
-    return sendEmail(mail);
+    CustomResponse sgResponse = await(contactRequest);
+    if (sgResponse.hasError()) {
+      return sgResponse;
+    }
+    return await(notification);
   }
 
   /**
@@ -94,24 +247,12 @@ public class SendGridService implements ISendGridService {
   public CustomResponse sendNotificationEmail(ContactRequestBody request) throws UtilitiesApiException {
     log.info("Sending notification email");
 
-    // Build Mail object to send the notification email to the user
-    Email from = new Email(Constants.SENDGRID_NOREPLY_EMAIL, Constants.SENDGRID_ASALMI_NAME);
-    Email to = new Email(request.getEmail(), request.getName());
-    String templateId = TEMPLATEID_NOTIFICATION_EMAIL;
-
-    // Add the dynamic data to the email template
-    Personalization personalization = new Personalization();
-    personalization.addTo(to);
-    personalization.addDynamicTemplateData(Constants.SENDGRID_PERSONALIZATION_NAME, request.getName());
-    personalization.addDynamicTemplateData(Constants.SENDGRID_PERSONALIZATION_MESSAGE, request.getMessage());
-
-    Mail mail = new Mail();
-    mail.setFrom(from);
-    mail.setTemplateId(templateId);
-    mail.addPersonalization(personalization);
+    // Build the notification email to send to the user
+    SendGridMailTemplate template = template(TEMPLATEID_NOTIFICATION_EMAIL, NOTIFICATION_FROM);
+    String personalization = notificationPersonalization(template, request);
 
     // Send the email using the SendGrid API
-    return sendEmail(mail);
+    return sendBatched(template, null, personalization);
   }
 
   /**
@@ -128,51 +269,64 @@ public class SendGridService implements ISendGridService {
       throws UtilitiesApiException {
     log.info("Sending weekly summary email");
 
-    // Build Mail object to send the summary email to Alex Salmi
-    Email from = new Email(Constants.SENDGRID_NOREPLY_EMAIL, Constants.SENDGRID_NOREPLY_NAME);
+    // Build the summary email to send to Alex Salmi
+    SendGridMailTemplate template = template(TEMPLATEID_SUMMARY_EMAIL, SUMMARY_FROM);
     Email to = new Email(Constants.SENDGRID_ASALMI_EMAIL);
-    String templateId = TEMPLATEID_SUMMARY_EMAIL;
 
     // Add the dynamic data to the email template
-    Personalization personalization = new Personalization();
-    personalization.addTo(to);
-    personalization.addDynamicTemplateData(Constants.SENDGRID_PERSONALIZATION_REQUESTS, monthlyRequests);
-    personalization.addDynamicTemplateData(Constants.SENDGRID_PERSONALIZATION_MONTHLY_NUMBER, monthlyRequests.size());
-    personalization.addDynamicTemplateData(Constants.SENDGRID_PERSONALIZATION_TOTAL_NUMBER, totalRequests);
-
-    Mail mail = new Mail();
-    mail.setFrom(from);
-    mail.setTemplateId(templateId);
-    mail.addPersonalization(personalization);
+    String personalization = template.personalization(to,
+        Constants.SENDGRID_PERSONALIZATION_REQUESTS, monthlyRequests,
+        Constants.SENDGRID_PERSONALIZATION_MONTHLY_NUMBER, monthlyRequests.size(),
+        Constants.SENDGRID_PERSONALIZATION_TOTAL_NUMBER, totalRequests);
 
     // Send the email using the SendGrid API
-    return sendEmail(mail);
+    return sendEmail(template.render(null, List.of(personalization)));
+  }
+
+  /*
+   * The contact request and notification emails, shared with the reactive
+   * SendGrid service
+   */
+  static String contactRequestPersonalization(SendGridMailTemplate template, ContactRequestBody request) {
+    return template.personalization(new Email(Constants.SENDGRID_ASALMI_EMAIL),
+        Constants.SENDGRID_PERSONALIZATION_NAME, request.getName(),
+        Constants.SENDGRID_PERSONALIZATION_EMAIL, request.getEmail(),
+        Constants.SENDGRID_PERSONALIZATION_MESSAGE, request.getMessage(),
+        Constants.SENDGRID_PERSONALIZATION_PHONE, request.getPhone() == null ? "N/A" : request.getPhone());
+  }
+
+  static String notificationPersonalization(SendGridMailTemplate template, ContactRequestBody request) {
+    return template.personalization(new Email(request.getEmail(), request.getName()),
+        Constants.SENDGRID_PERSONALIZATION_NAME, request.getName(),
+        Constants.SENDGRID_PERSONALIZATION_MESSAGE, request.getMessage());
+  }
+
+  /**
+   * Get the compiled template for a template ID and sender, compiling it the
+   * first time it is used
+   */
+  private SendGridMailTemplate template(String templateId, Email from) {
+    return templates.computeIfAbsent(templateId + "\n" + from.getEmail() + "\n" + from.getName(),
+        key -> new SendGridMailTemplate(templateId, from));
   }
 
   /**
    * Send an email using the SendGrid API
    * 
-   * @param {Mail} SendGrid Mail object containing the information needed to send
-   *               the email
+   * @param {String} The JSON request body, rendered from a compiled template
    * @return Custom Response with success or failure message
    */
-  private CustomResponse sendEmail(Mail mail) throws UtilitiesApiException {
-    // Send email with SendGrid API
-    Request sgRequest = new Request();
-    sgRequest.setMethod(Method.POST);
-    sgRequest.setEndpoint(Constants.SENDGRID_ENDPOINT);
-
-    Response response = new Response();
-    try {
-      sgRequest.setBody(mail.build());
-      response = sendGrid.api(sgRequest);
-    } catch (IOException ex) {
-      log.error("Error sending email with SendGrid API: " + ex.getMessage());
-      throw new UtilitiesApiException(Constants.ERROR_CODE_SENDGRID_SEND_ERROR, ex.getMessage());
-    }
-
-    log.info("SendGrid reponse: " + response.getStatusCode());
+  private CustomResponse sendEmail(String body) throws UtilitiesApiException {
+    return result(post(body));
+  }
 
+  /**
+   * Turn SendGrid's response into the result of sending the email
+   * 
+   * @param {Response} SendGrid's response
+   * @return Custom Response with success or failure message
+   */
+  private CustomResponse result(Response response) {
     // If SendGrid returns a failed statuscode, return error response
     if (response.getStatusCode() != Constants.SENDGRID_SEND_SUCCESS_CODE) {
       log.error("Email failed to send using SendGrid API");
@@ -185,4 +339,277 @@ public class SendGridService implements ISendGridService {
     // If no errors occurred, return success repsonse
     return new SuccessResponse();
   }
+
+  /**
+   * Post a request body to the SendGrid API, retrying the responses that mean
+   * SendGrid didn't take the email
+   * 
+   * @param {String} The JSON request body, rendered from a compiled template
+   * @return SendGrid's last response
+   */
+  private Response post(String body) throws UtilitiesApiException {
+    // Send email with SendGrid API
+    Request sgRequest = new Request();
+    sgRequest.setMethod(Method.POST);
+    sgRequest.setEndpoint(Constants.SENDGRID_ENDPOINT);
+    sgRequest.setBody(body);
+
+    Response response;
+
+    // Retry the responses that mean SendGrid didn't take the email
+    for (int attempt = 1;; attempt++) {
+      response = call(sgRequest);
+      if (!isRetryable(response.getStatusCode()) || attempt >= retryMaxAttempts) {
+        break;
+      }
+
+      long backoff = backoff(attempt);
+      log.warn("SendGrid response: " + response.getStatusCode() + ", retrying in " + backoff + "ms");
+      try {
+        Thread.sleep(backoff);
+      } catch (InterruptedException ex) {
+        Thread.currentThread().interrupt();
+        break;
+      }
+    }
+
+    log.info("SendGrid reponse: " + response.getStatusCode());
+    return response;
+  }
+
+  /**
+   * Send an email together with the other emails using the same template and
+   * sender, as one personalization of a single request to the SendGrid API. A
+   * batch is sent once it is full, or once the first email in it has waited for
+   * the linger time. SendGrid accepts or rejects a request as a whole, so when a
+   * batch is rejected, for instance because of one invalid recipient, its emails
+   * are sent again, each in its own request and with its own result.
+   * 
+   * @param {SendGridMailTemplate} The compiled template of the email
+   * @param {Email}                The reply-to address, or null
+   * @param {String}               The email's rendered personalization
+   * @return Custom Response with success or failure message
+   */
+  private CustomResponse sendBatched(SendGridMailTemplate template, Email replyTo, String personalization)
+      throws UtilitiesApiException {
+    if (!batchEnabled) {
+      return sendEmail(template.render(replyTo, List.of(personalization)));
+    }
+
+    BatchKey key = new BatchKey(template, replyTo);
+    CompletableFuture<CustomResponse> result = new CompletableFuture<>();
+    Batch full = null;
+    synchronized (batches) {
+      Batch batch = batchesClosed ? new Batch(template, replyTo) : batches.get(key);
+      if (batch == null) {
+        Batch created = new Batch(template, replyTo);
+        batches.put(key, created);
+        CompletableFuture.runAsync(() -> flush(key, created),
+            CompletableFuture.delayedExecutor(batchLinger, TimeUnit.MILLISECONDS, batchExecutor));
+        batch = created;
+      }
+      batch.add(personalization, result);
+
+      if (batchesClosed) {
+        // Once the service is shut down, every email is sent on its own
+        full = batch;
+      } else if (batch.size() >= Math.min(batchMaxSize, Constants.SENDGRID_MAX_PERSONALIZATIONS)) {
+        batches.remove(key);
+        full = batch;
+      }
+    }
+
+    // The email that fills a batch sends it, instead of waiting for the linger time
+    if (full != null) {
+      send(full);
+    }
+    return await(result);
+  }
+
+  /**
+   * Sends a batch once its linger time is up, unless it was already sent because
+   * it was full
+   */
+  private void flush(BatchKey key, Batch batch) {
+    synchronized (batches) {
+      if (!batches.remove(key, batch)) {
+        return;
+      }
+    }
+    send(batch);
+  }
+
+  private void send(Batch batch) {
+    log.info("Sending batch of " + batch.size() + " emails");
+    try {
+      Response response = post(batch.render());
+      if (batch.size() > 1 && isRejected(response.getStatusCode())) {
+        log.warn("SendGrid rejected batch of " + batch.size() + " emails: " + response.getStatusCode()
+            + ", sending them one at a time");
+        sendEach(batch);
+        return;
+      }
+      batch.complete(result(response));
+    } catch (Exception ex) {
+      batch.completeExceptionally(ex);
+    }
+  }
+
+  /**
+   * Sends the emails of a rejected batch one request each, so only the emails
+   * SendGrid rejects themselves fail. They are sent at the same time on the
+   * executor, rather than one after another on the thread that sent the batch.
+   */
+  private void sendEach(Batch batch) {
+    for (int i = 0; i < batch.size(); i++) {
+      CompletableFuture<CustomResponse> result = batch.results.get(i);
+      String personalization = batch.personalizations.get(i);
+      sendAsync(() -> sendEmail(batch.template.render(batch.replyTo, List.of(personalization))))
+          .whenComplete((response, ex) -> {
+            if (ex == null) {
+              result.complete(response);
+            } else {
+              result.completeExceptionally(ex);
+            }
+          });
+    }
+  }
+
+  /**
+   * Make a single call to the SendGrid API, through the bulkhead and the circuit
+   * breaker
+   * 
+   * @param {Request} The request to the SendGrid API
+   * @return SendGrid's response
+   */
+  private Response call(Request sgRequest) throws UtilitiesApiException {
+    boolean permitted;
+    try {
+      permitted = bulkhead.tryAcquire(bulkheadMaxWait, TimeUnit.MILLISECONDS);
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+      permitted = false;
+    }
+    if (!permitted) {
+      log.error("Too many concurrent calls to the SendGrid API");
+      throw new UtilitiesApiException(Constants.ERROR_CODE_SENDGRID_SEND_ERROR,
+          "Too many concurrent calls to the SendGrid API");
+    }
+
+    try {
+      if (!circuitBreaker.tryAcquirePermission()) {
+        log.error("SendGrid circuit breaker is open");
+        throw new UtilitiesApiException(Constants.ERROR_CODE_SENDGRID_SEND_ERROR, "SendGrid circuit breaker is open");
+      }
+
+      boolean failed = true;
+      try {
+        Response response = sendGrid.api(sgRequest);
+        failed = isRetryable(response.getStatusCode());
+        return response;
+      } catch (IOException ex) {
+        log.error("Error sending email with SendGrid API: " + ex.getMessage());
+        throw new UtilitiesApiException(Constants.ERROR_CODE_SENDGRID_SEND_ERROR, ex.getMessage());
+      } finally {
+        if (failed) {
+          circuitBreaker.onFailure();
+        } else {
+          circuitBreaker.onSuccess();
+        }
+      }
+    } finally {
+      bulkhead.release();
+    }
+  }
+
+  // Too many requests, or an error on SendGrid's side
+  private static boolean isRetryable(int statusCode) {
+    return statusCode == 429 || statusCode >= 500;
+  }
+
+  // Rejected because of something in the request, such as an invalid recipient
+  private static boolean isRejected(int statusCode) {
+    return statusCode >= 400 && !isRetryable(statusCode);
+  }
+
+  /*
+   * Backoff before the next attempt: doubles after every attempt up to the
+   * maximum, and only the first half of it is fixed so that concurrent retries
+   * spread out
+   */
+  private long backoff(int attempt) {
+    long cap = Math.min(retryBackoff << Math.min(attempt - 1, 20), retryMaxBackoff);
+    return cap / 2 + ThreadLocalRandom.current().nextLong(cap / 2 + 1);
+  }
+
+  private CompletableFuture<CustomResponse> sendAsync(Callable<CustomResponse> send) {
+    return CompletableFuture.supplyAsync(() -> {
+      try {
+        return send.call();
+      } catch (Exception ex) {
+        throw new CompletionException(ex);
+      }
+      // Once the executor is shut down, its rejection policy would drop the send
+      // and leave its caller waiting, so it is sent on this thread instead
+    }, executor.isShutdown() ? Runnable::run : executor);
+  }
+
+  private CustomResponse await(CompletableFuture<CustomResponse> send) throws UtilitiesApiException {
+    try {
+      return send.join();
+    } catch (CompletionException ex) {
+      if (ex.getCause() instanceof UtilitiesApiException cause) {
+        throw cause;
+      }
+      log.error("Error sending email with SendGrid API: " + ex.getCause().getMessage());
+      throw new UtilitiesApiException(Constants.ERROR_CODE_SENDGRID_SEND_ERROR, ex.getCause().getMessage());
+    }
+  }
+
+  /**
+   * Emails can only share a request if they use the same template and sender,
+   * and the same reply-to address, which is set for the whole request
+   */
+  private record BatchKey(SendGridMailTemplate template, String replyToEmail, String replyToName) {
+    BatchKey(SendGridMailTemplate template, Email replyTo) {
+      this(template, replyTo == null ? null : replyTo.getEmail(), replyTo == null ? null : replyTo.getName());
+    }
+  }
+
+  /**
+   * Emails waiting to be sent in a single request, each as its own
+   * personalization
+   */
+  private static class Batch {
+    private final SendGridMailTemplate template;
+    private final Email replyTo;
+    private final List<String> personalizations = new ArrayList<>();
+    private final List<CompletableFuture<CustomResponse>> results = new ArrayList<>();
+
+    Batch(SendGridMailTemplate template, Email replyTo) {
+      this.template = template;
+      this.replyTo = replyTo;
+    }
+
+    void add(String personalization, CompletableFuture<CustomResponse> result) {
+      personalizations.add(personalization);
+      results.add(result);
+    }
+
+    int size() {
+      return results.size();
+    }
+
+    String render() {
+      return template.render(replyTo, personalizations);
+    }
+
+    void complete(CustomResponse response) {
+      results.forEach(result -> result.complete(response));
+    }
+
+    void completeExceptionally(Exception ex) {
+      results.forEach(result -> result.completeExceptionally(ex));
+    }
+  }
 }
@@ -0,0 +1,70 @@
+package com.asalmi.utilities_api.utils;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Supplier;
+
+/**
+ * A small pool of reusable objects that aren't thread safe, shared by every
+ * thread.
+ *
+ * A ThreadLocal only pays off when threads are reused. Virtual threads run a
+ * single task each, so an object cached per thread would be created for every
+ * request and thrown away with it. The pool instead keeps objects in a fixed
+ * number of slots that any thread can take them from. An object must only be
+ * held while it is being used, without blocking, so no more objects are in use
+ * at once than there are threads running. The pool never blocks: when every
+ * slot is empty a new object is created, and when every slot is full a released
+ * object is dropped.
+ */
+public final class ObjectPool<T> {
+
+  private final Supplier<T> factory;
+
+  private final AtomicReferenceArray<T> slots;
+
+  /**
+   * Creates a pool with a slot for every two available processors, which is as
+   * many objects as can be in use at once when they are only held while running
+   */
+  public ObjectPool(Supplier<T> factory) {
+    this(factory, Runtime.getRuntime().availableProcessors() * 2);
+  }
+
+  public ObjectPool(Supplier<T> factory, int size) {
+    this.factory = factory;
+    this.slots = new AtomicReferenceArray<>(size);
+  }
+
+  /**
+   * Takes an object from the pool, or creates one if the pool is empty
+   */
+  public T acquire() {
+    int size = slots.length();
+    int start = ThreadLocalRandom.current().nextInt(size);
+    for (int i = 0; i < size; i++) {
+      int slot = (start + i) % size;
+      if (slots.get(slot) != null) {
+        T object = slots.getAndSet(slot, null);
+        if (object != null) {
+          return object;
+        }
+      }
+    }
+    return factory.get();
+  }
+
+  /**
+   * Returns an object to the pool, which must no longer be used by the caller
+   */
+  public void release(T object) {
+    int size = slots.length();
+    int start = ThreadLocalRandom.current().nextInt(size);
+    for (int i = 0; i < size; i++) {
+      int slot = (start + i) % size;
+      if (slots.get(slot) == null && slots.compareAndSet(slot, null, object)) {
+        return;
+      }
+    }
+  }
+}
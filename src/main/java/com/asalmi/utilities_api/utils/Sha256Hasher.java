@@ -0,0 +1,164 @@
+package com.asalmi.utilities_api.utils;
+
+import java.nio.charset.StandardCharsets;
+import java.security.DigestException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * SHA-256 hashing for API keys, and for other inputs such as response bodies.
+ *
+ * MessageDigests and buffers are reused from a pool shared by every thread, so
+ * hashing an ASCII string into a caller provided array allocates nothing, on
+ * platform and virtual threads alike. Hashes can be encoded
+ * as full 64 character hex strings, or in the legacy format that older API keys
+ * were stored with, which drops leading zeros down to a minimum of 32
+ * characters.
+ */
+public final class Sha256Hasher {
+  public static final int DIGEST_LENGTH = 32;
+
+  private static final int HEX_LENGTH = DIGEST_LENGTH * 2;
+  private static final int LEGACY_MIN_HEX_LENGTH = 32;
+
+  // Inputs longer than this are encoded normally, rather than kept in the buffer
+  private static final int MAX_BUFFERED_INPUT = 1024;
+
+  private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+  private static final ObjectPool<State> STATES = new ObjectPool<>(State::new);
+
+  private Sha256Hasher() {
+  }
+
+  /**
+   * Hashes a string into a new digest
+   */
+  public static byte[] digest(CharSequence input) {
+    byte[] digest = new byte[DIGEST_LENGTH];
+    digest(input, digest);
+    return digest;
+  }
+
+  /**
+   * Hashes a string into the first 32 bytes of the given array
+   */
+  public static void digest(CharSequence input, byte[] digest) {
+    State state = STATES.acquire();
+    MessageDigest md = state.messageDigest;
+    try {
+      int length = input.length();
+      if (length <= MAX_BUFFERED_INPUT && encodeAscii(input, state)) {
+        md.update(state.input, 0, length);
+      } else {
+        md.update(input.toString().getBytes(StandardCharsets.UTF_8));
+      }
+
+      md.digest(digest, 0, DIGEST_LENGTH);
+    } catch (DigestException ex) {
+      md.reset();
+      throw new IllegalArgumentException("Digest array is too small", ex);
+    } finally {
+      STATES.release(state);
+    }
+  }
+
+  /**
+   * Hashes bytes into a new digest
+   */
+  public static byte[] digest(byte[] input) {
+    State state = STATES.acquire();
+    try {
+      return state.messageDigest.digest(input);
+    } finally {
+      STATES.release(state);
+    }
+  }
+
+  /**
+   * Encodes a digest as a 64 character hex string
+   */
+  public static String toHex(byte[] digest) {
+    State state = STATES.acquire();
+    try {
+      return new String(encodeHex(digest, state.hex), 0, HEX_LENGTH);
+    } finally {
+      STATES.release(state);
+    }
+  }
+
+  /**
+   * Encodes a digest in the legacy format, without leading zeros but at least 32
+   * characters long
+   */
+  public static String toLegacyHex(byte[] digest) {
+    State state = STATES.acquire();
+    try {
+      char[] hex = encodeHex(digest, state.hex);
+
+      int start = 0;
+      while (start < HEX_LENGTH - LEGACY_MIN_HEX_LENGTH && hex[start] == '0') {
+        start++;
+      }
+      return new String(hex, start, HEX_LENGTH - start);
+    } finally {
+      STATES.release(state);
+    }
+  }
+
+  /**
+   * Whether the legacy encoding of a digest differs from its full encoding, which
+   * is the case when the digest starts with a zero
+   */
+  public static boolean hasDistinctLegacyHex(byte[] digest) {
+    return (digest[0] & 0xF0) == 0;
+  }
+
+  /*
+   * Writes the hex digits into a pooled buffer
+   */
+  private static char[] encodeHex(byte[] digest, char[] hex) {
+    for (int i = 0; i < DIGEST_LENGTH; i++) {
+      int b = digest[i] & 0xFF;
+      hex[i * 2] = HEX_DIGITS[b >>> 4];
+      hex[i * 2 + 1] = HEX_DIGITS[b & 0x0F];
+    }
+    return hex;
+  }
+
+  /*
+   * Copies the input into the pooled buffer if it is plain ASCII, whose UTF-8
+   * encoding is one byte per character
+   */
+  private static boolean encodeAscii(CharSequence input, State state) {
+    int length = input.length();
+    if (state.input.length < length) {
+      state.input = new byte[Math.max(length, state.input.length * 2)];
+    }
+
+    byte[] buffer = state.input;
+    for (int i = 0; i < length; i++) {
+      char c = input.charAt(i);
+      if (c >= 0x80) {
+        return false;
+      }
+      buffer[i] = (byte) c;
+    }
+    return true;
+  }
+
+  private static final class State {
+    private final MessageDigest messageDigest;
+    private final char[] hex = new char[HEX_LENGTH];
+    private byte[] input = new byte[64];
+
+    private State() {
+      try {
+        messageDigest = MessageDigest.getInstance("SHA-256");
+      } catch (NoSuchAlgorithmException ex) {
+        // Every Java platform is required to support SHA-256
+        throw new IllegalStateException(ex);
+      }
+    }
+  }
+}
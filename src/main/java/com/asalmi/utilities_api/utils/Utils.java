@@ -1,8 +1,5 @@
 package com.asalmi.utilities_api.utils;
 
-import java.math.BigInteger;
-import java.nio.charset.StandardCharsets;
-import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 
 import org.springframework.stereotype.Service;
@@ -18,33 +15,61 @@ import com.fasterxml.jackson.databind.ObjectWriter;
 public class Utils {
 
   /**
-   * Converts a string of any length into a fixed size hash
+   * Converts a string of any length into a fixed size hash, in the legacy format
+   * that existing API keys are stored with
    * 
    * @param {String} the string to be hashed
    * @return The hashed string
    */
   public String hashString(String input) throws NoSuchAlgorithmException {
-    String hashtext = null;
-    MessageDigest md = MessageDigest.getInstance("SHA-256");
-    byte[] messageDigest = md.digest(input.getBytes(StandardCharsets.UTF_8));
+    return Sha256Hasher.toLegacyHex(Sha256Hasher.digest(input));
+  }
+
+  /**
+   * Converts a string of any length into a fixed size, 64 character hash
+   * 
+   * @param {String} the string to be hashed
+   * @return The hashed string
+   */
+  public String canonicalHashString(String input) throws NoSuchAlgorithmException {
+    return Sha256Hasher.toHex(Sha256Hasher.digest(input));
+  }
 
-    hashtext = convertToHex(messageDigest);
-    return hashtext;
+  /**
+   * Converts a string of any length into its SHA-256 digest
+   * 
+   * @param {String} the string to be hashed
+   * @return The 32 byte digest
+   */
+  public byte[] digest(String input) throws NoSuchAlgorithmException {
+    return Sha256Hasher.digest(input);
   }
 
   /**
-   * Helper function to convert a byte array to hex string
+   * Converts a hash created by hashString or canonicalHashString back into its
+   * SHA-256 digest
    * 
-   * @param {byte[]} Byte array to be converted to hex
-   * @return The converted string
+   * @param {String} the hash to be converted
+   * @return The 32 byte digest
    */
-  private String convertToHex(final byte[] messageDigest) {
-    BigInteger bigint = new BigInteger(1, messageDigest);
-    String hexText = bigint.toString(16);
-    while (hexText.length() < 32) {
-      hexText = "0".concat(hexText);
+  public static byte[] parseHash(String hash) {
+    // Legacy hashes drop leading zeros, so the hash may be shorter than 64
+    // characters
+    if (hash.length() > 64) {
+      throw new IllegalArgumentException("Invalid hash: " + hash);
+    }
+
+    byte[] digest = new byte[32];
+    int end = hash.length();
+    for (int i = digest.length - 1; i >= 0 && end > 0; i--) {
+      int low = Character.digit(hash.charAt(--end), 16);
+      int high = end > 0 ? Character.digit(hash.charAt(--end), 16) : 0;
+      if (low < 0 || high < 0) {
+        throw new IllegalArgumentException("Invalid hash: " + hash);
+      }
+      digest[i] = (byte) ((high << 4) | low);
     }
-    return hexText;
+    return digest;
   }
 
   /**
@@ -0,0 +1,83 @@
+package com.asalmi.utilities_api.utils;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Virtual threads, on JDKs that have them.
+ *
+ * The application is compiled for Java 17, so the Java 21 APIs are looked up
+ * reflectively once. Every method fails with an IllegalStateException when the
+ * running JDK doesn't support virtual threads.
+ */
+public final class VirtualThreads {
+
+  private static final Method OF_VIRTUAL;
+  private static final Method NAME;
+  private static final Method FACTORY;
+  private static final Method NEW_THREAD_PER_TASK_EXECUTOR;
+
+  static {
+    Method ofVirtual = null;
+    Method name = null;
+    Method factory = null;
+    Method newThreadPerTaskExecutor = null;
+    try {
+      Class<?> builder = Class.forName("java.lang.Thread$Builder");
+      ofVirtual = Thread.class.getMethod("ofVirtual");
+      name = builder.getMethod("name", String.class, long.class);
+      factory = builder.getMethod("factory");
+      newThreadPerTaskExecutor = Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class);
+    } catch (ReflectiveOperationException ex) {
+      // Older JDK
+    }
+    OF_VIRTUAL = ofVirtual;
+    NAME = name;
+    FACTORY = factory;
+    NEW_THREAD_PER_TASK_EXECUTOR = newThreadPerTaskExecutor;
+  }
+
+  private VirtualThreads() {
+  }
+
+  /**
+   * Whether the running JDK supports virtual threads
+   */
+  public static boolean isSupported() {
+    return NEW_THREAD_PER_TASK_EXECUTOR != null;
+  }
+
+  /**
+   * Creates a factory for virtual threads named with the prefix and a counter
+   */
+  public static ThreadFactory factory(String prefix) {
+    requireSupported();
+    try {
+      Object builder = NAME.invoke(OF_VIRTUAL.invoke(null), prefix, 0L);
+      return (ThreadFactory) FACTORY.invoke(builder);
+    } catch (ReflectiveOperationException ex) {
+      throw new IllegalStateException("Could not create a virtual thread factory", ex);
+    }
+  }
+
+  /**
+   * Creates an executor that runs every task on a new virtual thread
+   */
+  public static ExecutorService newPerTaskExecutor(String prefix) {
+    ThreadFactory factory = factory(prefix);
+    try {
+      return (ExecutorService) NEW_THREAD_PER_TASK_EXECUTOR.invoke(null, factory);
+    } catch (ReflectiveOperationException ex) {
+      throw new IllegalStateException("Could not create a virtual thread executor", ex);
+    }
+  }
+
+  private static void requireSupported() {
+    if (!isSupported()) {
+      throw new IllegalStateException("Virtual threads require Java 21 or later, running on Java "
+          + Runtime.version().feature());
+    }
+  }
+}
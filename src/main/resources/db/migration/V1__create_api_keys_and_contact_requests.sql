@@ -0,0 +1,20 @@
+-- The tables from before the schema was migrated. Existing databases that
+-- already have them are baselined at this version instead.
+
+CREATE TABLE api_keys (
+  api_key_hash VARCHAR(255) NOT NULL,
+  application VARCHAR(255) NOT NULL,
+  consumer VARCHAR(255) NOT NULL,
+  created_at DATETIME(6) NOT NULL,
+  PRIMARY KEY (api_key_hash)
+);
+
+CREATE TABLE contact_requests (
+  id BIGINT NOT NULL AUTO_INCREMENT,
+  name VARCHAR(255) NOT NULL,
+  email_address VARCHAR(255) NOT NULL,
+  message VARCHAR(255) NOT NULL,
+  phone_number VARCHAR(255),
+  created_at DATETIME(6) NOT NULL,
+  PRIMARY KEY (id)
+);
@@ -0,0 +1,54 @@
+-- Tables may already exist in databases that were created by hand before they
+-- were baselined, so they are only created if missing
+
+-- Revoked API keys, polled by every instance
+CREATE TABLE IF NOT EXISTS api_key_changes (
+  id INT NOT NULL AUTO_INCREMENT,
+  api_key_hash VARCHAR(255) NOT NULL,
+  change_type VARCHAR(255) NOT NULL,
+  created_at DATETIME(6) NOT NULL,
+  PRIMARY KEY (id)
+);
+
+-- Emails of contact requests, sent from the outbox
+CREATE TABLE IF NOT EXISTS contact_emails (
+  id BIGINT NOT NULL,
+  contact_request_id BIGINT NOT NULL,
+  email_type VARCHAR(255) NOT NULL,
+  status VARCHAR(255) NOT NULL,
+  attempts INT NOT NULL,
+  next_attempt_at DATETIME(6) NOT NULL,
+  claimed_by VARCHAR(255),
+  claimed_until DATETIME(6),
+  last_error VARCHAR(1024),
+  created_at DATETIME(6) NOT NULL,
+  sent_at DATETIME(6),
+  PRIMARY KEY (id)
+);
+
+-- Retries and resubmissions of a contact request have the same key
+ALTER TABLE contact_requests ADD COLUMN idempotency_key VARCHAR(64);
+ALTER TABLE contact_requests ADD CONSTRAINT uk_contact_requests_idempotency_key UNIQUE (idempotency_key);
+
+-- Ids are allocated from sequence tables, starting after the existing rows.
+-- Instances allocate contact request ids 50 at a time, and an instance still
+-- inserting with auto increment would move AUTO_INCREMENT into those blocks
+-- and collide with them. So this version is not rolled out alongside older
+-- ones: every instance of the previous version is stopped, or stops saving
+-- contact requests, before the first instance of this one starts and runs
+-- this migration. The sequence is then seeded after every id ever inserted.
+CREATE TABLE IF NOT EXISTS contact_requests_seq (
+  next_val BIGINT
+);
+INSERT INTO contact_requests_seq (next_val) SELECT 1 FROM DUAL
+  WHERE NOT EXISTS (SELECT * FROM contact_requests_seq);
+UPDATE contact_requests_seq
+  SET next_val = GREATEST(next_val, (SELECT COALESCE(MAX(id), 0) + 1 FROM contact_requests));
+
+CREATE TABLE IF NOT EXISTS contact_emails_seq (
+  next_val BIGINT
+);
+INSERT INTO contact_emails_seq (next_val) SELECT 1 FROM DUAL
+  WHERE NOT EXISTS (SELECT * FROM contact_emails_seq);
+UPDATE contact_emails_seq
+  SET next_val = GREATEST(next_val, (SELECT COALESCE(MAX(id), 0) + 1 FROM contact_emails));
@@ -0,0 +1,15 @@
+-- Pages and exports of contact requests, read in created at and id order, and
+-- the weekly summary's range of created at
+CREATE INDEX idx_contact_requests_created_at_id ON contact_requests (created_at, id);
+
+-- Pages of one sender's contact requests
+CREATE INDEX idx_contact_requests_email_created_at_id ON contact_requests (email_address, created_at, id);
+
+-- Covers the API key preload's reads of keys created since its last refresh
+CREATE INDEX idx_api_keys_created_at ON api_keys (created_at, api_key_hash, application);
+
+-- Covers the polls for keys revoked since the last poll
+CREATE INDEX idx_api_key_changes_created_at ON api_key_changes (created_at, api_key_hash);
+
+-- Pending outbox emails that are due to be claimed
+CREATE INDEX idx_contact_emails_status_next_attempt_at ON contact_emails (status, next_attempt_at);
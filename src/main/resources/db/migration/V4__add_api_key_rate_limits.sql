@@ -0,0 +1,13 @@
+-- Requests per minute allowed for a key, or null for the configured default.
+-- After changing it, log an UPDATED change for the key so that every instance
+-- picks up the new limit:
+--   INSERT INTO api_key_changes (api_key_hash, change_type, created_at)
+--   VALUES (<api_key_hash>, 'UPDATED', NOW(6));
+ALTER TABLE api_keys ADD COLUMN requests_per_minute INT;
+
+-- The preload and change polls read these columns too, keep covering them
+DROP INDEX idx_api_keys_created_at ON api_keys;
+CREATE INDEX idx_api_keys_created_at ON api_keys (created_at, api_key_hash, application, consumer, requests_per_minute);
+
+DROP INDEX idx_api_key_changes_created_at ON api_key_changes;
+CREATE INDEX idx_api_key_changes_created_at ON api_key_changes (created_at, api_key_hash, change_type);
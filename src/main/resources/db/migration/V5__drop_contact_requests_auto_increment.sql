@@ -0,0 +1,4 @@
+-- Contact request ids are only allocated from contact_requests_seq. Applied in
+-- the same deploy as V2, since no instance inserting with auto increment ids
+-- is running by then, see V2.
+ALTER TABLE contact_requests MODIFY id BIGINT NOT NULL;
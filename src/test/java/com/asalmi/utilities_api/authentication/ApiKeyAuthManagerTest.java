@@ -0,0 +1,254 @@
+package com.asalmi.utilities_api.authentication;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Consumer;
+
+import javax.sql.DataSource;
+
+import com.asalmi.utilities_api.constants.Constants;
+import com.asalmi.utilities_api.model.ApiKeyIdentity;
+import com.asalmi.utilities_api.utils.Sha256Hasher;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+import org.springframework.security.authentication.AuthenticationServiceException;
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.security.core.AuthenticationException;
+
+/**
+ * Authenticates API keys against a mocked database and store
+ */
+public class ApiKeyAuthManagerTest {
+
+  private DataSource dataSource;
+  private Connection connection;
+  private PreparedStatement statement;
+  private ResultSet resultSet;
+  private ApiKeyStore store;
+  private ExecutorService loaderExecutor;
+
+  private byte[] digest;
+
+  @Before
+  public void Setup() throws Exception {
+    dataSource = Mockito.mock(DataSource.class);
+    connection = Mockito.mock(Connection.class);
+    statement = Mockito.mock(PreparedStatement.class);
+    resultSet = Mockito.mock(ResultSet.class);
+    Mockito.when(dataSource.getConnection()).thenReturn(connection);
+    Mockito.when(connection.prepareStatement(anyString())).thenReturn(statement);
+    Mockito.when(statement.executeQuery()).thenReturn(resultSet);
+
+    store = Mockito.mock(ApiKeyStore.class);
+    Mockito.when(store.mightBeAuthorized(any(byte[].class))).thenReturn(true);
+    Mockito.when(store.putIdentity(any(byte[].class), any(ApiKeyIdentity.class), anyLong())).thenReturn(true);
+
+    loaderExecutor = Executors.newFixedThreadPool(2);
+    digest = Sha256Hasher.digest("Test Key");
+  }
+
+  @After
+  public void tearDown() {
+    loaderExecutor.shutdownNow();
+  }
+
+  @Test
+  public void authenticate_QueryTimeout_RoundedUp() throws Exception {
+    Mockito.when(resultSet.next()).thenReturn(false);
+
+    assertRejected(authManager(loaderExecutor, Duration.ofMillis(1500)), BadCredentialsException.class);
+
+    Mockito.verify(statement).setQueryTimeout(2);
+  }
+
+  @Test
+  public void authenticate_LoadTimedOut_Rejected() throws Exception {
+    CountDownLatch release = new CountDownLatch(1);
+    Mockito.when(dataSource.getConnection()).thenAnswer(invocation -> {
+      release.await();
+      return connection;
+    });
+
+    try {
+      assertRejected(authManager(loaderExecutor, Duration.ofSeconds(1)), AuthenticationServiceException.class);
+    } finally {
+      release.countDown();
+    }
+  }
+
+  @Test
+  public void authenticate_LoaderFull_Rejected() throws Exception {
+    ApiKeyAuthManager authManager = authManager(command -> {
+      throw new RejectedExecutionException("Test exception");
+    }, Duration.ofSeconds(1));
+
+    assertRejected(authManager, AuthenticationServiceException.class);
+    Mockito.verifyNoInteractions(dataSource);
+  }
+
+  @Test
+  public void authenticate_DatabaseError_FailsClosed_NotCached() throws Exception {
+    Mockito.when(dataSource.getConnection()).thenThrow(new SQLException("Test exception"));
+    ApiKeyAuthManager authManager = authManager(loaderExecutor, Duration.ofSeconds(1));
+
+    assertRejected(authManager, AuthenticationServiceException.class);
+
+    // Failed loads are dropped from the cache once they complete, and retried by
+    // the next request
+    for (int i = 0; i < 50 && Mockito.mockingDetails(dataSource).getInvocations().size() < 2; i++) {
+      Thread.sleep(10);
+      assertRejected(authManager, AuthenticationServiceException.class);
+    }
+    Assert.assertTrue(Mockito.mockingDetails(dataSource).getInvocations().size() >= 2);
+  }
+
+  @Test
+  public void authenticate_RemovedDuringLoad_LoadedAgain() throws Exception {
+    Mockito.when(resultSet.next()).thenReturn(true);
+    Mockito.when(resultSet.getString(1)).thenReturn("Tests");
+    Mockito.when(resultSet.getString(2)).thenReturn(Constants.APP_NAME);
+    // A key is removed after the first load has read the database
+    Mockito.when(store.putIdentity(any(byte[].class), any(ApiKeyIdentity.class), anyLong()))
+        .thenReturn(false, true);
+
+    ApiKeyAuthentication authentication = authManager(loaderExecutor, Duration.ofSeconds(1)).authenticate(digest);
+
+    Assert.assertTrue(authentication.isAuthenticated());
+    Mockito.verify(statement, Mockito.times(2)).executeQuery();
+    Mockito.verify(store, Mockito.times(2)).putIdentity(any(byte[].class), any(ApiKeyIdentity.class), anyLong());
+  }
+
+  @Test
+  public void authenticate_CacheHit_NotCheckedAgain() {
+    preloaded(new ApiKeyIdentity("Tests", Constants.APP_NAME));
+    ApiKeyAuthManager authManager = authManager(loaderExecutor, Duration.ofSeconds(1));
+
+    ApiKeyAuthentication first = authManager.authenticate(digest);
+    ApiKeyAuthentication second = authManager.authenticate(Sha256Hasher.digest("Test Key"));
+
+    Assert.assertEquals("Tests", second.getConsumer());
+    Assert.assertEquals(first.getAuthorities(), second.getAuthorities());
+    Mockito.verify(store, Mockito.times(1)).isAuthorized(any(byte[].class));
+    Mockito.verifyNoInteractions(dataSource);
+  }
+
+  @Test
+  public void authenticate_TokenPerRequest() {
+    preloaded(new ApiKeyIdentity("Tests", Constants.APP_NAME));
+    ApiKeyAuthManager authManager = authManager(loaderExecutor, Duration.ofSeconds(1));
+
+    ApiKeyAuthentication first = authManager.authenticate(digest);
+    first.setAuthenticated(false);
+
+    ApiKeyAuthentication second = authManager.authenticate(digest);
+    Assert.assertNotSame(first, second);
+    Assert.assertTrue(second.isAuthenticated());
+  }
+
+  @Test
+  public void authenticate_RevokedKey_Rejected() {
+    preloaded(new ApiKeyIdentity("Tests", Constants.APP_NAME));
+    ApiKeyAuthManager authManager = authManager(loaderExecutor, Duration.ofSeconds(1));
+    authManager.authenticate(digest);
+
+    // Revoked by another instance, and removed by the poll
+    Mockito.when(store.isAuthorized(any(byte[].class))).thenReturn(false);
+    Mockito.when(store.removalGeneration()).thenReturn(1L);
+
+    assertRejected(authManager, BadCredentialsException.class);
+  }
+
+  @Test
+  public void authenticate_RevokedWhileCaching_Rejected() {
+    preloaded(new ApiKeyIdentity("Tests", Constants.APP_NAME));
+    // Revoked after the key was checked, but before its token was cached
+    Mockito.when(store.removalGeneration()).thenReturn(0L, 1L);
+    Mockito.when(store.isAuthorized(any(byte[].class))).thenReturn(true, false);
+
+    assertRejected(authManager(loaderExecutor, Duration.ofSeconds(1)), BadCredentialsException.class);
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  public void authenticate_RemovalListener_TokenDropped() {
+    preloaded(new ApiKeyIdentity("Tests", Constants.APP_NAME));
+    ApiKeyAuthManager authManager = authManager(loaderExecutor, Duration.ofSeconds(1));
+    ArgumentCaptor<Consumer<byte[]>> listener = ArgumentCaptor.forClass(Consumer.class);
+    Mockito.verify(store).addRemovalListener(listener.capture());
+    authManager.authenticate(digest);
+
+    Mockito.when(store.isAuthorized(any(byte[].class))).thenReturn(false);
+    listener.getValue().accept(Sha256Hasher.digest("Test Key"));
+
+    assertRejected(authManager, BadCredentialsException.class);
+  }
+
+  @Test
+  public void authenticate_Unresolved_NotCached() {
+    preloaded(null);
+    ApiKeyAuthManager authManager = authManager(loaderExecutor, Duration.ofSeconds(1));
+
+    ApiKeyAuthentication authentication = authManager.authenticate(digest);
+    authManager.authenticate(digest);
+
+    Assert.assertTrue(authentication.isAuthenticated());
+    Assert.assertFalse(authentication.isResolved());
+    Assert.assertTrue(authentication.getAuthorities().isEmpty());
+    Mockito.verify(store, Mockito.times(2)).isAuthorized(any(byte[].class));
+  }
+
+  /*
+   * Answers lookups from the preloaded keys, which include this key
+   */
+  private void preloaded(ApiKeyIdentity identity) {
+    Mockito.when(store.isActive()).thenReturn(true);
+    Mockito.when(store.isAuthorized(any(byte[].class))).thenReturn(true);
+    Mockito.when(store.getIdentity(any(byte[].class))).thenReturn(identity);
+  }
+
+  private ApiKeyAuthManager authManager(Executor executor, Duration queryTimeout) {
+    return ApiKeyAuthManager.builder()
+        .dataSource(dataSource)
+        .store(store)
+        .meterRegistry(new SimpleMeterRegistry())
+        .loaderExecutor(executor)
+        .maximumSize(100)
+        .ttl(Duration.ofMinutes(1))
+        .negativeTtl(Duration.ofSeconds(30))
+        .queryTimeout(queryTimeout)
+        .loadTimeout(Duration.ofMillis(200))
+        .defaultScopes(List.of(Constants.APP_NAME))
+        .consumerScopes(Map.of())
+        .build();
+  }
+
+  private void assertRejected(ApiKeyAuthManager authManager, Class<? extends AuthenticationException> expected) {
+    try {
+      authManager.authenticate(digest);
+      Assert.fail();
+    } catch (AuthenticationException ex) {
+      Assert.assertEquals(expected, ex.getClass());
+    }
+  }
+}
@@ -0,0 +1,125 @@
+package com.asalmi.utilities_api.authentication;
+
+import static org.mockito.ArgumentMatchers.any;
+
+import com.asalmi.utilities_api.constants.Constants;
+import com.asalmi.utilities_api.utils.Sha256Hasher;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.security.core.authority.AuthorityUtils;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+public class ApiKeyAuthenticationFilterTest {
+
+  private ApiKeyAuthManager authManager;
+  private SimpleMeterRegistry meterRegistry;
+  private ApiKeyAuthenticationFilter filter;
+  private MockHttpServletRequest request;
+  private MockHttpServletResponse response;
+  private MockFilterChain chain;
+
+  @Before
+  public void Setup() {
+    authManager = Mockito.mock(ApiKeyAuthManager.class);
+    meterRegistry = new SimpleMeterRegistry();
+    filter = new ApiKeyAuthenticationFilter(authManager, new CustomAuthenticationEntryPoint(), meterRegistry);
+    request = new MockHttpServletRequest();
+    response = new MockHttpServletResponse();
+    chain = new MockFilterChain();
+  }
+
+  @After
+  public void tearDown() {
+    SecurityContextHolder.clearContext();
+  }
+
+  @Test
+  public void doFilter_ValidKey_Authenticated() throws Exception {
+    ApiKeyAuthentication authentication = token("Tests");
+    Mockito.when(authManager.authenticate(any(byte[].class))).thenReturn(authentication);
+    request.addHeader(Constants.API_KEY_HEADER, "Test Key");
+
+    filter.doFilter(request, response, chain);
+
+    Assert.assertSame(authentication, SecurityContextHolder.getContext().getAuthentication());
+    Assert.assertNotNull(chain.getRequest());
+    ArgumentCaptor<byte[]> digest = ArgumentCaptor.forClass(byte[].class);
+    Mockito.verify(authManager).authenticate(digest.capture());
+    Assert.assertArrayEquals(Sha256Hasher.digest("Test Key"), digest.getValue());
+  }
+
+  @Test
+  public void doFilter_Unresolved_Authenticated() throws Exception {
+    Mockito.when(authManager.authenticate(any(byte[].class))).thenReturn(token(null));
+    request.addHeader(Constants.API_KEY_HEADER, "Test Key");
+
+    filter.doFilter(request, response, chain);
+
+    Assert.assertTrue(SecurityContextHolder.getContext().getAuthentication().isAuthenticated());
+    Assert.assertNotNull(chain.getRequest());
+  }
+
+  @Test
+  public void doFilter_InvalidKey_Rejected() throws Exception {
+    Mockito.when(authManager.authenticate(any(byte[].class)))
+        .thenThrow(new BadCredentialsException("Test exception"));
+    request.addHeader(Constants.API_KEY_HEADER, "Revoked Key");
+
+    filter.doFilter(request, response, chain);
+
+    Assert.assertEquals(403, response.getStatus());
+    Assert.assertNull(SecurityContextHolder.getContext().getAuthentication());
+    Assert.assertNull(chain.getRequest());
+  }
+
+  @Test
+  public void doFilter_NoKey_NotAuthenticated() throws Exception {
+    filter.doFilter(request, response, chain);
+
+    Assert.assertNull(SecurityContextHolder.getContext().getAuthentication());
+    Assert.assertNotNull(chain.getRequest());
+    Mockito.verifyNoInteractions(authManager);
+  }
+
+  @Test
+  public void doFilter_StagesTimed() throws Exception {
+    Mockito.when(authManager.authenticate(any(byte[].class))).thenReturn(token("Tests"));
+    request.addHeader(Constants.API_KEY_HEADER, "Test Key");
+
+    filter.doFilter(request, response, chain);
+
+    Assert.assertEquals(1, stageCount("header"));
+    Assert.assertEquals(1, stageCount("hash"));
+    Assert.assertEquals(1, stageCount("lookup"));
+  }
+
+  @Test
+  public void doFilter_NoKey_OnlyHeaderTimed() throws Exception {
+    filter.doFilter(request, response, chain);
+
+    Assert.assertEquals(1, stageCount("header"));
+    Assert.assertEquals(0, stageCount("hash"));
+    Assert.assertEquals(0, stageCount("lookup"));
+  }
+
+  private long stageCount(String stage) {
+    return meterRegistry.get("apikey.auth.stage").tag("stage", stage).timer().count();
+  }
+
+  private static ApiKeyAuthentication token(String consumer) {
+    byte[] digest = Sha256Hasher.digest("Test Key");
+    return new ApiKeyAuthentication(digest, Sha256Hasher.toLegacyHex(digest), consumer,
+        consumer == null ? null : Constants.APP_NAME, AuthorityUtils.NO_AUTHORITIES);
+  }
+}
@@ -0,0 +1,54 @@
+package com.asalmi.utilities_api.authentication;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.asalmi.utilities_api.utils.Sha256Hasher;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ApiKeyBloomFilterTest {
+
+  @Test
+  public void mightContain_Added_NoFalseNegatives() {
+    ApiKeyBloomFilter filter = new ApiKeyBloomFilter(10000, 0.01);
+    List<byte[]> digests = new ArrayList<>();
+    for (int i = 0; i < 10000; i++) {
+      byte[] digest = Sha256Hasher.digest("key-" + i);
+      digests.add(digest);
+      filter.add(digest);
+    }
+
+    for (byte[] digest : digests) {
+      Assert.assertTrue(filter.mightContain(digest));
+    }
+  }
+
+  @Test
+  public void mightContain_NotAdded_FalsePositiveRate() {
+    ApiKeyBloomFilter filter = new ApiKeyBloomFilter(10000, 0.01);
+    for (int i = 0; i < 10000; i++) {
+      filter.add(Sha256Hasher.digest("key-" + i));
+    }
+
+    int falsePositives = 0;
+    int lookups = 100000;
+    for (int i = 0; i < lookups; i++) {
+      if (filter.mightContain(Sha256Hasher.digest("other-" + i))) {
+        falsePositives++;
+      }
+    }
+
+    // Roughly the configured 1%, with room for the variance of the sample
+    double rate = (double) falsePositives / lookups;
+    Assert.assertTrue("False positive rate " + rate, rate > 0.002 && rate < 0.02);
+  }
+
+  @Test
+  public void mightContain_Empty() {
+    ApiKeyBloomFilter filter = new ApiKeyBloomFilter(0, 0.01);
+
+    Assert.assertFalse(filter.mightContain(Sha256Hasher.digest("key")));
+  }
+}
@@ -0,0 +1,106 @@
+package com.asalmi.utilities_api.authentication;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.asalmi.utilities_api.utils.Sha256Hasher;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+public class ApiKeyDigestTableTest {
+
+  @Test
+  public void withAll_CopyOnWrite() {
+    byte[] first = Sha256Hasher.digest("first");
+    byte[] second = Sha256Hasher.digest("second");
+
+    ApiKeyDigestTable original = ApiKeyDigestTable.EMPTY.withAll(List.of(first));
+    ApiKeyDigestTable added = original.withAll(List.of(second));
+
+    Assert.assertTrue(added.contains(first));
+    Assert.assertTrue(added.contains(second));
+    Assert.assertEquals(2, added.size());
+    // The original is unchanged
+    Assert.assertFalse(original.contains(second));
+    Assert.assertEquals(1, original.size());
+    Assert.assertFalse(ApiKeyDigestTable.EMPTY.contains(first));
+  }
+
+  @Test
+  public void withAll_Duplicate_CountedOnce() {
+    byte[] digest = Sha256Hasher.digest("first");
+
+    ApiKeyDigestTable table = ApiKeyDigestTable.EMPTY.withAll(List.of(digest)).withAll(List.of(digest.clone()));
+
+    Assert.assertEquals(1, table.size());
+  }
+
+  @Test
+  public void withoutAll_CopyOnWrite() {
+    byte[] first = Sha256Hasher.digest("first");
+    byte[] second = Sha256Hasher.digest("second");
+    ApiKeyDigestTable original = ApiKeyDigestTable.EMPTY.withAll(List.of(first, second));
+
+    ApiKeyDigestTable removed = original.withoutAll(List.of(first));
+
+    Assert.assertFalse(removed.contains(first));
+    Assert.assertTrue(removed.contains(second));
+    Assert.assertEquals(1, removed.size());
+    // The original is unchanged
+    Assert.assertTrue(original.contains(first));
+    Assert.assertEquals(2, original.size());
+    // Removing keys that aren't in the table doesn't copy it
+    Assert.assertSame(removed, removed.withoutAll(List.of(first)));
+  }
+
+  @Test
+  public void contains_HashCollisions_Probed() {
+    // Digests with the same first long start probing at the same slot
+    List<byte[]> digests = new ArrayList<>();
+    for (int i = 0; i < 8; i++) {
+      digests.add(ByteBuffer.allocate(32).putLong(42).putLong(i).putLong(i * 31L).putLong(1).array());
+    }
+    ApiKeyDigestTable table = ApiKeyDigestTable.EMPTY.withAll(digests);
+
+    for (byte[] digest : digests) {
+      Assert.assertTrue(table.contains(digest));
+    }
+    Assert.assertFalse(table.contains(ByteBuffer.allocate(32).putLong(42).putLong(8).putLong(0).putLong(1).array()));
+
+    // Removing a key in the middle of a probe sequence keeps the keys after it
+    ApiKeyDigestTable removed = table.withoutAll(List.of(digests.get(3)));
+    Assert.assertFalse(removed.contains(digests.get(3)));
+    for (int i = 4; i < digests.size(); i++) {
+      Assert.assertTrue(removed.contains(digests.get(i)));
+    }
+  }
+
+  @Test
+  public void withAll_Grows_AtMostHalfFull() {
+    ApiKeyDigestTable table = ApiKeyDigestTable.EMPTY;
+    List<byte[]> digests = new ArrayList<>();
+    for (int i = 0; i < 1000; i++) {
+      byte[] digest = Sha256Hasher.digest("key-" + i);
+      digests.add(digest);
+      table = table.withAll(List.of(digest));
+
+      long[] slots = (long[]) ReflectionTestUtils.getField(table, "slots");
+      Assert.assertTrue(table.size() * 2 <= slots.length / 4);
+    }
+
+    Assert.assertEquals(1000, table.size());
+    for (byte[] digest : digests) {
+      Assert.assertTrue(table.contains(digest));
+    }
+  }
+
+  @Test
+  public void contains_WrongLength() {
+    ApiKeyDigestTable table = ApiKeyDigestTable.EMPTY.withAll(List.of(Sha256Hasher.digest("first")));
+
+    Assert.assertFalse(table.contains(new byte[16]));
+  }
+}
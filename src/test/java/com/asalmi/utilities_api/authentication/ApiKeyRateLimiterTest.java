@@ -0,0 +1,138 @@
+package com.asalmi.utilities_api.authentication;
+
+import static org.mockito.ArgumentMatchers.any;
+
+import java.util.concurrent.TimeUnit;
+
+import com.asalmi.utilities_api.constants.Constants;
+import com.asalmi.utilities_api.model.ApiKeyIdentity;
+import com.asalmi.utilities_api.utils.Sha256Hasher;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.springframework.mock.env.MockEnvironment;
+
+public class ApiKeyRateLimiterTest {
+
+  private ApiKeyStore store;
+  private MockEnvironment environment;
+  private SimpleMeterRegistry meterRegistry;
+  private byte[] digest;
+
+  @Before
+  public void Setup() {
+    store = Mockito.mock(ApiKeyStore.class);
+    environment = new MockEnvironment().withProperty("apikey.ratelimit.consumers.Limited", "10");
+    meterRegistry = new SimpleMeterRegistry();
+    digest = Sha256Hasher.digest("Test Key");
+  }
+
+  @Test
+  public void tryAcquire_Burst_ThenThrottled() {
+    ApiKeyRateLimiter rateLimiter = rateLimiter(60, 3);
+
+    for (int i = 0; i < 3; i++) {
+      Assert.assertEquals(0, rateLimiter.tryAcquire(digest));
+    }
+    long wait = rateLimiter.tryAcquire(digest);
+
+    // One request a second, so the next is allowed within a second
+    Assert.assertTrue(wait > 0 && wait <= TimeUnit.SECONDS.toNanos(1));
+    Assert.assertEquals(3, meterRegistry.get("apikey.ratelimit.requests").tag("result", "allowed").counter().count(),
+        0);
+    Assert.assertEquals(1, meterRegistry.get("apikey.ratelimit.requests").tag("result", "throttled").counter()
+        .count(), 0);
+  }
+
+  @Test
+  public void tryAcquire_Refilled() throws Exception {
+    ApiKeyRateLimiter rateLimiter = rateLimiter(600, 1);
+
+    Assert.assertEquals(0, rateLimiter.tryAcquire(digest));
+    long wait = rateLimiter.tryAcquire(digest);
+    Assert.assertTrue(wait > 0);
+
+    TimeUnit.NANOSECONDS.sleep(wait + TimeUnit.MILLISECONDS.toNanos(5));
+    Assert.assertEquals(0, rateLimiter.tryAcquire(digest));
+  }
+
+  @Test
+  public void tryAcquire_KeysLimitedSeparately() {
+    ApiKeyRateLimiter rateLimiter = rateLimiter(60, 1);
+
+    Assert.assertEquals(0, rateLimiter.tryAcquire(digest));
+    Assert.assertTrue(rateLimiter.tryAcquire(digest) > 0);
+    Assert.assertEquals(0, rateLimiter.tryAcquire(Sha256Hasher.digest("Other Key")));
+  }
+
+  @Test
+  public void tryAcquire_KeyLimit_First() {
+    Mockito.when(store.getIdentity(any(byte[].class)))
+        .thenReturn(new ApiKeyIdentity("Limited", Constants.APP_NAME, 5));
+
+    // 5 a minute, from the key's row, rather than its consumer's 10
+    Assert.assertEquals(12, secondsUntilNextRequest(rateLimiter(60, 1)));
+  }
+
+  @Test
+  public void tryAcquire_ConsumerLimit_WithoutKeyLimit() {
+    Mockito.when(store.getIdentity(any(byte[].class)))
+        .thenReturn(new ApiKeyIdentity("Limited", Constants.APP_NAME));
+
+    Assert.assertEquals(6, secondsUntilNextRequest(rateLimiter(60, 1)));
+  }
+
+  @Test
+  public void tryAcquire_DefaultLimit() {
+    Mockito.when(store.getIdentity(any(byte[].class)))
+        .thenReturn(new ApiKeyIdentity("Other", Constants.APP_NAME));
+
+    Assert.assertEquals(1, secondsUntilNextRequest(rateLimiter(60, 1)));
+  }
+
+  @Test
+  public void tryAcquire_KeyLimitChanged_BucketReplaced() {
+    ApiKeyRateLimiter rateLimiter = rateLimiter(60, 1);
+    Mockito.when(store.getIdentity(any(byte[].class)))
+        .thenReturn(new ApiKeyIdentity("Other", Constants.APP_NAME));
+    Assert.assertEquals(0, rateLimiter.tryAcquire(digest));
+
+    Mockito.when(store.getIdentity(any(byte[].class)))
+        .thenReturn(new ApiKeyIdentity("Other", Constants.APP_NAME, 5));
+
+    // The request already made still counts once the bucket is replaced
+    long wait = rateLimiter.tryAcquire(digest);
+    Assert.assertTrue(wait > 0 && wait <= TimeUnit.SECONDS.toNanos(1));
+  }
+
+  @Test
+  public void tryAcquire_Disabled() {
+    ApiKeyRateLimiter rateLimiter = new ApiKeyRateLimiter(store, meterRegistry, environment, false, 1, 1, 100);
+
+    for (int i = 0; i < 10; i++) {
+      Assert.assertEquals(0, rateLimiter.tryAcquire(digest));
+    }
+  }
+
+  private ApiKeyRateLimiter rateLimiter(long requestsPerMinute, long burst) {
+    return new ApiKeyRateLimiter(store, meterRegistry, environment, true, requestsPerMinute, burst, 100);
+  }
+
+  /*
+   * Makes a request with a fresh key, and returns how long the next one has to
+   * wait, rounded up to whole seconds
+   */
+  private long secondsUntilNextRequest(ApiKeyRateLimiter rateLimiter) {
+    Assert.assertEquals(0, rateLimiter.tryAcquire(digest));
+    return secondsUntilNextRequest(rateLimiter, digest);
+  }
+
+  private static long secondsUntilNextRequest(ApiKeyRateLimiter rateLimiter, byte[] digest) {
+    long wait = rateLimiter.tryAcquire(digest);
+    return (wait + TimeUnit.SECONDS.toNanos(1) - 1) / TimeUnit.SECONDS.toNanos(1);
+  }
+}
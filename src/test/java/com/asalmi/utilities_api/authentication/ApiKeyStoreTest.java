@@ -0,0 +1,126 @@
+package com.asalmi.utilities_api.authentication;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.sql.DataSource;
+
+import com.asalmi.utilities_api.constants.Constants;
+import com.asalmi.utilities_api.model.ApiKey;
+import com.asalmi.utilities_api.model.ApiKeyChange;
+import com.asalmi.utilities_api.model.ApiKeyIdentity;
+import com.asalmi.utilities_api.repository.IApiKeyChangeRepository;
+import com.asalmi.utilities_api.repository.IApiKeyRepository;
+import com.asalmi.utilities_api.utils.Sha256Hasher;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+
+/**
+ * Loads API keys into a store from an embedded database
+ */
+@SpringBootTest(properties = {
+    "spring.datasource.url=jdbc:h2:mem:apikeystore;MODE=MySQL;DB_CLOSE_DELAY=-1",
+    "spring.datasource.username=sa",
+    "spring.datasource.password=",
+    "spring.jpa.hibernate.ddl-auto=validate"
+})
+@RunWith(SpringRunner.class)
+public class ApiKeyStoreTest {
+
+  @Autowired
+  private DataSource dataSource;
+
+  @Autowired
+  private IApiKeyRepository apiKeyRepository;
+
+  @Autowired
+  private IApiKeyChangeRepository apiKeyChangeRepository;
+
+  private ApiKeyStore store;
+
+  @Before
+  public void Setup() {
+    apiKeyChangeRepository.deleteAll();
+    apiKeyRepository.deleteAll();
+    store = new ApiKeyStore(dataSource, true, true, 1000, 0.01, 100, 60000, new SimpleMeterRegistry());
+  }
+
+  @Test
+  public void refresh_InvalidHash_Skipped() {
+    byte[] digest = Sha256Hasher.digest("Test Key");
+    save(Sha256Hasher.toLegacyHex(digest));
+    save("Not a hash");
+
+    store.refresh();
+
+    Assert.assertTrue(store.isActive());
+    Assert.assertTrue(store.isAuthorized(digest));
+    Assert.assertTrue(store.mightBeAuthorized(digest));
+  }
+
+  @Test
+  public void getIdentity_ByDigest() {
+    byte[] digest = Sha256Hasher.digest("Test Key");
+    store.putIdentity(digest, new ApiKeyIdentity("Tests", Constants.APP_NAME), store.removalGeneration());
+    // The store keeps its own copy
+    digest[0]++;
+
+    Assert.assertEquals("Tests", store.getIdentity(Sha256Hasher.digest("Test Key")).getConsumer());
+    Assert.assertNull(store.getIdentity(digest));
+  }
+
+  @Test
+  public void putIdentity_RemovedDuringLookup_NotCached() {
+    byte[] digest = Sha256Hasher.digest("Test Key");
+    long removalGeneration = store.removalGeneration();
+    store.remove(Sha256Hasher.toLegacyHex(Sha256Hasher.digest("Other Key")));
+
+    Assert.assertFalse(store.putIdentity(digest, new ApiKeyIdentity("Tests", Constants.APP_NAME),
+        removalGeneration));
+    Assert.assertNull(store.getIdentity(digest));
+  }
+
+  @Test
+  public void pollChanges_InvalidHash_Skipped() {
+    byte[] digest = Sha256Hasher.digest("Test Key");
+    String apiKeyHash = Sha256Hasher.toLegacyHex(digest);
+    save(apiKeyHash);
+    store.refresh();
+    List<byte[]> removed = new ArrayList<>();
+    store.addRemovalListener(removed::add);
+
+    saveChange("Not a hash");
+    saveChange(apiKeyHash);
+    store.pollChanges();
+
+    Assert.assertFalse(store.isAuthorized(digest));
+    Assert.assertEquals(1, removed.size());
+    Assert.assertArrayEquals(digest, removed.get(0));
+  }
+
+  private void save(String apiKeyHash) {
+    apiKeyRepository.save(ApiKey.builder()
+        .apiKeyHash(apiKeyHash)
+        .application(Constants.APP_NAME)
+        .consumer("Tests")
+        .createdAt(LocalDateTime.now())
+        .build());
+  }
+
+  private void saveChange(String apiKeyHash) {
+    apiKeyChangeRepository.save(ApiKeyChange.builder()
+        .apiKeyHash(apiKeyHash)
+        .changeType(ApiKeyChange.Type.REVOKED)
+        .createdAt(LocalDateTime.now())
+        .build());
+  }
+}
@@ -0,0 +1,79 @@
+package com.asalmi.utilities_api.authentication;
+
+import static org.mockito.ArgumentMatchers.any;
+
+import java.util.concurrent.TimeUnit;
+
+import com.asalmi.utilities_api.constants.Constants;
+import com.asalmi.utilities_api.utils.Sha256Hasher;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.core.authority.AuthorityUtils;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+public class RateLimitFilterTest {
+
+  private ApiKeyRateLimiter rateLimiter;
+  private RateLimitFilter filter;
+  private MockHttpServletResponse response;
+  private MockFilterChain chain;
+
+  @Before
+  public void Setup() {
+    rateLimiter = Mockito.mock(ApiKeyRateLimiter.class);
+    filter = new RateLimitFilter(rateLimiter);
+    response = new MockHttpServletResponse();
+    chain = new MockFilterChain();
+
+    byte[] digest = Sha256Hasher.digest("Test Key");
+    SecurityContextHolder.getContext().setAuthentication(new ApiKeyAuthentication(digest,
+        Sha256Hasher.toLegacyHex(digest), "Tests", Constants.APP_NAME, AuthorityUtils.NO_AUTHORITIES));
+  }
+
+  @After
+  public void tearDown() {
+    SecurityContextHolder.clearContext();
+  }
+
+  @Test
+  public void doFilter_Allowed() throws Exception {
+    Mockito.when(rateLimiter.tryAcquire(any(byte[].class))).thenReturn(0L);
+
+    filter.doFilter(new MockHttpServletRequest(), response, chain);
+
+    Assert.assertEquals(HttpStatus.OK.value(), response.getStatus());
+    Assert.assertNotNull(chain.getRequest());
+  }
+
+  @Test
+  public void doFilter_Throttled_RetryAfter() throws Exception {
+    Mockito.when(rateLimiter.tryAcquire(any(byte[].class))).thenReturn(TimeUnit.MILLISECONDS.toNanos(1500));
+
+    filter.doFilter(new MockHttpServletRequest(), response, chain);
+
+    Assert.assertEquals(HttpStatus.TOO_MANY_REQUESTS.value(), response.getStatus());
+    // Rounded up, so that the retry is allowed
+    Assert.assertEquals("2", response.getHeader("Retry-After"));
+    Assert.assertTrue(response.getContentAsString(),
+        response.getContentAsString().contains("\"code\":" + Constants.ERROR_CODE_TOO_MANY_REQUESTS));
+    Assert.assertNull(chain.getRequest());
+  }
+
+  @Test
+  public void doFilter_NotApiKey_NotLimited() throws Exception {
+    SecurityContextHolder.clearContext();
+
+    filter.doFilter(new MockHttpServletRequest(), response, chain);
+
+    Assert.assertNotNull(chain.getRequest());
+    Mockito.verifyNoInteractions(rateLimiter);
+  }
+}
@@ -180,6 +180,33 @@ public class ApiKeyControllerTest {
         .andExpect(jsonPath("$.details").value(response.getDetails()));
   }
 
+  @Test
+  public void revoke_Success() throws Exception {
+    SuccessResponse response = new SuccessResponse(apiKeyValidateResponse);
+
+    Mockito.when(apiKeyService.revoke(any(String.class))).thenReturn(response);
+
+    performRevoke(apiKey)
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$.code").value(Constants.SUCCESS_CODE))
+        .andExpect(jsonPath("$.message").value(Constants.SUCCESS_MESSAGE))
+        .andExpect(jsonPath("$.details.application").value(apiKeyValidateResponse.getApplication()))
+        .andExpect(jsonPath("$.details.consumer").value(apiKeyValidateResponse.getConsumer()));
+  }
+
+  @Test
+  public void revoke_ServiceError() throws Exception {
+    ErrorResponse response = new ErrorResponse(Constants.ERROR_CODE_DATABASE_REVOKE_API_KEY, "Test details");
+
+    Mockito.when(apiKeyService.revoke(any(String.class))).thenReturn(response);
+
+    performRevoke(apiKey)
+        .andExpect(status().isInternalServerError())
+        .andExpect(jsonPath("$.code").value(response.getCode()))
+        .andExpect(jsonPath("$.message").value(response.getMessage()))
+        .andExpect(jsonPath("$.details").value(response.getDetails()));
+  }
+
   private ResultActions performGenerate(String request) throws Exception {
     MockHttpServletRequestBuilder postRequest = MockMvcRequestBuilders.post("/apikey/generate")
         .content(request)
@@ -196,4 +223,11 @@ public class ApiKeyControllerTest {
 
     return mockMvc.perform(getRequest);
   }
+
+  private ResultActions performRevoke(String apiKey) throws Exception {
+    MockHttpServletRequestBuilder deleteRequest = MockMvcRequestBuilders.delete("/apikey/revoke/" + apiKey)
+        .with(SecurityMockMvcRequestPostProcessors.user("test"));
+
+    return mockMvc.perform(deleteRequest);
+  }
 }
@@ -1,20 +1,35 @@
 package com.asalmi.utilities_api.controller;
 
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
 
+import java.io.ByteArrayInputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
 import java.util.Arrays;
 import java.util.List;
+import java.util.zip.GZIPInputStream;
 
 import com.asalmi.utilities_api.constants.Constants;
 import com.asalmi.utilities_api.exception.UtilitiesApiException;
+import com.asalmi.utilities_api.model.ContactExportFormat;
 import com.asalmi.utilities_api.model.ContactRequest;
 import com.asalmi.utilities_api.model.ContactRequestBody;
+import com.asalmi.utilities_api.model.ContactRequestPage;
+import com.asalmi.utilities_api.model.ContactRequestView;
 import com.asalmi.utilities_api.model.ErrorResponse;
 import com.asalmi.utilities_api.model.SuccessResponse;
 import com.asalmi.utilities_api.service.IContactService;
+import com.asalmi.utilities_api.service.serviceImpl.ContactRequestDeduplicator;
+import com.asalmi.utilities_api.service.serviceImpl.ContactRequestResponseCache;
 import com.asalmi.utilities_api.utils.Utils;
+import com.fasterxml.jackson.databind.ObjectMapper;
 
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -27,11 +42,15 @@ import org.springframework.http.MediaType;
 import org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors;
 import org.springframework.test.context.junit4.SpringRunner;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.test.web.servlet.ResultActions;
 import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
 import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
 
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.hamcrest.Matchers.*;
 
@@ -46,11 +65,21 @@ public class ContactControllerTest {
   @MockBean
   private IContactService contactService;
 
+  @MockBean
+  private ContactRequestDeduplicator deduplicator;
+
+  @MockBean
+  private ContactRequestResponseCache responseCache;
+
+  @Autowired
+  private ObjectMapper objectMapper;
+
   private ContactRequestBody contactRequestBody;
   private ContactRequest contactRequest;
+  private ContactRequestView contactRequestView;
 
   @Before
-  public void Setup() {
+  public void Setup() throws Exception {
     contactRequestBody = ContactRequestBody.builder()
         .email("test@test.com")
         .name("Test Name")
@@ -64,6 +93,21 @@ public class ContactControllerTest {
         .message("Test Message")
         .createdAt(LocalDateTime.now())
         .build();
+
+    contactRequestView = new ContactRequestView(contactRequest.getId(), contactRequest.getName(),
+        contactRequest.getEmail(), contactRequest.getMessage(), contactRequest.getPhone(),
+        contactRequest.getCreatedAt());
+
+    Mockito.when(deduplicator.send(any(ContactRequestBody.class), any(), any()))
+        .thenAnswer(invocation -> invocation.getArgument(2, ContactRequestDeduplicator.Send.class).send());
+
+    // A new cache for every test, since the service is mocked differently
+    ContactRequestResponseCache cache = new ContactRequestResponseCache(objectMapper, new SimpleMeterRegistry(), 100,
+        60000);
+    Mockito.when(responseCache.get(any(Long.class), any(ContactRequestResponseCache.Load.class)))
+        .thenAnswer(invocation -> cache.get(invocation.getArgument(0),
+            invocation.getArgument(1, ContactRequestResponseCache.Load.class)));
+    Mockito.when(responseCache.getCacheControl()).thenAnswer(invocation -> cache.getCacheControl());
   }
 
   @Test
@@ -79,6 +123,28 @@ public class ContactControllerTest {
         .andExpect(jsonPath("$.code").value(Constants.SUCCESS_CODE))
         .andExpect(jsonPath("$.message").value(Constants.SUCCESS_MESSAGE))
         .andExpect(jsonPath("$.details").value(Constants.SUCCESS_DETAILS_SEND_CONTACT_REQUEST));
+
+    Mockito.verify(deduplicator).send(any(ContactRequestBody.class), isNull(), any());
+  }
+
+  @Test
+  public void send_Success_IdempotencyKey() throws Exception {
+    String serializedRequest = Utils.serializeObject(contactRequestBody);
+
+    SuccessResponse response = new SuccessResponse(Constants.SUCCESS_DETAILS_SEND_CONTACT_REQUEST);
+
+    Mockito.when(contactService.send(any(ContactRequestBody.class))).thenReturn(response);
+
+    mockMvc.perform(MockMvcRequestBuilders.post("/contact/send")
+        .content(serializedRequest)
+        .accept(MediaType.APPLICATION_JSON)
+        .contentType(MediaType.APPLICATION_JSON)
+        .header(Constants.IDEMPOTENCY_KEY_HEADER, "Test Key")
+        .with(SecurityMockMvcRequestPostProcessors.user("test")))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$.code").value(Constants.SUCCESS_CODE));
+
+    Mockito.verify(deduplicator).send(any(ContactRequestBody.class), eq("Test Key"), any());
   }
 
   @Test
@@ -152,12 +218,14 @@ public class ContactControllerTest {
 
   @Test
   public void get_Success_NoEmail() throws Exception {
-    List<ContactRequest> response = Arrays.asList(contactRequest);
+    List<ContactRequestView> response = Arrays.asList(contactRequestView);
 
-    Mockito.when(contactService.get(null)).thenReturn(response);
+    Mockito.when(contactService.get(isNull(), isNull(), isNull(), isNull(), isNull()))
+        .thenReturn(new ContactRequestPage(response, null));
 
     performGet(null)
         .andExpect(status().isOk())
+        .andExpect(header().doesNotExist(Constants.NEXT_CURSOR_HEADER))
         .andExpect(jsonPath("$").isArray())
         .andExpect(jsonPath("$", hasSize(1)))
         .andExpect(jsonPath("$[0].id").value(response.get(0).getId()))
@@ -169,12 +237,14 @@ public class ContactControllerTest {
 
   @Test
   public void get_Success_WithEmail() throws Exception {
-    List<ContactRequest> response = Arrays.asList(contactRequest);
+    List<ContactRequestView> response = Arrays.asList(contactRequestView);
 
-    Mockito.when(contactService.get(any(String.class))).thenReturn(response);
+    Mockito.when(contactService.get(eq("test@email.com"), isNull(), isNull(), isNull(), isNull()))
+        .thenReturn(new ContactRequestPage(response, "Test Cursor"));
 
     performGet("test@email.com")
         .andExpect(status().isOk())
+        .andExpect(header().string(Constants.NEXT_CURSOR_HEADER, "Test Cursor"))
         .andExpect(jsonPath("$").isArray())
         .andExpect(jsonPath("$", hasSize(1)))
         .andExpect(jsonPath("$[0].id").value(response.get(0).getId()))
@@ -184,12 +254,26 @@ public class ContactControllerTest {
         .andExpect(jsonPath("$[0].phone").value(response.get(0).getPhone()));
   }
 
+  @Test
+  public void get_Success_Page() throws Exception {
+    List<ContactRequestView> response = Arrays.asList(contactRequestView);
+
+    Mockito.when(contactService.get(null, LocalDateTime.of(2023, 1, 1, 0, 0), LocalDateTime.of(2023, 2, 1, 0, 0),
+        "TestCursor", 10)).thenReturn(new ContactRequestPage(response, null));
+
+    mockMvc.perform(MockMvcRequestBuilders
+        .get("/contact/get?from=2023-01-01T00:00:00&to=2023-02-01T00:00:00&cursor=TestCursor&limit=10")
+        .with(SecurityMockMvcRequestPostProcessors.user("test")))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$", hasSize(1)));
+  }
+
   @Test
   public void get_ServiceException() throws Exception {
     UtilitiesApiException exception = new UtilitiesApiException(Constants.ERROR_CODE_DEFAULT, "Test details");
     ErrorResponse response = new ErrorResponse(Constants.ERROR_CODE_DEFAULT, "Test details");
 
-    Mockito.when(contactService.get(null)).thenThrow(exception);
+    Mockito.when(contactService.get(isNull(), isNull(), isNull(), isNull(), isNull())).thenThrow(exception);
 
     performGet(null)
         .andExpect(status().isInternalServerError())
@@ -198,6 +282,64 @@ public class ContactControllerTest {
         .andExpect(jsonPath("$.details").value(response.getDetails()));
   }
 
+  @Test
+  public void export_Success() throws Exception {
+    Mockito.doAnswer(invocation -> {
+      invocation.getArgument(1, OutputStream.class).write("{\"id\":1}\n".getBytes(StandardCharsets.UTF_8));
+      return null;
+    }).when(contactService).export(eq(ContactExportFormat.NDJSON), any(OutputStream.class));
+
+    MvcResult result = mockMvc.perform(MockMvcRequestBuilders
+        .get("/contact/export")
+        .with(SecurityMockMvcRequestPostProcessors.user("test")))
+        .andExpect(request().asyncStarted())
+        .andReturn();
+
+    mockMvc.perform(MockMvcRequestBuilders.asyncDispatch(result))
+        .andExpect(status().isOk())
+        .andExpect(header().string("Content-Type", "application/x-ndjson"))
+        .andExpect(header().string("Content-Disposition", containsString("contact-requests.ndjson")))
+        .andExpect(header().doesNotExist("Content-Encoding"))
+        .andExpect(content().string("{\"id\":1}\n"));
+  }
+
+  @Test
+  public void export_Success_Gzip() throws Exception {
+    Mockito.doAnswer(invocation -> {
+      invocation.getArgument(1, OutputStream.class).write("id,name\n".getBytes(StandardCharsets.UTF_8));
+      return null;
+    }).when(contactService).export(eq(ContactExportFormat.CSV), any(OutputStream.class));
+
+    MvcResult result = mockMvc.perform(MockMvcRequestBuilders
+        .get("/contact/export?format=csv")
+        .header("Accept-Encoding", "gzip, deflate")
+        .with(SecurityMockMvcRequestPostProcessors.user("test")))
+        .andExpect(request().asyncStarted())
+        .andReturn();
+
+    byte[] body = mockMvc.perform(MockMvcRequestBuilders.asyncDispatch(result))
+        .andExpect(status().isOk())
+        .andExpect(header().string("Content-Type", "text/csv"))
+        .andExpect(header().string("Content-Encoding", "gzip"))
+        .andExpect(header().stringValues("Vary", hasItem("Accept-Encoding")))
+        .andReturn().getResponse().getContentAsByteArray();
+
+    try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(body))) {
+      Assert.assertEquals("id,name\n", new String(in.readAllBytes(), StandardCharsets.UTF_8));
+    }
+  }
+
+  @Test
+  public void export_UnsupportedFormat() throws Exception {
+    mockMvc.perform(MockMvcRequestBuilders
+        .get("/contact/export?format=xml")
+        .with(SecurityMockMvcRequestPostProcessors.user("test")))
+        .andExpect(status().isBadRequest())
+        .andExpect(jsonPath("$.code").value(Constants.ERROR_CODE_BAD_REQUEST));
+
+    Mockito.verify(contactService, Mockito.never()).export(any(), any());
+  }
+
   @Test
   public void getById_Success() throws Exception {
     ContactRequest response = contactRequest;
@@ -213,6 +355,47 @@ public class ContactControllerTest {
         .andExpect(jsonPath("$.phone").value(response.getPhone()));
   }
 
+  @Test
+  public void getById_Success_CacheHeaders() throws Exception {
+    Mockito.when(contactService.getById(any(Long.class))).thenReturn(contactRequest);
+
+    performGetById(Long.parseLong("1"))
+        .andExpect(status().isOk())
+        .andExpect(header().string("ETag", matchesPattern("\"[0-9a-f]{64}\"")))
+        .andExpect(header().string("Cache-Control", "max-age=60, private"))
+        .andExpect(header().stringValues("Vary", hasItem(Constants.API_KEY_HEADER)));
+  }
+
+  @Test
+  public void getById_NotModified() throws Exception {
+    Mockito.when(contactService.getById(any(Long.class))).thenReturn(contactRequest);
+
+    String eTag = performGetById(Long.parseLong("1"))
+        .andExpect(status().isOk())
+        .andReturn().getResponse().getHeader("ETag");
+
+    mockMvc.perform(MockMvcRequestBuilders.get("/contact/get/1")
+        .header("If-None-Match", eTag)
+        .with(SecurityMockMvcRequestPostProcessors.user("test")))
+        .andExpect(status().isNotModified())
+        .andExpect(header().string("ETag", eTag))
+        .andExpect(content().bytes(new byte[0]));
+
+    // The contact request was only read for the first request
+    Mockito.verify(contactService, Mockito.times(1)).getById(Long.parseLong("1"));
+  }
+
+  @Test
+  public void getById_Modified() throws Exception {
+    Mockito.when(contactService.getById(any(Long.class))).thenReturn(contactRequest);
+
+    mockMvc.perform(MockMvcRequestBuilders.get("/contact/get/1")
+        .header("If-None-Match", "\"Other ETag\"")
+        .with(SecurityMockMvcRequestPostProcessors.user("test")))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$.id").value(contactRequest.getId()));
+  }
+
   @Test
   public void getById_ServiceException() throws Exception {
     UtilitiesApiException exception = new UtilitiesApiException(Constants.ERROR_CODE_DEFAULT, "Test details");
@@ -0,0 +1,188 @@
+package com.asalmi.utilities_api.controller;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+import com.asalmi.utilities_api.constants.Constants;
+import com.asalmi.utilities_api.model.ContactExportFormat;
+import com.asalmi.utilities_api.model.ContactRequest;
+import com.asalmi.utilities_api.model.ContactRequestBody;
+import com.asalmi.utilities_api.model.ContactRequestPage;
+import com.asalmi.utilities_api.model.ContactRequestView;
+import com.asalmi.utilities_api.model.SuccessResponse;
+import com.asalmi.utilities_api.service.IReactiveContactService;
+import com.asalmi.utilities_api.utils.Utils;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.MediaType;
+import org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.ResultActions;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.hamcrest.Matchers.*;
+
+/**
+ * Checks that the reactive contact controller answers like the Contact
+ * Controller: deduplicated sends, pages, exports and cached contact requests
+ */
+@SpringBootTest(properties = {
+    "spring.datasource.url=jdbc:h2:mem:reactivecontroller;MODE=MySQL;DB_CLOSE_DELAY=-1",
+    "spring.datasource.username=sa",
+    "spring.datasource.password=",
+    "spring.jpa.hibernate.ddl-auto=validate",
+    "spring.r2dbc.url=r2dbc:h2:mem:///reactivecontroller;MODE=MySQL;DB_CLOSE_DELAY=-1",
+    "spring.r2dbc.username=sa",
+    "spring.r2dbc.password="
+})
+@ActiveProfiles("reactive")
+@RunWith(SpringRunner.class)
+@AutoConfigureMockMvc
+public class ReactiveContactControllerTest {
+
+  @Autowired
+  private MockMvc mockMvc;
+
+  @MockBean
+  private IReactiveContactService contactService;
+
+  private ContactRequestBody contactRequestBody;
+  private ContactRequest contactRequest;
+
+  @Before
+  public void Setup() {
+    // A different message for every test, since sent requests are remembered
+    contactRequestBody = ContactRequestBody.builder()
+        .email("test@test.com")
+        .name("Test Name")
+        .message("Test Message " + System.nanoTime())
+        .build();
+
+    contactRequest = ContactRequest.builder()
+        .id(Long.parseLong("1"))
+        .email("test@test.com")
+        .name("Test Name")
+        .message("Test Message")
+        .createdAt(LocalDateTime.now())
+        .build();
+
+    Mockito.when(contactService.isSaved(any(ContactRequestBody.class), any(LocalDateTime.class)))
+        .thenReturn(Mono.just(false));
+  }
+
+  @Test
+  public void send_Duplicate_SentOnce() throws Exception {
+    Mockito.when(contactService.send(any(ContactRequestBody.class)))
+        .thenReturn(Mono.just(new SuccessResponse(Constants.SUCCESS_DETAILS_SEND_CONTACT_REQUEST)));
+
+    for (int i = 0; i < 2; i++) {
+      perform(MockMvcRequestBuilders.post("/contact/send")
+          .content(Utils.serializeObject(contactRequestBody))
+          .contentType(MediaType.APPLICATION_JSON)
+          .header(Constants.IDEMPOTENCY_KEY_HEADER, "Test Key"))
+          .andExpect(status().isOk())
+          .andExpect(jsonPath("$.code").value(Constants.SUCCESS_CODE));
+    }
+
+    // The key is saved with the contact request, and the retry isn't sent
+    Mockito.verify(contactService, Mockito.times(1))
+        .send(Mockito.argThat(request -> request.getIdempotencyKey() != null));
+  }
+
+  @Test
+  public void get_NextCursor() throws Exception {
+    ContactRequestView contactRequestView = new ContactRequestView(contactRequest.getId(), contactRequest.getName(),
+        contactRequest.getEmail(), contactRequest.getMessage(), contactRequest.getPhone(),
+        contactRequest.getCreatedAt());
+    Mockito.when(contactService.get(isNull(), isNull(), isNull(), isNull(), eq(1)))
+        .thenReturn(Mono.just(new ContactRequestPage(List.of(contactRequestView), "Next")));
+
+    perform(MockMvcRequestBuilders.get("/contact/get").param("limit", "1"))
+        .andExpect(status().isOk())
+        .andExpect(header().string(Constants.NEXT_CURSOR_HEADER, "Next"))
+        .andExpect(jsonPath("$", hasSize(1)));
+  }
+
+  @Test
+  public void export_Csv_Gzip() throws Exception {
+    Mockito.when(contactService.export(ContactExportFormat.CSV)).thenReturn(Flux.just(
+        "id,name\n".getBytes(StandardCharsets.UTF_8), "1,Test Name\n".getBytes(StandardCharsets.UTF_8)));
+
+    byte[] body = perform(MockMvcRequestBuilders.get("/contact/export")
+        .param("format", "csv")
+        .header("Accept-Encoding", "gzip, deflate"))
+        .andExpect(status().isOk())
+        .andExpect(header().string("Content-Type", "text/csv"))
+        .andExpect(header().string("Content-Disposition", containsString("contact-requests.csv")))
+        .andExpect(header().string("Content-Encoding", "gzip"))
+        .andExpect(header().stringValues("Vary", hasItem("Accept-Encoding")))
+        .andReturn().getResponse().getContentAsByteArray();
+
+    try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(body))) {
+      Assert.assertEquals("id,name\n1,Test Name\n", new String(in.readAllBytes(), StandardCharsets.UTF_8));
+    }
+  }
+
+  @Test
+  public void export_UnsupportedFormat() throws Exception {
+    mockMvc.perform(MockMvcRequestBuilders.get("/contact/export")
+        .param("format", "xml")
+        .with(SecurityMockMvcRequestPostProcessors.user("test")))
+        .andExpect(status().isBadRequest())
+        .andExpect(jsonPath("$.code").value(Constants.ERROR_CODE_BAD_REQUEST));
+  }
+
+  @Test
+  public void getById_NotModified() throws Exception {
+    contactRequest.setId(System.nanoTime());
+    Mockito.when(contactService.getById(contactRequest.getId())).thenReturn(Mono.just(contactRequest));
+
+    String eTag = perform(MockMvcRequestBuilders.get("/contact/get/" + contactRequest.getId()))
+        .andExpect(status().isOk())
+        .andExpect(header().exists("ETag"))
+        .andExpect(header().string("Cache-Control", "max-age=60, private"))
+        .andExpect(jsonPath("$.name").value("Test Name"))
+        .andReturn().getResponse().getHeader("ETag");
+
+    perform(MockMvcRequestBuilders.get("/contact/get/" + contactRequest.getId()).header("If-None-Match", eTag))
+        .andExpect(status().isNotModified())
+        .andExpect(content().bytes(new byte[0]));
+  }
+
+  /*
+   * Performs an asynchronously handled request, and dispatches its result
+   */
+  private ResultActions perform(MockHttpServletRequestBuilder builder) throws Exception {
+    MvcResult result = mockMvc.perform(builder.with(SecurityMockMvcRequestPostProcessors.user("test")))
+        .andExpect(request().asyncStarted())
+        .andReturn();
+    return mockMvc.perform(MockMvcRequestBuilders.asyncDispatch(result));
+  }
+}
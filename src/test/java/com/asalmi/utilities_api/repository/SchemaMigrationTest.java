@@ -0,0 +1,172 @@
+package com.asalmi.utilities_api.repository;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.asalmi.utilities_api.model.ApiKey;
+import com.asalmi.utilities_api.model.ContactRequest;
+
+import org.flywaydb.core.Flyway;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.test.context.junit4.SpringRunner;
+
+/**
+ * Migrates an in-memory database, validates the entities against it, and
+ * checks that the hot queries use the migrated indexes
+ */
+@SpringBootTest(properties = {
+    "spring.datasource.url=jdbc:h2:mem:contact;MODE=MySQL;DB_CLOSE_DELAY=-1",
+    "spring.datasource.username=sa",
+    "spring.datasource.password=",
+    "spring.jpa.hibernate.ddl-auto=validate"
+})
+@RunWith(SpringRunner.class)
+public class SchemaMigrationTest {
+
+  private static final LocalDateTime START = LocalDateTime.of(2023, 1, 1, 0, 0);
+
+  @Autowired
+  private JdbcTemplate jdbcTemplate;
+
+  @Autowired
+  private IContactRepository contactRepository;
+
+  @Autowired
+  private IApiKeyRepository apiKeyRepository;
+
+  @Before
+  public void Setup() {
+    contactRepository.deleteAll();
+
+    List<ContactRequest> contactRequests = new ArrayList<>();
+    for (int i = 0; i < 200; i++) {
+      contactRequests.add(ContactRequest.builder()
+          .name("Test Name")
+          .email("test" + (i % 20) + "@test.com")
+          .message("Test Message")
+          .createdAt(START.plusHours(i))
+          .build());
+    }
+    contactRepository.saveAll(contactRequests);
+
+    List<ApiKey> apiKeys = new ArrayList<>();
+    for (int i = 0; i < 50; i++) {
+      apiKeys.add(ApiKey.builder()
+          .apiKeyHash("Test Hash " + i)
+          .application("Test Application")
+          .consumer("Test Consumer")
+          .createdAt(START.plusDays(i))
+          .build());
+    }
+    apiKeyRepository.saveAll(apiKeys);
+  }
+
+  @Test
+  public void migrate_AllApplied() throws Exception {
+    List<Boolean> applied = jdbcTemplate.queryForList(
+        "SELECT \"success\" FROM \"flyway_schema_history\" WHERE \"version\" IS NOT NULL ORDER BY \"installed_rank\"",
+        Boolean.class);
+    Resource[] migrations = new PathMatchingResourcePatternResolver().getResources("classpath:db/migration/V*.sql");
+
+    Assert.assertEquals(migrations.length, applied.size());
+    Assert.assertTrue(applied.stream().allMatch(success -> success));
+  }
+
+  @Test
+  public void migrate_BaselinedSchema_SeededAfterExistingIds() {
+    String url = "jdbc:h2:mem:baselined;MODE=MySQL;DB_CLOSE_DELAY=-1";
+    JdbcTemplate baselined = new JdbcTemplate(new DriverManagerDataSource(url, "sa", ""));
+
+    // Created by hand, with a sequence table that is behind the existing ids
+    baselined.execute("CREATE TABLE api_keys (api_key_hash VARCHAR(255) NOT NULL, application VARCHAR(255) NOT NULL,"
+        + " consumer VARCHAR(255) NOT NULL, created_at DATETIME(6) NOT NULL, PRIMARY KEY (api_key_hash))");
+    baselined.execute("CREATE TABLE contact_requests (id BIGINT NOT NULL AUTO_INCREMENT, name VARCHAR(255) NOT NULL,"
+        + " email_address VARCHAR(255) NOT NULL, message VARCHAR(255) NOT NULL, phone_number VARCHAR(255),"
+        + " created_at DATETIME(6) NOT NULL, PRIMARY KEY (id))");
+    for (int i = 0; i < 5; i++) {
+      baselined.update("INSERT INTO contact_requests (name, email_address, message, created_at)"
+          + " VALUES ('Test Name', 'test@test.com', 'Test Message', ?)", START);
+    }
+    baselined.execute("CREATE TABLE contact_requests_seq (next_val BIGINT)");
+    baselined.execute("INSERT INTO contact_requests_seq (next_val) VALUES (2)");
+
+    Flyway.configure()
+        .dataSource(url, "sa", "")
+        .baselineOnMigrate(true)
+        .baselineVersion("1")
+        .load()
+        .migrate();
+
+    Assert.assertEquals(List.of(6L),
+        baselined.queryForList("SELECT next_val FROM contact_requests_seq", Long.class));
+    Assert.assertEquals(List.of(1L),
+        baselined.queryForList("SELECT next_val FROM contact_emails_seq", Long.class));
+  }
+
+  @Test
+  public void explain_WeeklySummary_CreatedAtIndex() {
+    String plan = explain("SELECT * FROM contact_requests"
+        + " WHERE created_at BETWEEN '2023-01-01 00:00:00' AND '2023-01-08 00:00:00'");
+
+    Assert.assertTrue(plan, plan.contains("IDX_CONTACT_REQUESTS_CREATED_AT_ID"));
+  }
+
+  @Test
+  public void explain_PageByEmail_EmailIndex() {
+    String plan = explain("SELECT * FROM contact_requests"
+        + " WHERE email_address = 'test1@test.com' AND (created_at, id) > ('2023-01-02 00:00:00', 0)"
+        + " AND created_at < '2023-02-01 00:00:00' ORDER BY created_at, id LIMIT 51");
+
+    Assert.assertTrue(plan, plan.contains("IDX_CONTACT_REQUESTS_EMAIL_CREATED_AT_ID"));
+  }
+
+  @Test
+  public void explain_Page_Sorted() {
+    String plan = explain("SELECT * FROM contact_requests"
+        + " WHERE created_at < '2023-02-01 00:00:00' ORDER BY created_at, id LIMIT 51");
+
+    Assert.assertTrue(plan, plan.contains("IDX_CONTACT_REQUESTS_CREATED_AT_ID"));
+    Assert.assertTrue(plan, plan.contains("index sorted"));
+  }
+
+  @Test
+  public void explain_ApiKeysSince_CoveringIndex() {
+    String plan = explain("SELECT api_key_hash, application, created_at FROM api_keys"
+        + " WHERE created_at >= '2023-02-01 00:00:00'");
+
+    Assert.assertTrue(plan, plan.contains("IDX_API_KEYS_CREATED_AT"));
+  }
+
+  @Test
+  public void explain_ApiKeyChangesSince_CoveringIndex() {
+    String plan = explain("SELECT api_key_hash FROM api_key_changes WHERE created_at >= '2023-02-01 00:00:00'");
+
+    Assert.assertTrue(plan, plan.contains("IDX_API_KEY_CHANGES_CREATED_AT"));
+  }
+
+  @Test
+  public void explain_ClaimableEmails_StatusIndex() {
+    String plan = explain("SELECT id FROM contact_emails WHERE status = 'PENDING'"
+        + " AND next_attempt_at <= '2023-02-01 00:00:00' ORDER BY id LIMIT 20");
+
+    Assert.assertTrue(plan, plan.contains("IDX_CONTACT_EMAILS_STATUS_NEXT_ATTEMPT_AT"));
+  }
+
+  /*
+   * The query plan, which names the index used in a comment after the table,
+   * and whether rows are read in index order
+   */
+  private String explain(String sql) {
+    return jdbcTemplate.queryForObject("EXPLAIN " + sql, String.class);
+  }
+}
@@ -0,0 +1,143 @@
+package com.asalmi.utilities_api.service;
+
+import java.time.LocalDateTime;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import com.asalmi.utilities_api.authentication.ApiKeyStore;
+import com.asalmi.utilities_api.constants.Constants;
+import com.asalmi.utilities_api.model.ApiKey;
+import com.asalmi.utilities_api.model.ApiKeyChange;
+import com.asalmi.utilities_api.model.ApiKeyResponse;
+import com.asalmi.utilities_api.model.CustomResponse;
+import com.asalmi.utilities_api.repository.IApiKeyChangeRepository;
+import com.asalmi.utilities_api.repository.IApiKeyRepository;
+import com.asalmi.utilities_api.utils.Utils;
+
+/**
+ * Revokes API Keys against an embedded database, including revocations made by
+ * another instance that only reach this one through the change log
+ */
+@SpringBootTest(properties = {
+    "spring.datasource.url=jdbc:h2:mem:revocation;MODE=MySQL;DB_CLOSE_DELAY=-1",
+    "spring.datasource.username=sa",
+    "spring.datasource.password=",
+    "spring.jpa.hibernate.ddl-auto=validate"
+})
+@RunWith(SpringRunner.class)
+public class ApiKeyRevocationTest {
+
+  @Autowired
+  private IApiKeyService apiKeyService;
+
+  @Autowired
+  private IApiKeyRepository apiKeyRepository;
+
+  @Autowired
+  private IApiKeyChangeRepository apiKeyChangeRepository;
+
+  @Autowired
+  private ApiKeyStore apiKeyStore;
+
+  @Autowired
+  private Utils utils;
+
+  private String consumer;
+  private String application;
+
+  @Before
+  public void Setup() {
+    consumer = "Tests";
+    application = "Utilities API";
+
+    // The store is first loaded before the schema is created
+    apiKeyStore.refresh();
+  }
+
+  @Test
+  public void revoke_Success() throws Exception {
+    String apiKey = generate();
+    Assert.assertEquals(Constants.SUCCESS_CODE, apiKeyService.validate(apiKey).getCode());
+
+    CustomResponse actualResponse = apiKeyService.revoke(apiKey);
+    Assert.assertEquals(Constants.SUCCESS_CODE, actualResponse.getCode());
+    Assert.assertEquals(consumer, ((ApiKeyResponse) actualResponse.getDetails()).getConsumer());
+
+    Assert.assertEquals(Constants.ERROR_CODE_NOT_FOUND, apiKeyService.validate(apiKey).getCode());
+    Assert.assertNull(apiKeyRepository.findOneByApiKeyHash(utils.hashString(apiKey)));
+    Assert.assertTrue(apiKeyChangeRepository.findAll().stream()
+        .anyMatch(change -> change.getApiKeyHash().equals(hashString(apiKey))));
+  }
+
+  @Test
+  public void revoke_KeyNotFound() throws Exception {
+    CustomResponse actualResponse = apiKeyService.revoke("Unknown API Key");
+    Assert.assertEquals(Constants.ERROR_CODE_NOT_FOUND, actualResponse.getCode());
+  }
+
+  @Test
+  public void pollChanges_RevokedOnOtherInstance() throws Exception {
+    String apiKey = generate();
+    String apiKeyHash = utils.hashString(apiKey);
+    Assert.assertEquals(Constants.SUCCESS_CODE, apiKeyService.validate(apiKey).getCode());
+
+    // Revoke the key the way another instance would, without touching this
+    // instance's store
+    ApiKey apiKeyObj = apiKeyRepository.findOneByApiKeyHash(apiKeyHash);
+    apiKeyRepository.delete(apiKeyObj);
+    apiKeyChangeRepository.save(ApiKeyChange.builder()
+        .apiKeyHash(apiKeyHash)
+        .changeType(ApiKeyChange.Type.REVOKED)
+        .createdAt(LocalDateTime.now())
+        .build());
+
+    // Still cached until the change log is polled
+    Assert.assertEquals(Constants.SUCCESS_CODE, apiKeyService.validate(apiKey).getCode());
+
+    apiKeyStore.pollChanges();
+    Assert.assertNull(apiKeyStore.getIdentity(Utils.parseHash(apiKeyHash)));
+    Assert.assertFalse(apiKeyStore.isAuthorized(Utils.parseHash(apiKeyHash)));
+    Assert.assertEquals(Constants.ERROR_CODE_NOT_FOUND, apiKeyService.validate(apiKey).getCode());
+  }
+
+  @Test
+  public void pollChanges_UpdatedOnOtherInstance() throws Exception {
+    String apiKey = generate();
+    String apiKeyHash = utils.hashString(apiKey);
+    Assert.assertNull(apiKeyStore.getIdentity(Utils.parseHash(apiKeyHash)).getRequestsPerMinute());
+
+    // Change the key's rate limit the way another instance would
+    ApiKey apiKeyObj = apiKeyRepository.findOneByApiKeyHash(apiKeyHash);
+    apiKeyObj.setRequestsPerMinute(5);
+    apiKeyRepository.save(apiKeyObj);
+    apiKeyChangeRepository.save(ApiKeyChange.builder()
+        .apiKeyHash(apiKeyHash)
+        .changeType(ApiKeyChange.Type.UPDATED)
+        .createdAt(LocalDateTime.now())
+        .build());
+
+    apiKeyStore.pollChanges();
+    Assert.assertEquals(Integer.valueOf(5), apiKeyStore.getIdentity(Utils.parseHash(apiKeyHash)).getRequestsPerMinute());
+    Assert.assertEquals(consumer, apiKeyStore.getIdentity(Utils.parseHash(apiKeyHash)).getConsumer());
+    Assert.assertEquals(Constants.SUCCESS_CODE, apiKeyService.validate(apiKey).getCode());
+  }
+
+  private String generate() throws Exception {
+    CustomResponse response = apiKeyService.generate(consumer, application);
+    return ((ApiKeyResponse) response.getDetails()).getApiKey();
+  }
+
+  private String hashString(String apiKey) {
+    try {
+      return utils.hashString(apiKey);
+    } catch (Exception ex) {
+      throw new IllegalStateException(ex);
+    }
+  }
+}
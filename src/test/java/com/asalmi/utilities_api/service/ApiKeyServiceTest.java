@@ -1,6 +1,7 @@
 package com.asalmi.utilities_api.service;
 
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
 
 import java.security.NoSuchAlgorithmException;
 import java.time.LocalDateTime;
@@ -14,16 +15,22 @@ import org.mockito.Mock;
 import org.mockito.Mockito;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.util.ReflectionTestUtils;
 
+import com.asalmi.utilities_api.authentication.ApiKeyStore;
 import com.asalmi.utilities_api.constants.Constants;
 import com.asalmi.utilities_api.exception.UtilitiesApiException;
 import com.asalmi.utilities_api.model.ApiKey;
+import com.asalmi.utilities_api.model.ApiKeyChange;
+import com.asalmi.utilities_api.model.ApiKeyIdentity;
 import com.asalmi.utilities_api.model.ApiKeyResponse;
 import com.asalmi.utilities_api.model.CustomResponse;
 import com.asalmi.utilities_api.model.ErrorResponse;
 import com.asalmi.utilities_api.model.SuccessResponse;
+import com.asalmi.utilities_api.repository.IApiKeyChangeRepository;
 import com.asalmi.utilities_api.repository.IApiKeyRepository;
 import com.asalmi.utilities_api.service.serviceImpl.ApiKeyService;
+import com.asalmi.utilities_api.utils.Sha256Hasher;
 import com.asalmi.utilities_api.utils.Utils;
 
 @SpringBootTest
@@ -33,9 +40,15 @@ public class ApiKeyServiceTest {
   @Mock
   private IApiKeyRepository apiKeyRepository;
 
+  @Mock
+  private IApiKeyChangeRepository apiKeyChangeRepository;
+
   @Mock
   private Utils utils;
 
+  @Mock
+  private ApiKeyStore apiKeyStore;
+
   @InjectMocks
   private ApiKeyService apiKeyService;
 
@@ -78,6 +91,7 @@ public class ApiKeyServiceTest {
     CustomResponse actualResponse = apiKeyService.generate(consumer, application);
     Assert.assertEquals(expectedResponse.getCode(), actualResponse.getCode());
     Assert.assertEquals(expectedResponse.getMessage(), actualResponse.getMessage());
+    Mockito.verify(apiKeyStore).add(hashedApiKey, consumer, application);
   }
 
   @Test
@@ -135,6 +149,38 @@ public class ApiKeyServiceTest {
         ((ApiKeyResponse) actualResponse.getDetails()).getApplication());
     Assert.assertEquals(apiKeyResponse.getConsumer(),
         ((ApiKeyResponse) actualResponse.getDetails()).getConsumer());
+    Mockito.verify(apiKeyStore).putIdentity(any(byte[].class), any(ApiKeyIdentity.class), anyLong());
+  }
+
+  @Test
+  public void validate_Success_Cached() throws Exception {
+    Mockito.when(apiKeyStore.getIdentity(Sha256Hasher.digest(apiKey)))
+        .thenReturn(new ApiKeyIdentity(consumer, application));
+
+    CustomResponse actualResponse = apiKeyService.validate(apiKey);
+    Assert.assertEquals(Constants.SUCCESS_CODE, actualResponse.getCode());
+    Assert.assertEquals(apiKeyResponse.getApplication(),
+        ((ApiKeyResponse) actualResponse.getDetails()).getApplication());
+    Assert.assertEquals(apiKeyResponse.getConsumer(),
+        ((ApiKeyResponse) actualResponse.getDetails()).getConsumer());
+    Mockito.verify(apiKeyRepository, Mockito.never()).findOneByApiKeyHash(any(String.class));
+    Mockito.verify(utils, Mockito.never()).hashString(any(String.class));
+  }
+
+  @Test
+  public void validate_Success_CanonicalHash() throws Exception {
+    String canonicalApiKeyHash = "0" + hashedApiKey;
+    ReflectionTestUtils.setField(apiKeyService, "canonicalHashes", true);
+
+    Mockito.when(utils.hashString(any(String.class))).thenReturn(hashedApiKey);
+    Mockito.when(utils.canonicalHashString(any(String.class))).thenReturn(canonicalApiKeyHash);
+    Mockito.when(apiKeyRepository.findOneByApiKeyHash(hashedApiKey)).thenReturn(null);
+    Mockito.when(apiKeyRepository.findOneByApiKeyHash(canonicalApiKeyHash)).thenReturn(apiKeyObj);
+
+    CustomResponse actualResponse = apiKeyService.validate(apiKey);
+    Assert.assertEquals(Constants.SUCCESS_CODE, actualResponse.getCode());
+    Assert.assertEquals(apiKeyResponse.getConsumer(),
+        ((ApiKeyResponse) actualResponse.getDetails()).getConsumer());
   }
 
   @Test
@@ -151,6 +197,19 @@ public class ApiKeyServiceTest {
     Assert.assertEquals(expectedResponse.getDetails(), actualResponse.getDetails());
   }
 
+  @Test
+  public void validate_Success_Preloaded_NotInStore() throws Exception {
+    // Generated on another instance since this one's last refresh
+    Mockito.when(utils.hashString(any(String.class))).thenReturn(hashedApiKey);
+    Mockito.when(apiKeyStore.isActive()).thenReturn(true);
+    Mockito.when(apiKeyRepository.findOneByApiKeyHash(hashedApiKey)).thenReturn(apiKeyObj);
+
+    CustomResponse actualResponse = apiKeyService.validate(apiKey);
+    Assert.assertEquals(Constants.SUCCESS_CODE, actualResponse.getCode());
+    Assert.assertEquals(apiKeyResponse.getConsumer(),
+        ((ApiKeyResponse) actualResponse.getDetails()).getConsumer());
+  }
+
   @Test
   public void validate_HashString_Exception() throws Exception {
     NoSuchAlgorithmException exception = new NoSuchAlgorithmException("Test exception");
@@ -191,4 +250,57 @@ public class ApiKeyServiceTest {
           actualException.getErrorResponse().getDetails());
     }
   }
+
+  @Test
+  public void revoke_Success() throws Exception {
+    Mockito.when(utils.hashString(any(String.class))).thenReturn(hashedApiKey);
+    Mockito.when(apiKeyRepository.findOneByApiKeyHash(any(String.class))).thenReturn(apiKeyObj);
+
+    CustomResponse actualResponse = apiKeyService.revoke(apiKey);
+    Assert.assertEquals(Constants.SUCCESS_CODE, actualResponse.getCode());
+    Assert.assertEquals(apiKeyResponse.getConsumer(),
+        ((ApiKeyResponse) actualResponse.getDetails()).getConsumer());
+    Mockito.verify(apiKeyRepository).delete(apiKeyObj);
+    Mockito.verify(apiKeyChangeRepository).save(any(ApiKeyChange.class));
+    Mockito.verify(apiKeyStore).remove(hashedApiKey);
+  }
+
+  @Test
+  public void revoke_KeyNotFound() throws Exception {
+    Mockito.when(utils.hashString(any(String.class))).thenReturn(hashedApiKey);
+    Mockito.when(apiKeyRepository.findOneByApiKeyHash(any(String.class))).thenReturn(null);
+
+    ErrorResponse expectedResponse = new ErrorResponse(Constants.ERROR_CODE_NOT_FOUND,
+        Constants.ERROR_MESSAGE_API_KEY_NOT_FOUND);
+
+    CustomResponse actualResponse = apiKeyService.revoke(apiKey);
+    Assert.assertEquals(expectedResponse.getCode(), actualResponse.getCode());
+    Assert.assertEquals(expectedResponse.getMessage(), actualResponse.getMessage());
+    Assert.assertEquals(expectedResponse.getDetails(), actualResponse.getDetails());
+    Mockito.verify(apiKeyChangeRepository, Mockito.never()).save(any(ApiKeyChange.class));
+  }
+
+  @Test
+  public void revoke_Repository_Exception() throws Exception {
+    IllegalArgumentException exception = new IllegalArgumentException("Test exception");
+
+    Mockito.when(utils.hashString(any(String.class))).thenReturn(hashedApiKey);
+    Mockito.when(apiKeyRepository.findOneByApiKeyHash(any(String.class))).thenReturn(apiKeyObj);
+    Mockito.when(apiKeyChangeRepository.save(any(ApiKeyChange.class))).thenThrow(exception);
+
+    UtilitiesApiException expectedException = new UtilitiesApiException(Constants.ERROR_CODE_DATABASE_REVOKE_API_KEY,
+        "Test exception");
+
+    try {
+      apiKeyService.revoke(apiKey);
+      Assert.fail();
+    } catch (UtilitiesApiException actualException) {
+      Assert.assertEquals(expectedException.getErrorResponse().getCode(), actualException.getErrorResponse().getCode());
+      Assert.assertEquals(expectedException.getErrorResponse().getMessage(),
+          actualException.getErrorResponse().getMessage());
+      Assert.assertEquals(expectedException.getErrorResponse().getDetails(),
+          actualException.getErrorResponse().getDetails());
+    }
+    Mockito.verify(apiKeyStore, Mockito.never()).remove(any(String.class));
+  }
 }
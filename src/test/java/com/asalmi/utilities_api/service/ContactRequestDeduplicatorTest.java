@@ -0,0 +1,265 @@
+package com.asalmi.utilities_api.service;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.asalmi.utilities_api.constants.Constants;
+import com.asalmi.utilities_api.exception.UtilitiesApiException;
+import com.asalmi.utilities_api.model.ContactRequestBody;
+import com.asalmi.utilities_api.model.CustomResponse;
+import com.asalmi.utilities_api.model.ErrorResponse;
+import com.asalmi.utilities_api.model.SuccessResponse;
+import com.asalmi.utilities_api.repository.IContactRepository;
+import com.asalmi.utilities_api.service.serviceImpl.ContactRequestDeduplicator;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mockito;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+
+@SpringBootTest
+@RunWith(SpringRunner.class)
+public class ContactRequestDeduplicatorTest {
+
+  private IContactRepository contactRepository;
+  private SimpleMeterRegistry meterRegistry;
+  private ContactRequestDeduplicator deduplicator;
+  private ContactRequestBody contactRequestBody;
+  private AtomicInteger sends;
+
+  @Before
+  public void Setup() {
+    contactRepository = Mockito.mock(IContactRepository.class);
+    meterRegistry = new SimpleMeterRegistry();
+    deduplicator = new ContactRequestDeduplicator(contactRepository, meterRegistry, true, 600000, 100);
+    contactRequestBody = contactRequestBody();
+    sends = new AtomicInteger();
+  }
+
+  @Test
+  public void send_IdempotencyKey_SentOnce() throws Exception {
+    CustomResponse first = deduplicator.send(contactRequestBody(), "Test Key", this::success);
+    CustomResponse second = deduplicator.send(contactRequestBody(), "Test Key", this::success);
+
+    Assert.assertEquals(1, sends.get());
+    Assert.assertSame(first, second);
+    Assert.assertEquals(1.0, duplicates("memory"), 0);
+  }
+
+  @Test
+  public void send_Fingerprint_SentOnce() throws Exception {
+    ContactRequestBody resubmitted = contactRequestBody();
+    resubmitted.setEmail("TEST@test.com");
+    resubmitted.setMessage("Test Message ");
+
+    deduplicator.send(contactRequestBody, null, this::success);
+    deduplicator.send(resubmitted, null, this::success);
+
+    Assert.assertEquals(1, sends.get());
+    // Fingerprints aren't saved, so the message can be sent again after the window
+    Assert.assertNull(contactRequestBody.getIdempotencyKey());
+    Assert.assertNull(resubmitted.getIdempotencyKey());
+  }
+
+  @Test
+  public void send_FingerprintInDatabase_NotSent() throws Exception {
+    // Matched like the in-memory fingerprint
+    Mockito.when(contactRepository.findMessagesByEmailSince(eq("test@test.com"), any(LocalDateTime.class)))
+        .thenReturn(List.of("Other Message", "Test Message\n"));
+    contactRequestBody.setEmail("Test@Test.com");
+
+    CustomResponse actualResponse = deduplicator.send(contactRequestBody, null, this::success);
+
+    Assert.assertEquals(0, sends.get());
+    Assert.assertEquals(Constants.SUCCESS_DETAILS_SEND_CONTACT_REQUEST, actualResponse.getDetails());
+    Mockito.verify(contactRepository, Mockito.never()).existsByIdempotencyKey(any(String.class));
+  }
+
+  @Test
+  public void send_DifferentRequests_SentSeparately() throws Exception {
+    ContactRequestBody other = contactRequestBody();
+    other.setMessage("Other Message");
+
+    deduplicator.send(contactRequestBody, null, this::success);
+    deduplicator.send(other, null, this::success);
+    deduplicator.send(contactRequestBody(), "Test Key", this::success);
+
+    Assert.assertEquals(3, sends.get());
+  }
+
+  @Test
+  public void send_Error_NotRemembered() throws Exception {
+    ErrorResponse error = new ErrorResponse(Constants.ERROR_CODE_SENDGRID_SEND_FAILED, "Test error");
+
+    Assert.assertSame(error, deduplicator.send(contactRequestBody(), "Test Key", () -> {
+      sends.incrementAndGet();
+      return error;
+    }));
+    try {
+      deduplicator.send(contactRequestBody(), "Test Key", () -> {
+        sends.incrementAndGet();
+        throw new UtilitiesApiException(Constants.ERROR_CODE_DATABASE_SAVE_CR, "Test exception");
+      });
+      Assert.fail();
+    } catch (UtilitiesApiException ex) {
+      Assert.assertEquals(Constants.ERROR_CODE_DATABASE_SAVE_CR, ex.getErrorResponse().getCode());
+    }
+    CustomResponse actualResponse = deduplicator.send(contactRequestBody(), "Test Key", this::success);
+
+    Assert.assertEquals(3, sends.get());
+    Assert.assertEquals(Constants.SUCCESS_CODE, actualResponse.getCode());
+  }
+
+  @Test
+  public void send_InDatabase_NotSent() throws Exception {
+    Mockito.when(contactRepository.existsByIdempotencyKey(any(String.class))).thenReturn(true);
+
+    CustomResponse actualResponse = deduplicator.send(contactRequestBody, "Test Key", this::success);
+
+    Assert.assertEquals(0, sends.get());
+    Assert.assertEquals(Constants.SUCCESS_DETAILS_SEND_CONTACT_REQUEST, actualResponse.getDetails());
+    Assert.assertEquals(1.0, duplicates("database"), 0);
+  }
+
+  @Test
+  public void send_SavedConcurrently_Success() throws Exception {
+    Mockito.when(contactRepository.existsByIdempotencyKey(any(String.class))).thenReturn(false, true);
+
+    CustomResponse actualResponse = deduplicator.send(contactRequestBody, "Test Key", () -> {
+      sends.incrementAndGet();
+      throw new UtilitiesApiException(Constants.ERROR_CODE_DATABASE_SAVE_CR, "Duplicate entry");
+    });
+
+    Assert.assertEquals(1, sends.get());
+    Assert.assertEquals(Constants.SUCCESS_DETAILS_SEND_CONTACT_REQUEST, actualResponse.getDetails());
+  }
+
+  @Test
+  public void send_Concurrent_Coalesced() throws Exception {
+    CountDownLatch sending = new CountDownLatch(1);
+    CompletableFuture<Void> release = new CompletableFuture<>();
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+
+    try {
+      Future<CustomResponse> original = executor.submit(() -> deduplicator.send(contactRequestBody(), "Test Key",
+          () -> {
+            sending.countDown();
+            release.join();
+            return success();
+          }));
+      Assert.assertTrue(sending.await(5, TimeUnit.SECONDS));
+
+      Future<CustomResponse> duplicate1 = executor.submit(() -> deduplicator.send(contactRequestBody(), "Test Key",
+          this::success));
+      Future<CustomResponse> duplicate2 = executor.submit(() -> deduplicator.send(contactRequestBody(), "Test Key",
+          this::success));
+
+      // The duplicates wait for the original
+      while (duplicates("memory") < 2) {
+        Thread.sleep(1);
+      }
+      Assert.assertFalse(duplicate1.isDone());
+      release.complete(null);
+
+      CustomResponse response = original.get(5, TimeUnit.SECONDS);
+      Assert.assertSame(response, duplicate1.get(5, TimeUnit.SECONDS));
+      Assert.assertSame(response, duplicate2.get(5, TimeUnit.SECONDS));
+      Assert.assertEquals(1, sends.get());
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  public void send_FingerprintInDatabase_DifferentMessage_Sent() throws Exception {
+    Mockito.when(contactRepository.findMessagesByEmailSince(eq("test@test.com"), any(LocalDateTime.class)))
+        .thenReturn(List.of("Other Message"));
+
+    deduplicator.send(contactRequestBody, null, this::success);
+
+    Assert.assertEquals(1, sends.get());
+  }
+
+  @Test
+  public void send_OriginalCancelled_DuplicateSent() throws Exception {
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+
+    try {
+      Disposable original = deduplicator.send(contactRequestBody(), "Test Key",
+          (request, since) -> Mono.just(false), Mono::never).subscribe();
+      Future<CustomResponse> duplicate = executor.submit(() -> deduplicator.send(contactRequestBody(), "Test Key",
+          this::success));
+      while (duplicates("memory") < 1) {
+        Thread.sleep(1);
+      }
+
+      // The original's client goes away before it was sent
+      original.dispose();
+
+      Assert.assertEquals(Constants.SUCCESS_CODE, duplicate.get(5, TimeUnit.SECONDS).getCode());
+      Assert.assertEquals(1, sends.get());
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  public void send_Reactive_OriginalCancelled_DuplicateSent() throws Exception {
+    Disposable original = deduplicator.send(contactRequestBody(), "Test Key",
+        (request, since) -> Mono.just(false), Mono::never).subscribe();
+    Mono<CustomResponse> duplicate = deduplicator.send(contactRequestBody(), "Test Key",
+        (request, since) -> Mono.just(false), () -> Mono.fromCallable(this::success));
+    CompletableFuture<CustomResponse> duplicateResponse = duplicate.toFuture();
+
+    original.dispose();
+
+    Assert.assertEquals(Constants.SUCCESS_CODE, duplicateResponse.get(5, TimeUnit.SECONDS).getCode());
+    Assert.assertEquals(1, sends.get());
+  }
+
+  @Test
+  public void send_Disabled() throws Exception {
+    deduplicator = new ContactRequestDeduplicator(contactRepository, meterRegistry, false, 600000, 100);
+
+    deduplicator.send(contactRequestBody(), "Test Key", this::success);
+    deduplicator.send(contactRequestBody(), "Test Key", this::success);
+
+    Assert.assertEquals(2, sends.get());
+    Mockito.verifyNoInteractions(contactRepository);
+  }
+
+  private CustomResponse success() {
+    sends.incrementAndGet();
+    return new SuccessResponse(Constants.SUCCESS_DETAILS_SEND_CONTACT_REQUEST);
+  }
+
+  private double duplicates(String source) {
+    return meterRegistry.counter("contact.requests.duplicate", "source", source).count();
+  }
+
+  private static ContactRequestBody contactRequestBody() {
+    return ContactRequestBody.builder()
+        .email("test@test.com")
+        .name("Test Name")
+        .message("Test Message")
+        .build();
+  }
+}
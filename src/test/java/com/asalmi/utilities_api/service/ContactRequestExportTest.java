@@ -0,0 +1,90 @@
+package com.asalmi.utilities_api.service;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.asalmi.utilities_api.model.ContactExportFormat;
+import com.asalmi.utilities_api.model.ContactRequest;
+import com.asalmi.utilities_api.repository.IContactRepository;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+
+/**
+ * Exports contact requests from an in-memory database
+ */
+@SpringBootTest(properties = {
+    "spring.datasource.url=jdbc:h2:mem:contact;MODE=MySQL;DB_CLOSE_DELAY=-1",
+    "spring.datasource.username=sa",
+    "spring.datasource.password=",
+    "spring.jpa.hibernate.ddl-auto=validate"
+})
+@RunWith(SpringRunner.class)
+public class ContactRequestExportTest {
+
+  private static final LocalDateTime START = LocalDateTime.of(2023, 1, 1, 0, 0);
+
+  @Autowired
+  private IContactService contactService;
+
+  @Autowired
+  private IContactRepository contactRepository;
+
+  @Autowired
+  private ObjectMapper objectMapper;
+
+  @Before
+  public void Setup() {
+    contactRepository.deleteAll();
+
+    // Saved newest first, exported oldest first
+    List<ContactRequest> contactRequests = new ArrayList<>();
+    for (int day = 9; day >= 0; day--) {
+      contactRequests.add(ContactRequest.builder()
+          .name("Test Name")
+          .email("test@test.com")
+          .message("Day " + day)
+          .createdAt(START.plusDays(day))
+          .build());
+    }
+    contactRequests.get(0).setMessage("Line one,\n\"Line two\"");
+    contactRepository.saveAll(contactRequests);
+  }
+
+  @Test
+  public void export_Ndjson() throws Exception {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    contactService.export(ContactExportFormat.NDJSON, out);
+
+    String[] lines = out.toString(StandardCharsets.UTF_8).split("\n");
+    Assert.assertEquals(10, lines.length);
+    for (int day = 0; day < 9; day++) {
+      JsonNode line = objectMapper.readTree(lines[day]);
+      Assert.assertEquals("Day " + day, line.get("message").asText());
+      Assert.assertEquals("test@test.com", line.get("email").asText());
+    }
+    Assert.assertEquals("Line one,\n\"Line two\"", objectMapper.readTree(lines[9]).get("message").asText());
+  }
+
+  @Test
+  public void export_Csv() throws Exception {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    contactService.export(ContactExportFormat.CSV, out);
+
+    String csv = out.toString(StandardCharsets.UTF_8);
+    Assert.assertTrue(csv.startsWith("id,name,email,message,phone,createdAt\n"));
+    Assert.assertTrue(csv.contains(",\"Test Name\",test@test.com,\"Day 0\",,2023-01-01T00:00:00\n"));
+    Assert.assertTrue(csv.contains("\"Line one,\n\"\"Line two\"\"\""));
+    Assert.assertTrue(csv.indexOf("Day 0") < csv.indexOf("Day 8"));
+  }
+}
@@ -0,0 +1,108 @@
+package com.asalmi.utilities_api.service;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.asalmi.utilities_api.model.ContactRequest;
+import com.asalmi.utilities_api.model.ContactRequestBody;
+import com.asalmi.utilities_api.model.ContactRequestPage;
+import com.asalmi.utilities_api.model.ContactRequestView;
+import com.asalmi.utilities_api.repository.IContactRepository;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+
+/**
+ * Pages through contact requests in an in-memory database
+ */
+@SpringBootTest(properties = {
+    "spring.datasource.url=jdbc:h2:mem:contact;MODE=MySQL;DB_CLOSE_DELAY=-1",
+    "spring.datasource.username=sa",
+    "spring.datasource.password=",
+    "spring.jpa.hibernate.ddl-auto=validate"
+})
+@RunWith(SpringRunner.class)
+public class ContactRequestPaginationTest {
+
+  private static final LocalDateTime START = LocalDateTime.of(2023, 1, 1, 0, 0);
+
+  @Autowired
+  private IContactService contactService;
+
+  @Autowired
+  private IContactRepository contactRepository;
+
+  @Before
+  public void Setup() {
+    contactRepository.deleteAll();
+
+    // Two contact requests per day, from two senders, created at the same time
+    List<ContactRequest> contactRequests = new ArrayList<>();
+    for (int day = 0; day < 10; day++) {
+      for (String email : List.of("first@test.com", "second@test.com")) {
+        contactRequests.add(ContactRequest.builder()
+            .name("Test Name")
+            .email(email)
+            .message("Day " + day)
+            .createdAt(START.plusDays(day))
+            .build());
+      }
+    }
+    contactRepository.saveAll(contactRequests);
+  }
+
+  @Test
+  public void get_AllPages() throws Exception {
+    List<ContactRequestView> all = new ArrayList<>();
+    String cursor = null;
+    int pages = 0;
+    do {
+      ContactRequestPage page = contactService.get(null, null, null, cursor, 3);
+      Assert.assertTrue(page.getContactRequests().size() <= 3);
+      all.addAll(page.getContactRequests());
+      cursor = page.getNextCursor();
+      pages++;
+    } while (cursor != null);
+
+    Assert.assertEquals(7, pages);
+    Assert.assertEquals(20, all.size());
+    Assert.assertEquals(20, all.stream().map(ContactRequestView::getId).distinct().count());
+    for (int i = 1; i < all.size(); i++) {
+      ContactRequestView previous = all.get(i - 1);
+      ContactRequestView current = all.get(i);
+      Assert.assertTrue(previous.getCreatedAt().isBefore(current.getCreatedAt())
+          || (previous.getCreatedAt().isEqual(current.getCreatedAt()) && previous.getId() < current.getId()));
+    }
+  }
+
+  @Test
+  public void get_Filtered() throws Exception {
+    ContactRequestPage page = contactService.get("second@test.com", START.plusDays(2), START.plusDays(5), null,
+        2);
+    Assert.assertEquals(List.of("Day 2", "Day 3"),
+        page.getContactRequests().stream().map(ContactRequestView::getMessage).toList());
+
+    page = contactService.get("second@test.com", START.plusDays(2), START.plusDays(5), page.getNextCursor(), 2);
+    Assert.assertEquals(List.of("Day 4"),
+        page.getContactRequests().stream().map(ContactRequestView::getMessage).toList());
+    Assert.assertTrue(page.getContactRequests().stream().allMatch(c -> c.getEmail().equals("second@test.com")));
+    Assert.assertNull(page.getNextCursor());
+  }
+
+  @Test
+  public void findSummaries_Between() throws Exception {
+    List<ContactRequestBody> summaries = contactRepository.findSummariesByCreatedAtBetween(START.plusDays(8),
+        START.plusDays(20));
+
+    Assert.assertEquals(4, summaries.size());
+    Assert.assertTrue(summaries.stream().allMatch(c -> c.getName().equals("Test Name") && c.getPhone() == null));
+    Assert.assertEquals(List.of("Day 8", "Day 8", "Day 9", "Day 9"),
+        summaries.stream().map(ContactRequestBody::getMessage).sorted().toList());
+  }
+}
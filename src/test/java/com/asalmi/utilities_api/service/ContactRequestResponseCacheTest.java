@@ -0,0 +1,109 @@
+package com.asalmi.utilities_api.service;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.asalmi.utilities_api.constants.Constants;
+import com.asalmi.utilities_api.exception.UtilitiesApiException;
+import com.asalmi.utilities_api.model.ContactRequest;
+import com.asalmi.utilities_api.model.RenderedContactRequest;
+import com.asalmi.utilities_api.service.serviceImpl.ContactRequestResponseCache;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+
+@SpringBootTest
+@RunWith(SpringRunner.class)
+public class ContactRequestResponseCacheTest {
+
+  @Autowired
+  private ObjectMapper objectMapper;
+
+  private ContactRequestResponseCache responseCache;
+  private ContactRequest contactRequest;
+  private AtomicInteger loads;
+
+  @Before
+  public void Setup() {
+    responseCache = new ContactRequestResponseCache(objectMapper, new SimpleMeterRegistry(), 100, 3600000);
+    contactRequest = contactRequest("Test Message");
+    loads = new AtomicInteger();
+  }
+
+  @Test
+  public void get_Cached_LoadedOnce() throws Exception {
+    RenderedContactRequest first = responseCache.get(1L, this::load);
+    RenderedContactRequest second = responseCache.get(1L, this::load);
+
+    Assert.assertEquals(1, loads.get());
+    Assert.assertSame(first, second);
+
+    JsonNode body = objectMapper.readTree(new String(first.getBody(), StandardCharsets.UTF_8));
+    Assert.assertEquals(1L, body.get("id").asLong());
+    Assert.assertEquals("Test Message", body.get("message").asText());
+    Assert.assertFalse(body.has("idempotencyKey"));
+  }
+
+  @Test
+  public void get_ETag_FromContents() throws Exception {
+    String eTag = responseCache.get(1L, this::load).getETag();
+    ContactRequestResponseCache other = new ContactRequestResponseCache(objectMapper, new SimpleMeterRegistry(),
+        100, 3600000);
+
+    Assert.assertTrue(eTag.matches("\"[0-9a-f]{64}\""));
+    Assert.assertEquals(eTag, other.get(1L, this::load).getETag());
+    Assert.assertNotEquals(eTag, other.get(2L, () -> contactRequest("Other Message")).getETag());
+  }
+
+  @Test
+  public void get_Missing_NotCached() throws Exception {
+    Assert.assertNull(responseCache.get(1L, () -> {
+      loads.incrementAndGet();
+      return null;
+    }));
+    Assert.assertNotNull(responseCache.get(1L, this::load));
+
+    Assert.assertEquals(2, loads.get());
+  }
+
+  @Test
+  public void get_Exception_NotCached() throws Exception {
+    try {
+      responseCache.get(1L, () -> {
+        throw new UtilitiesApiException(Constants.ERROR_CODE_DATABASE_FETCH_CR, "Test exception");
+      });
+      Assert.fail();
+    } catch (UtilitiesApiException ex) {
+      Assert.assertEquals(Constants.ERROR_CODE_DATABASE_FETCH_CR, ex.getErrorResponse().getCode());
+    }
+    Assert.assertNotNull(responseCache.get(1L, this::load));
+
+    Assert.assertEquals(1, loads.get());
+  }
+
+  private ContactRequest load() {
+    loads.incrementAndGet();
+    return contactRequest;
+  }
+
+  private static ContactRequest contactRequest(String message) {
+    return ContactRequest.builder()
+        .id(1L)
+        .email("test@test.com")
+        .name("Test Name")
+        .message(message)
+        .createdAt(LocalDateTime.of(2023, 1, 1, 0, 0))
+        .idempotencyKey("Test Key")
+        .build();
+  }
+}
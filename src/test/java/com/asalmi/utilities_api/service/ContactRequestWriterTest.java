@@ -0,0 +1,219 @@
+package com.asalmi.utilities_api.service;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import com.asalmi.utilities_api.model.ContactRequest;
+import com.asalmi.utilities_api.repository.IContactRepository;
+import com.asalmi.utilities_api.service.serviceImpl.ContactRequestWriter;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+/**
+ * Saves contact requests through the write-behind buffer into an in-memory
+ * database
+ */
+@SpringBootTest(properties = {
+    "spring.datasource.url=jdbc:h2:mem:contact;MODE=MySQL;DB_CLOSE_DELAY=-1",
+    "spring.datasource.username=sa",
+    "spring.datasource.password=",
+    "spring.jpa.hibernate.ddl-auto=validate"
+})
+@RunWith(SpringRunner.class)
+public class ContactRequestWriterTest {
+
+  @Autowired
+  private PlatformTransactionManager transactionManager;
+
+  @Autowired
+  private IContactRepository contactRepository;
+
+  private SimpleMeterRegistry meterRegistry;
+  private ContactRequestWriter writer;
+
+  @Before
+  public void Setup() {
+    contactRepository.deleteAll();
+    meterRegistry = new SimpleMeterRegistry();
+    writer = writer(true);
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    writer.shutdown();
+  }
+
+  @Test
+  public void write_Concurrent_Batched() throws Exception {
+    int requests = 20;
+    CountDownLatch start = new CountDownLatch(1);
+    ExecutorService executor = Executors.newFixedThreadPool(requests);
+
+    try {
+      List<Future<?>> writes = new ArrayList<>();
+      for (int i = 0; i < requests; i++) {
+        String name = "Test Name " + i;
+        writes.add(executor.submit(() -> {
+          start.await();
+          writer.write(() -> contactRepository.save(contactRequest(name, null)));
+          return null;
+        }));
+      }
+      start.countDown();
+      for (Future<?> write : writes) {
+        write.get(10, TimeUnit.SECONDS);
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+
+    List<ContactRequest> saved = contactRepository.findAll();
+    Assert.assertEquals(requests, saved.size());
+    Assert.assertEquals(requests, saved.stream().map(ContactRequest::getId).distinct().count());
+
+    DistributionSummary batchSizes = meterRegistry.get("contact.writebehind.batchsize").summary();
+    Assert.assertEquals(requests, batchSizes.totalAmount(), 0);
+    Assert.assertTrue(batchSizes.count() < requests);
+  }
+
+  @Test
+  public void write_BatchFailed_SavedOneAtATime() throws Exception {
+    writer.write(() -> contactRepository.save(contactRequest("Original", "Test Key")));
+
+    ExecutorService executor = Executors.newFixedThreadPool(2);
+    try {
+      Future<?> duplicate = executor.submit(
+          () -> writer.write(() -> contactRepository.save(contactRequest("Duplicate", "Test Key"))));
+      Future<?> other = executor.submit(
+          () -> writer.write(() -> contactRepository.save(contactRequest("Other", null))));
+
+      other.get(10, TimeUnit.SECONDS);
+      try {
+        duplicate.get(10, TimeUnit.SECONDS);
+        Assert.fail();
+      } catch (ExecutionException ex) {
+        Assert.assertTrue(ex.getCause() instanceof DataIntegrityViolationException);
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+
+    List<String> names = contactRepository.findAll().stream().map(ContactRequest::getName).sorted().toList();
+    Assert.assertEquals(List.of("Original", "Other"), names);
+  }
+
+  @Test
+  public void write_Disabled() throws Exception {
+    writer.shutdown();
+    writer = writer(false);
+
+    writer.write(() -> contactRepository.save(contactRequest("Original", "Test Key")));
+    try {
+      writer.write(() -> contactRepository.save(contactRequest("Duplicate", "Test Key")));
+      Assert.fail();
+    } catch (DataIntegrityViolationException ex) {
+      // Expected
+    }
+
+    Assert.assertEquals(1, contactRepository.count());
+    Assert.assertEquals(1, meterRegistry.get("contact.writebehind.batchsize").summary().count());
+  }
+
+  @Test
+  public void write_AfterShutdown_SavedDirectly() throws Exception {
+    writer.shutdown();
+
+    writer.write(() -> contactRepository.save(contactRequest("Test Name", null)));
+
+    Assert.assertEquals(1, contactRepository.count());
+  }
+
+  @Test
+  public void shutdown_WriterStuck_QueuedFailed() throws Exception {
+    writer.shutdown();
+    writer = writer(true);
+    ReflectionTestUtils.setField(writer, "batchSize", 1);
+    ReflectionTestUtils.setField(writer, "timeout", 200L);
+
+    CountDownLatch writing = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    ExecutorService executor = Executors.newFixedThreadPool(2);
+    try {
+      Future<?> stuck = executor.submit(() -> writer.write(() -> {
+        writing.countDown();
+        try {
+          release.await();
+        } catch (InterruptedException ex) {
+          Thread.currentThread().interrupt();
+        }
+      }));
+      writing.await();
+      Future<?> queued = executor.submit(
+          () -> writer.write(() -> contactRepository.save(contactRequest("Test Name", null))));
+      while (((Queue<?>) ReflectionTestUtils.getField(writer, "queue")).isEmpty()) {
+        Thread.sleep(10);
+      }
+
+      writer.shutdown();
+
+      // Neither caller waits for the stuck writer
+      for (Future<?> write : List.of(stuck, queued)) {
+        try {
+          write.get(10, TimeUnit.SECONDS);
+          Assert.fail();
+        } catch (ExecutionException ex) {
+          Assert.assertTrue(ex.getCause() instanceof IllegalStateException);
+        }
+      }
+    } finally {
+      release.countDown();
+      executor.shutdownNow();
+    }
+
+    Assert.assertEquals(0, contactRepository.count());
+  }
+
+  private ContactRequestWriter writer(boolean enabled) {
+    ContactRequestWriter writer = new ContactRequestWriter();
+    ReflectionTestUtils.setField(writer, "transactionManager", transactionManager);
+    ReflectionTestUtils.setField(writer, "meterRegistry", meterRegistry);
+    ReflectionTestUtils.setField(writer, "enabled", enabled);
+    ReflectionTestUtils.setField(writer, "linger", 200L);
+    ReflectionTestUtils.setField(writer, "batchSize", 50);
+    ReflectionTestUtils.setField(writer, "queueSize", 100);
+    ReflectionTestUtils.setField(writer, "timeout", 10000L);
+    writer.init();
+    return writer;
+  }
+
+  private static ContactRequest contactRequest(String name, String idempotencyKey) {
+    return ContactRequest.builder()
+        .name(name)
+        .email("test@test.com")
+        .message("Test Message")
+        .createdAt(LocalDateTime.now())
+        .idempotencyKey(idempotencyKey)
+        .build();
+  }
+}
@@ -1,6 +1,7 @@
 package com.asalmi.utilities_api.service;
 
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
 
 import java.time.LocalDateTime;
 import java.util.ArrayList;
@@ -10,21 +11,29 @@ import com.asalmi.utilities_api.constants.Constants;
 import com.asalmi.utilities_api.exception.UtilitiesApiException;
 import com.asalmi.utilities_api.model.ContactRequest;
 import com.asalmi.utilities_api.model.ContactRequestBody;
+import com.asalmi.utilities_api.model.ContactRequestPage;
+import com.asalmi.utilities_api.model.ContactRequestView;
 import com.asalmi.utilities_api.model.CustomResponse;
 import com.asalmi.utilities_api.model.ErrorResponse;
 import com.asalmi.utilities_api.model.SuccessResponse;
+import com.asalmi.utilities_api.repository.IContactEmailRepository;
 import com.asalmi.utilities_api.repository.IContactRepository;
+import com.asalmi.utilities_api.service.serviceImpl.ContactRequestWriter;
 import com.asalmi.utilities_api.service.serviceImpl.ContactService;
 
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.Mockito;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
 import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.util.ReflectionTestUtils;
 
 @SpringBootTest
 @RunWith(SpringRunner.class)
@@ -36,13 +45,20 @@ public class ContactServiceTest {
   @Mock
   private IContactRepository contactRepository;
 
+  @Mock
+  private IContactEmailRepository contactEmailRepository;
+
+  @Mock
+  private ContactRequestWriter contactRequestWriter;
+
   @InjectMocks
   private ContactService contactService;
 
   private ContactRequestBody contactRequestBody;
   private ContactRequest contactRequest;
   private SuccessResponse successResponse;
-  private List<ContactRequest> contactRequests;
+  private ContactRequestView contactRequestView;
+  private List<ContactRequestView> contactRequests;
 
   @Before
   public void Setup() {
@@ -62,8 +78,21 @@ public class ContactServiceTest {
 
     successResponse = new SuccessResponse();
 
-    contactRequests = new ArrayList<ContactRequest>();
-    contactRequests.add(contactRequest);
+    contactRequestView = new ContactRequestView(contactRequest.getId(), contactRequest.getName(),
+        contactRequest.getEmail(), contactRequest.getMessage(), contactRequest.getPhone(),
+        contactRequest.getCreatedAt());
+
+    contactRequests = new ArrayList<ContactRequestView>();
+    contactRequests.add(contactRequestView);
+
+    ReflectionTestUtils.setField(contactService, "defaultPageSize", 50);
+    ReflectionTestUtils.setField(contactService, "maxPageSize", 200);
+
+    // Save in the calling thread
+    Mockito.doAnswer(invocation -> {
+      invocation.getArgument(0, Runnable.class).run();
+      return null;
+    }).when(contactRequestWriter).write(any(Runnable.class));
   }
 
   @Test
@@ -100,6 +129,21 @@ public class ContactServiceTest {
     Assert.assertEquals(expectedResponse.getDetails(), actualResponse.getDetails());
   }
 
+  @Test
+  public void send_Success_IdempotencyKey() throws Exception {
+    contactRequestBody.setIdempotencyKey("Test Key");
+
+    Mockito.when(sendGridService.sendContactRequest(any(ContactRequestBody.class))).thenReturn(successResponse);
+    Mockito.when(sendGridService.sendNotificationEmail(any(ContactRequestBody.class))).thenReturn(successResponse);
+    Mockito.when(contactRepository.save(any(ContactRequest.class))).thenReturn(contactRequest);
+
+    contactService.send(contactRequestBody);
+
+    ArgumentCaptor<ContactRequest> saved = ArgumentCaptor.forClass(ContactRequest.class);
+    Mockito.verify(contactRepository).save(saved.capture());
+    Assert.assertEquals("Test Key", saved.getValue().getIdempotencyKey());
+  }
+
   @Test
   public void send_ServiceError_SendGrid1() throws Exception {
     ErrorResponse errorResponse = new ErrorResponse(Constants.ERROR_CODE_SENDGRID_SEND_FAILED, "Error details");
@@ -147,33 +191,125 @@ public class ContactServiceTest {
     }
   }
 
+  @Test
+  public void send_Success_Concurrent() throws Exception {
+    ReflectionTestUtils.setField(contactService, "concurrentEmails", true);
+
+    Mockito.when(sendGridService.sendContactRequestEmails(any(ContactRequestBody.class))).thenReturn(successResponse);
+    Mockito.when(contactRepository.save(any(ContactRequest.class))).thenReturn(contactRequest);
+
+    CustomResponse actualResponse = contactService.send(contactRequestBody);
+    Assert.assertEquals(Constants.SUCCESS_CODE, actualResponse.getCode());
+    Assert.assertEquals(Constants.SUCCESS_DETAILS_SEND_CONTACT_REQUEST, actualResponse.getDetails());
+    Mockito.verify(sendGridService, Mockito.never()).sendContactRequest(any(ContactRequestBody.class));
+    Mockito.verify(contactRepository).save(any(ContactRequest.class));
+  }
+
+  @Test
+  public void send_ServiceError_Concurrent() throws Exception {
+    ErrorResponse errorResponse = new ErrorResponse(Constants.ERROR_CODE_SENDGRID_SEND_FAILED, "Error details");
+    ReflectionTestUtils.setField(contactService, "concurrentEmails", true);
+
+    Mockito.when(sendGridService.sendContactRequestEmails(any(ContactRequestBody.class))).thenReturn(errorResponse);
+
+    CustomResponse actualResponse = contactService.send(contactRequestBody);
+    Assert.assertEquals(errorResponse.getCode(), actualResponse.getCode());
+    Assert.assertEquals(errorResponse.getDetails(), actualResponse.getDetails());
+    Mockito.verify(contactRepository, Mockito.never()).save(any(ContactRequest.class));
+  }
+
+  @Test
+  public void send_Success_Outbox() throws Exception {
+    ReflectionTestUtils.setField(contactService, "outboxEnabled", true);
+
+    Mockito.when(contactRepository.save(any(ContactRequest.class))).thenReturn(contactRequest);
+
+    SuccessResponse expectedResponse = new SuccessResponse(Constants.SUCCESS_DETAILS_SEND_CONTACT_REQUEST);
+
+    CustomResponse actualResponse = contactService.send(contactRequestBody);
+    Assert.assertEquals(expectedResponse.getCode(), actualResponse.getCode());
+    Assert.assertEquals(expectedResponse.getDetails(), actualResponse.getDetails());
+    Mockito.verify(contactEmailRepository).saveAll(anyList());
+    Mockito.verify(sendGridService, Mockito.never()).sendContactRequest(any(ContactRequestBody.class));
+    Mockito.verify(sendGridService, Mockito.never()).sendNotificationEmail(any(ContactRequestBody.class));
+  }
+
+  @Test
+  public void send_RepositoryException_Outbox() throws Exception {
+    IllegalArgumentException exception = new IllegalArgumentException("Test exception");
+    ReflectionTestUtils.setField(contactService, "outboxEnabled", true);
+
+    Mockito.when(contactRepository.save(any(ContactRequest.class))).thenReturn(contactRequest);
+    Mockito.when(contactEmailRepository.saveAll(anyList())).thenThrow(exception);
+
+    try {
+      contactService.send(contactRequestBody);
+      Assert.fail();
+    } catch (UtilitiesApiException actualException) {
+      Assert.assertEquals(Constants.ERROR_CODE_DATABASE_SAVE_CR, actualException.getErrorResponse().getCode());
+      Assert.assertEquals("Test exception", actualException.getErrorResponse().getDetails());
+    }
+  }
+
   @Test
   public void get_Success_NoEmail() throws Exception {
-    Mockito.when(contactRepository.findAll()).thenReturn(contactRequests);
+    Mockito.when(contactRepository.findPage(any(LocalDateTime.class), any(Long.class), any(LocalDateTime.class),
+        any(Pageable.class))).thenReturn(contactRequests);
 
-    List<ContactRequest> actualResponse = contactService.get(null);
-    Assert.assertEquals(actualResponse, contactRequests);
+    ContactRequestPage actualResponse = contactService.get(null, null, null, null, null);
+    Assert.assertEquals(actualResponse.getContactRequests(), contactRequests);
+    Assert.assertNull(actualResponse.getNextCursor());
   }
 
   @Test
   public void get_Success_WithEmail() throws Exception {
-    Mockito.when(contactRepository.findByEmail(any(String.class))).thenReturn(contactRequests);
+    Mockito.when(contactRepository.findPageByEmail(any(String.class), any(LocalDateTime.class), any(Long.class),
+        any(LocalDateTime.class), any(Pageable.class))).thenReturn(contactRequests);
+
+    ContactRequestPage actualResponse = contactService.get("test@email.com", null, null, null, null);
+    Assert.assertEquals(actualResponse.getContactRequests(), contactRequests);
+  }
 
-    List<ContactRequest> actualResponse = contactService.get("test@email.com");
-    Assert.assertEquals(actualResponse, contactRequests);
+  @Test
+  public void get_Success_NextPage() throws Exception {
+    ContactRequestView next = new ContactRequestView(Long.parseLong("2"), "Test Name", "test@test.com",
+        "Test Message", null, contactRequestView.getCreatedAt().plusSeconds(1));
+    Mockito.when(contactRepository.findPage(any(LocalDateTime.class), any(Long.class), any(LocalDateTime.class),
+        any(Pageable.class))).thenReturn(List.of(contactRequestView, next));
+
+    ContactRequestPage actualResponse = contactService.get(null, null, null, null, 1);
+    Assert.assertEquals(List.of(contactRequestView), actualResponse.getContactRequests());
+    Assert.assertNotNull(actualResponse.getNextCursor());
+
+    // The next page starts after the last contact request of this one
+    contactService.get(null, null, null, actualResponse.getNextCursor(), 1);
+    Mockito.verify(contactRepository).findPage(contactRequestView.getCreatedAt(), contactRequestView.getId(),
+        LocalDateTime.of(9999, 12, 31, 23, 59, 59), PageRequest.ofSize(2));
+  }
+
+  @Test
+  public void get_InvalidCursor() throws Exception {
+    try {
+      contactService.get(null, null, null, "Test Cursor", null);
+      Assert.fail();
+    } catch (UtilitiesApiException actualException) {
+      Assert.assertEquals(Constants.ERROR_CODE_BAD_REQUEST, actualException.getErrorResponse().getCode());
+    }
+    Mockito.verifyNoInteractions(contactRepository);
   }
 
   @Test
   public void get_RepositoryException() throws Exception {
     IllegalArgumentException exception = new IllegalArgumentException("Test exception");
 
-    Mockito.when(contactRepository.findAll()).thenThrow(exception);
+    Mockito.when(contactRepository.findPage(any(LocalDateTime.class), any(Long.class), any(LocalDateTime.class),
+        any(Pageable.class))).thenThrow(exception);
 
     UtilitiesApiException expectedException = new UtilitiesApiException(Constants.ERROR_CODE_DATABASE_FETCH_CR,
         "Test exception");
 
     try {
-      contactService.get(null);
+      contactService.get(null, null, null, null, null);
     } catch (UtilitiesApiException actualException) {
       Assert.assertEquals(expectedException.getErrorResponse().getCode(), actualException.getErrorResponse().getCode());
       Assert.assertEquals(expectedException.getErrorResponse().getMessage(),
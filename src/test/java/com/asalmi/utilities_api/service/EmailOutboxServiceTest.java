@@ -0,0 +1,169 @@
+package com.asalmi.utilities_api.service;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.asalmi.utilities_api.constants.Constants;
+import com.asalmi.utilities_api.model.ContactEmail;
+import com.asalmi.utilities_api.model.ContactRequest;
+import com.asalmi.utilities_api.model.ContactRequestBody;
+import com.asalmi.utilities_api.model.ErrorResponse;
+import com.asalmi.utilities_api.model.SuccessResponse;
+import com.asalmi.utilities_api.repository.IContactEmailRepository;
+import com.asalmi.utilities_api.repository.IContactRepository;
+import com.asalmi.utilities_api.service.serviceImpl.EmailOutboxService;
+
+@SpringBootTest
+@RunWith(SpringRunner.class)
+public class EmailOutboxServiceTest {
+
+  @Mock
+  private IContactEmailRepository contactEmailRepository;
+
+  @Mock
+  private IContactRepository contactRepository;
+
+  @Mock
+  private ISendGridService sendGridService;
+
+  @InjectMocks
+  private EmailOutboxService emailOutboxService;
+
+  private ContactRequest contactRequest;
+  private ContactEmail contactEmail;
+
+  @Before
+  public void Setup() {
+    ReflectionTestUtils.setField(emailOutboxService, "outboxEnabled", true);
+    ReflectionTestUtils.setField(emailOutboxService, "workers", 2);
+    ReflectionTestUtils.setField(emailOutboxService, "batchSize", 10);
+    ReflectionTestUtils.setField(emailOutboxService, "claimTimeout", 60000L);
+    ReflectionTestUtils.setField(emailOutboxService, "maxAttempts", 2);
+    ReflectionTestUtils.setField(emailOutboxService, "retryBackoff", 1000L);
+    ReflectionTestUtils.setField(emailOutboxService, "executor", Executors.newFixedThreadPool(2));
+
+    contactRequest = ContactRequest.builder()
+        .id(Long.parseLong("1"))
+        .email("test@test.com")
+        .name("Test Name")
+        .message("Test Message")
+        .createdAt(LocalDateTime.now())
+        .build();
+
+    contactEmail = ContactEmail.builder()
+        .id(Long.parseLong("10"))
+        .contactRequestId(contactRequest.getId())
+        .type(ContactEmail.Type.NOTIFICATION)
+        .status(ContactEmail.Status.PENDING)
+        .attempts(0)
+        .nextAttemptAt(contactRequest.getCreatedAt())
+        .createdAt(contactRequest.getCreatedAt())
+        .build();
+
+    Mockito.when(contactEmailRepository.findClaimableIds(any(LocalDateTime.class), any(Pageable.class)))
+        .thenReturn(List.of(contactEmail.getId()));
+    Mockito.when(contactEmailRepository.findById(contactEmail.getId())).thenReturn(Optional.of(contactEmail));
+    Mockito.when(contactRepository.findOneById(contactRequest.getId())).thenReturn(contactRequest);
+  }
+
+  @After
+  public void TearDown() {
+    emailOutboxService.shutdown();
+  }
+
+  @Test
+  public void dispatch_Success() throws Exception {
+    Mockito.when(contactEmailRepository.claim(eq(contactEmail.getId()), anyString(), any(LocalDateTime.class),
+        any(LocalDateTime.class))).thenReturn(1);
+    Mockito.when(sendGridService.sendNotificationEmail(any(ContactRequestBody.class)))
+        .thenReturn(new SuccessResponse());
+
+    emailOutboxService.dispatch();
+
+    Mockito.verify(sendGridService, Mockito.timeout(1000)).sendNotificationEmail(any(ContactRequestBody.class));
+    Mockito.verify(contactEmailRepository, Mockito.timeout(1000)).release(eq(contactEmail.getId()), anyString(),
+        eq(ContactEmail.Status.SENT), eq(1), any(LocalDateTime.class), isNull(), any(LocalDateTime.class));
+  }
+
+  @Test
+  public void dispatch_ClaimedByOtherInstance() throws Exception {
+    Mockito.when(contactEmailRepository.claim(eq(contactEmail.getId()), anyString(), any(LocalDateTime.class),
+        any(LocalDateTime.class))).thenReturn(0);
+
+    emailOutboxService.dispatch();
+
+    Mockito.verify(sendGridService, Mockito.never()).sendNotificationEmail(any(ContactRequestBody.class));
+    Mockito.verify(contactEmailRepository, Mockito.never()).release(any(), any(), any(), anyInt(), any(), any(),
+        any());
+  }
+
+  @Test
+  public void dispatch_SendGridError_Retried() throws Exception {
+    Mockito.when(contactEmailRepository.claim(eq(contactEmail.getId()), anyString(), any(LocalDateTime.class),
+        any(LocalDateTime.class))).thenReturn(1);
+    Mockito.when(sendGridService.sendNotificationEmail(any(ContactRequestBody.class)))
+        .thenReturn(new ErrorResponse(Constants.ERROR_CODE_SENDGRID_SEND_FAILED, "Error details"));
+
+    emailOutboxService.dispatch();
+
+    Mockito.verify(contactEmailRepository, Mockito.timeout(1000)).release(eq(contactEmail.getId()), anyString(),
+        eq(ContactEmail.Status.PENDING), eq(1), any(LocalDateTime.class), anyString(), isNull());
+  }
+
+  @Test
+  public void dispatch_SendGridError_Failed() throws Exception {
+    contactEmail.setAttempts(1);
+
+    Mockito.when(contactEmailRepository.claim(eq(contactEmail.getId()), anyString(), any(LocalDateTime.class),
+        any(LocalDateTime.class))).thenReturn(1);
+    Mockito.when(sendGridService.sendNotificationEmail(any(ContactRequestBody.class)))
+        .thenReturn(new ErrorResponse(Constants.ERROR_CODE_SENDGRID_SEND_FAILED, "Error details"));
+
+    emailOutboxService.dispatch();
+
+    Mockito.verify(contactEmailRepository, Mockito.timeout(1000)).release(eq(contactEmail.getId()), anyString(),
+        eq(ContactEmail.Status.FAILED), eq(2), any(LocalDateTime.class), anyString(), isNull());
+  }
+
+  @Test
+  public void dispatch_SendsInFlight_PollSkipped() throws Exception {
+    CountDownLatch sent = new CountDownLatch(1);
+    Mockito.when(contactEmailRepository.claim(eq(contactEmail.getId()), anyString(), any(LocalDateTime.class),
+        any(LocalDateTime.class))).thenReturn(1);
+    Mockito.when(sendGridService.sendNotificationEmail(any(ContactRequestBody.class))).thenAnswer(invocation -> {
+      sent.await();
+      return new SuccessResponse();
+    });
+
+    // Returns without waiting for the send, and the next poll is skipped
+    emailOutboxService.dispatch();
+    emailOutboxService.dispatch();
+    Mockito.verify(contactEmailRepository, Mockito.times(1)).findClaimableIds(any(LocalDateTime.class),
+        any(Pageable.class));
+
+    sent.countDown();
+    Mockito.verify(contactEmailRepository, Mockito.timeout(1000)).release(eq(contactEmail.getId()), anyString(),
+        eq(ContactEmail.Status.SENT), eq(1), any(LocalDateTime.class), isNull(), any(LocalDateTime.class));
+  }
+}
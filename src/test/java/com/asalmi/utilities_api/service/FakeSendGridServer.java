@@ -0,0 +1,82 @@
+package com.asalmi.utilities_api.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * In-process stand-in for the SendGrid API, for running tests without network
+ * access. Accepts every mail/send request with the given status, and keeps the
+ * requests it received.
+ */
+public class FakeSendGridServer {
+
+  private final HttpServer server;
+  private final ExecutorService executor = Executors.newCachedThreadPool();
+  private final List<ReceivedRequest> requests = new CopyOnWriteArrayList<>();
+  private volatile int status = 202;
+  private volatile String responseBody = "";
+
+  public FakeSendGridServer() {
+    try {
+      server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+    } catch (IOException ex) {
+      throw new IllegalStateException(ex);
+    }
+    server.setExecutor(executor);
+    server.createContext("/v3/mail/send", this::handle);
+    server.start();
+  }
+
+  public String getBaseUrl() {
+    return "http://localhost:" + server.getAddress().getPort();
+  }
+
+  public List<ReceivedRequest> getRequests() {
+    return requests;
+  }
+
+  public void respondWith(int status, String responseBody) {
+    this.status = status;
+    this.responseBody = responseBody;
+  }
+
+  public void reset() {
+    requests.clear();
+    respondWith(202, "");
+  }
+
+  public void stop() {
+    server.stop(0);
+    executor.shutdownNow();
+  }
+
+  private void handle(HttpExchange exchange) throws IOException {
+    try (InputStream in = exchange.getRequestBody()) {
+      requests.add(new ReceivedRequest(exchange.getRequestMethod(),
+          exchange.getRequestHeaders().getFirst("Authorization"),
+          new String(in.readAllBytes(), StandardCharsets.UTF_8)));
+    }
+
+    byte[] body = responseBody.getBytes(StandardCharsets.UTF_8);
+    exchange.sendResponseHeaders(status, body.length == 0 ? -1 : body.length);
+    if (body.length > 0) {
+      try (OutputStream out = exchange.getResponseBody()) {
+        out.write(body);
+      }
+    }
+    exchange.close();
+  }
+
+  public record ReceivedRequest(String method, String authorization, String body) {
+  }
+}
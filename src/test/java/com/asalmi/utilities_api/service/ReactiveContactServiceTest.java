@@ -0,0 +1,210 @@
+package com.asalmi.utilities_api.service;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import com.asalmi.utilities_api.constants.Constants;
+import com.asalmi.utilities_api.exception.UtilitiesApiException;
+import com.asalmi.utilities_api.model.ContactExportFormat;
+import com.asalmi.utilities_api.model.ContactRequest;
+import com.asalmi.utilities_api.model.ContactRequestBody;
+import com.asalmi.utilities_api.model.ContactRequestPage;
+import com.asalmi.utilities_api.model.ContactRequestView;
+import com.asalmi.utilities_api.model.CustomResponse;
+import com.asalmi.utilities_api.repository.IContactRepository;
+
+import reactor.core.publisher.Mono;
+
+/**
+ * Runs the reactive contact pipeline against an in-memory database, shared by
+ * JDBC and R2DBC, and an in-process stand-in for the SendGrid API
+ */
+@SpringBootTest(properties = {
+    "spring.datasource.url=jdbc:h2:mem:reactive;MODE=MySQL;DB_CLOSE_DELAY=-1",
+    "spring.datasource.username=sa",
+    "spring.datasource.password=",
+    "spring.jpa.hibernate.ddl-auto=validate",
+    "spring.r2dbc.url=r2dbc:h2:mem:///reactive;MODE=MySQL;DB_CLOSE_DELAY=-1",
+    "spring.r2dbc.username=sa",
+    "spring.r2dbc.password=",
+    "sendgrid.apikey=Test API Key",
+    "sendgrid.retry.backoff=1",
+    "sendgrid.retry.maxbackoff=10"
+})
+@ActiveProfiles("reactive")
+@RunWith(SpringRunner.class)
+public class ReactiveContactServiceTest {
+
+  private static final FakeSendGridServer server = new FakeSendGridServer();
+
+  @DynamicPropertySource
+  static void sendGridProperties(DynamicPropertyRegistry registry) {
+    registry.add("sendgrid.baseurl", server::getBaseUrl);
+  }
+
+  @AfterClass
+  public static void stopServer() {
+    server.stop();
+  }
+
+  @Autowired
+  private IReactiveContactService contactService;
+
+  @Autowired
+  private IContactRepository contactRepository;
+
+  private ContactRequestBody contactRequestBody;
+
+  @Before
+  public void Setup() {
+    server.reset();
+    contactRepository.deleteAll();
+    contactRequestBody = ContactRequestBody.builder()
+        .email("test@test.com")
+        .name("Test Name")
+        .message("Test Message")
+        .build();
+  }
+
+  @Test
+  public void send_Success() throws Exception {
+    CustomResponse actualResponse = contactService.send(contactRequestBody).block();
+
+    Assert.assertEquals(Constants.SUCCESS_CODE, actualResponse.getCode());
+    Assert.assertEquals(Constants.SUCCESS_DETAILS_SEND_CONTACT_REQUEST, actualResponse.getDetails());
+    Assert.assertEquals(2, server.getRequests().size());
+    Assert.assertEquals("Bearer Test API Key", server.getRequests().get(0).authorization());
+
+    List<ContactRequestView> saved = contactService.get("test@test.com", null, null, null, null).block()
+        .getContactRequests();
+    Assert.assertEquals(1, saved.size());
+    Assert.assertEquals("Test Name", saved.get(0).getName());
+    Assert.assertNull(saved.get(0).getPhone());
+    Assert.assertNotNull(saved.get(0).getCreatedAt());
+
+    ContactRequest byId = contactService.getById(saved.get(0).getId()).block();
+    Assert.assertEquals("Test Message", byId.getMessage());
+  }
+
+  @Test
+  public void send_SendGridFailed() throws Exception {
+    server.respondWith(400, "Test error");
+
+    CustomResponse actualResponse = contactService.send(contactRequestBody).block();
+
+    Assert.assertEquals(Constants.ERROR_CODE_SENDGRID_SEND_FAILED, actualResponse.getCode());
+    Assert.assertEquals(0, contactRepository.count());
+  }
+
+  @Test
+  public void send_SendGridUnavailable_Retried() throws Exception {
+    server.respondWith(503, "Test error");
+
+    CustomResponse actualResponse = contactService.send(contactRequestBody).block();
+
+    Assert.assertEquals(Constants.ERROR_CODE_SENDGRID_SEND_FAILED, actualResponse.getCode());
+    // Both emails are attempted sendgrid.retry.maxattempts times
+    Assert.assertEquals(6, server.getRequests().size());
+    Assert.assertEquals(0, contactRepository.count());
+  }
+
+  @Test
+  public void send_IdempotencyKeySaved() throws Exception {
+    contactRequestBody.setIdempotencyKey("Test Key");
+
+    contactService.send(contactRequestBody).block();
+
+    LocalDateTime since = LocalDateTime.now().minusMinutes(1);
+    Assert.assertTrue(contactService.isSaved(contactRequestBody, since).block());
+    contactRequestBody.setIdempotencyKey("Other Key");
+    Assert.assertFalse(contactService.isSaved(contactRequestBody, since).block());
+  }
+
+  @Test
+  public void send_MessageSaved() throws Exception {
+    contactService.send(contactRequestBody).block();
+
+    Assert.assertTrue(contactService.isSaved(contactRequestBody, LocalDateTime.now().minusMinutes(1)).block());
+    Assert.assertFalse(contactService.isSaved(contactRequestBody, LocalDateTime.now().plusMinutes(1)).block());
+
+    // Matched like the deduplicator's fingerprint
+    ContactRequestBody resubmitted = ContactRequestBody.builder()
+        .email(contactRequestBody.getEmail().toUpperCase())
+        .name(contactRequestBody.getName())
+        .message(" " + contactRequestBody.getMessage() + "\n")
+        .build();
+    Assert.assertTrue(contactService.isSaved(resubmitted, LocalDateTime.now().minusMinutes(1)).block());
+    resubmitted.setMessage("Other Message");
+    Assert.assertFalse(contactService.isSaved(resubmitted, LocalDateTime.now().minusMinutes(1)).block());
+  }
+
+  @Test
+  public void get_Paged() throws Exception {
+    for (int i = 0; i < 3; i++) {
+      contactRequestBody.setMessage("Test Message " + i);
+      contactService.send(contactRequestBody).block();
+    }
+
+    // Pages follow each other in the order the contact requests were created
+    ContactRequestPage first = contactService.get(null, null, null, null, 2).block();
+    Assert.assertEquals(2, first.getContactRequests().size());
+    Assert.assertEquals("Test Message 0", first.getContactRequests().get(0).getMessage());
+    Assert.assertNotNull(first.getNextCursor());
+
+    ContactRequestPage second = contactService.get(null, null, null, first.getNextCursor(), 2).block();
+    Assert.assertEquals(1, second.getContactRequests().size());
+    Assert.assertEquals("Test Message 2", second.getContactRequests().get(0).getMessage());
+    Assert.assertNull(second.getNextCursor());
+  }
+
+  @Test
+  public void get_InvalidCursor() throws Exception {
+    Throwable error = contactService.get(null, null, null, "not a cursor", null)
+        .then(Mono.<Throwable>empty())
+        .onErrorResume(Mono::just)
+        .block();
+
+    Assert.assertTrue(error instanceof UtilitiesApiException);
+    Assert.assertEquals(Constants.ERROR_CODE_BAD_REQUEST, ((UtilitiesApiException) error).getErrorResponse().getCode());
+  }
+
+  @Test
+  public void export_Csv() throws Exception {
+    contactService.send(contactRequestBody).block();
+    contactRequestBody.setPhone("1234567890");
+    contactService.send(contactRequestBody).block();
+
+    String csv = contactService.export(ContactExportFormat.CSV)
+        .map(chunk -> new String(chunk, StandardCharsets.UTF_8))
+        .reduce(String::concat)
+        .block();
+
+    String[] lines = csv.split("\n");
+    Assert.assertEquals(3, lines.length);
+    Assert.assertEquals("id,name,email,message,phone,createdAt", lines[0]);
+    Assert.assertTrue(lines[1].contains(",\"Test Name\",test@test.com,\"Test Message\",,"));
+    Assert.assertTrue(lines[2].contains(",1234567890,"));
+  }
+
+  @Test
+  public void get_Empty() throws Exception {
+    ContactRequestPage page = contactService.get(null, null, null, null, null).block();
+    Assert.assertTrue(page.getContactRequests().isEmpty());
+    Assert.assertNull(page.getNextCursor());
+    Assert.assertNull(contactService.export(ContactExportFormat.NDJSON).blockFirst());
+    Assert.assertNull(contactService.getById(1L).block());
+  }
+}
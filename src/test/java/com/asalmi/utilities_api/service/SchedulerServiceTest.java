@@ -16,7 +16,7 @@ import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.test.context.junit4.SpringRunner;
 
 import com.asalmi.utilities_api.constants.Constants;
-import com.asalmi.utilities_api.model.ContactRequest;
+import com.asalmi.utilities_api.model.ContactRequestBody;
 import com.asalmi.utilities_api.model.ErrorResponse;
 import com.asalmi.utilities_api.model.SuccessResponse;
 import com.asalmi.utilities_api.repository.IContactRepository;
@@ -34,24 +34,18 @@ public class SchedulerServiceTest {
   @InjectMocks
   private SchedulerService schedulerService;
 
-  private ContactRequest contactRequest;
+  private ContactRequestBody contactRequest;
   private SuccessResponse successResponse;
-  private List<ContactRequest> contactRequests;
+  private List<ContactRequestBody> contactRequests;
   private long totalRequests;
 
   @Before
   public void Setup() {
-    contactRequest = ContactRequest.builder()
-        .id(Long.parseLong("1"))
-        .email("test@test.com")
-        .name("Test Name")
-        .message("Test Message")
-        .createdAt(LocalDateTime.now())
-        .build();
+    contactRequest = new ContactRequestBody("test@test.com", "Test Message", "Test Name");
 
     successResponse = new SuccessResponse();
 
-    contactRequests = new ArrayList<ContactRequest>();
+    contactRequests = new ArrayList<ContactRequestBody>();
     contactRequests.add(contactRequest);
 
     totalRequests = 1;
@@ -59,19 +53,21 @@ public class SchedulerServiceTest {
 
   @Test
   public void weeklySummaryEmail_Success() throws Exception {
-    Mockito.when(contactRepository.findByCreatedAtBetween(any(LocalDateTime.class), any(LocalDateTime.class)))
+    Mockito.when(contactRepository.findSummariesByCreatedAtBetween(any(LocalDateTime.class), any(LocalDateTime.class)))
         .thenReturn(contactRequests);
     Mockito.when(contactRepository.count()).thenReturn(totalRequests);
     Mockito.when(sendGridService.sendSummaryEmail(any(List.class), any(long.class))).thenReturn(successResponse);
 
     schedulerService.weeklySummaryEmail();
+
+    Mockito.verify(sendGridService).sendSummaryEmail(contactRequests, totalRequests);
   }
 
   @Test
   public void weeklySummaryEmail_RepositoryException() throws Exception {
     IllegalArgumentException exception = new IllegalArgumentException("Test exception");
 
-    Mockito.when(contactRepository.findByCreatedAtBetween(any(LocalDateTime.class), any(LocalDateTime.class)))
+    Mockito.when(contactRepository.findSummariesByCreatedAtBetween(any(LocalDateTime.class), any(LocalDateTime.class)))
         .thenThrow(exception);
 
     schedulerService.weeklySummaryEmail();
@@ -81,7 +77,7 @@ public class SchedulerServiceTest {
   public void send_ServiceError_SendGrid2() throws Exception {
     ErrorResponse errorResponse = new ErrorResponse(Constants.ERROR_CODE_SENDGRID_SEND_FAILED, "Error details");
 
-    Mockito.when(contactRepository.findByCreatedAtBetween(any(LocalDateTime.class), any(LocalDateTime.class)))
+    Mockito.when(contactRepository.findSummariesByCreatedAtBetween(any(LocalDateTime.class), any(LocalDateTime.class)))
         .thenReturn(contactRequests);
     Mockito.when(contactRepository.count()).thenReturn(totalRequests);
     Mockito.when(sendGridService.sendSummaryEmail(any(List.class), any(long.class))).thenReturn(errorResponse);
@@ -0,0 +1,80 @@
+package com.asalmi.utilities_api.service;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import com.asalmi.utilities_api.constants.Constants;
+import com.asalmi.utilities_api.model.ContactRequestBody;
+import com.asalmi.utilities_api.service.serviceImpl.SendGridMailTemplate;
+import com.sendgrid.helpers.mail.Mail;
+import com.sendgrid.helpers.mail.objects.Email;
+import com.sendgrid.helpers.mail.objects.Personalization;
+
+/**
+ * Compares rendering the contact request email from a compiled template with
+ * building and serializing a Mail for it. Not run with the tests, run its main
+ * method on the test classpath after mvn test-compile.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SendGridMailTemplateBenchmark {
+
+  private final ContactRequestBody request = ContactRequestBody.builder()
+      .name("Test Name")
+      .email("test@test.com")
+      .message("Hello Alex,\nI'd like to get in touch about \"a project\".")
+      .phone("1234567890")
+      .build();
+
+  private final SendGridMailTemplate template = new SendGridMailTemplate("d-253bc6abbcd24b77820afd30db0ae04f",
+      new Email(Constants.SENDGRID_NOREPLY_EMAIL, Constants.SENDGRID_NOREPLY_NAME));
+
+  @Benchmark
+  public String mailBuild() throws IOException {
+    Personalization personalization = new Personalization();
+    personalization.addTo(new Email(Constants.SENDGRID_ASALMI_EMAIL));
+    personalization.addDynamicTemplateData(Constants.SENDGRID_PERSONALIZATION_NAME, request.getName());
+    personalization.addDynamicTemplateData(Constants.SENDGRID_PERSONALIZATION_EMAIL, request.getEmail());
+    personalization.addDynamicTemplateData(Constants.SENDGRID_PERSONALIZATION_MESSAGE, request.getMessage());
+    personalization.addDynamicTemplateData(Constants.SENDGRID_PERSONALIZATION_PHONE, request.getPhone());
+
+    Mail mail = new Mail();
+    mail.setFrom(new Email(Constants.SENDGRID_NOREPLY_EMAIL, Constants.SENDGRID_NOREPLY_NAME));
+    mail.setTemplateId("d-253bc6abbcd24b77820afd30db0ae04f");
+    mail.addPersonalization(personalization);
+    mail.replyTo = new Email(request.getEmail(), request.getName());
+    return mail.build();
+  }
+
+  @Benchmark
+  public String compiledTemplate() {
+    String personalization = template.personalization(new Email(Constants.SENDGRID_ASALMI_EMAIL),
+        Constants.SENDGRID_PERSONALIZATION_NAME, request.getName(),
+        Constants.SENDGRID_PERSONALIZATION_EMAIL, request.getEmail(),
+        Constants.SENDGRID_PERSONALIZATION_MESSAGE, request.getMessage(),
+        Constants.SENDGRID_PERSONALIZATION_PHONE, request.getPhone());
+    return template.render(new Email(request.getEmail(), request.getName()), List.of(personalization));
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    new Runner(new OptionsBuilder().include(SendGridMailTemplateBenchmark.class.getSimpleName()).build()).run();
+  }
+}
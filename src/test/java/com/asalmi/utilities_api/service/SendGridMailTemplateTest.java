@@ -0,0 +1,91 @@
+package com.asalmi.utilities_api.service;
+
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.asalmi.utilities_api.constants.Constants;
+import com.asalmi.utilities_api.model.ContactRequestBody;
+import com.asalmi.utilities_api.service.serviceImpl.SendGridMailTemplate;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sendgrid.helpers.mail.Mail;
+import com.sendgrid.helpers.mail.objects.Email;
+import com.sendgrid.helpers.mail.objects.Personalization;
+
+public class SendGridMailTemplateTest {
+
+  private final ObjectMapper mapper = new ObjectMapper();
+
+  @Test
+  public void render_SameAsMailBuild() throws Exception {
+    Email from = new Email(Constants.SENDGRID_NOREPLY_EMAIL, Constants.SENDGRID_NOREPLY_NAME);
+    Email to = new Email(Constants.SENDGRID_ASALMI_EMAIL);
+    Email replyTo = new Email("test@test.com", "Test \"Name\"");
+    String message = "Line one\nLine two\t\\ \u0001 é";
+
+    Personalization personalization = new Personalization();
+    personalization.addTo(to);
+    personalization.addDynamicTemplateData(Constants.SENDGRID_PERSONALIZATION_NAME, replyTo.getName());
+    personalization.addDynamicTemplateData(Constants.SENDGRID_PERSONALIZATION_MESSAGE, message);
+    personalization.addDynamicTemplateData(Constants.SENDGRID_PERSONALIZATION_PHONE, "N/A");
+
+    Mail mail = new Mail();
+    mail.setFrom(from);
+    mail.setTemplateId("d-1234");
+    mail.addPersonalization(personalization);
+    mail.replyTo = replyTo;
+
+    SendGridMailTemplate template = new SendGridMailTemplate("d-1234", from);
+    String actual = template.render(replyTo, List.of(template.personalization(to,
+        Constants.SENDGRID_PERSONALIZATION_NAME, replyTo.getName(),
+        Constants.SENDGRID_PERSONALIZATION_MESSAGE, message,
+        Constants.SENDGRID_PERSONALIZATION_PHONE, "N/A")));
+
+    Assert.assertEquals(mapper.readTree(mail.build()), mapper.readTree(actual));
+  }
+
+  @Test
+  public void render_Summary_SameAsMailBuild() throws Exception {
+    Email from = new Email(Constants.SENDGRID_NOREPLY_EMAIL, Constants.SENDGRID_NOREPLY_NAME);
+    Email to = new Email(Constants.SENDGRID_ASALMI_EMAIL);
+    List<ContactRequestBody> requests = List.of(ContactRequestBody.builder()
+        .name("Test Name")
+        .email("test@test.com")
+        .message("Test Message")
+        .build());
+
+    Personalization personalization = new Personalization();
+    personalization.addTo(to);
+    personalization.addDynamicTemplateData(Constants.SENDGRID_PERSONALIZATION_REQUESTS, requests);
+    personalization.addDynamicTemplateData(Constants.SENDGRID_PERSONALIZATION_MONTHLY_NUMBER, requests.size());
+    personalization.addDynamicTemplateData(Constants.SENDGRID_PERSONALIZATION_TOTAL_NUMBER, 5L);
+
+    Mail mail = new Mail();
+    mail.setFrom(from);
+    mail.setTemplateId("d-5678");
+    mail.addPersonalization(personalization);
+
+    SendGridMailTemplate template = new SendGridMailTemplate("d-5678", from);
+    String actual = template.render(null, List.of(template.personalization(to,
+        Constants.SENDGRID_PERSONALIZATION_REQUESTS, requests,
+        Constants.SENDGRID_PERSONALIZATION_MONTHLY_NUMBER, requests.size(),
+        Constants.SENDGRID_PERSONALIZATION_TOTAL_NUMBER, 5L)));
+
+    Assert.assertEquals(mapper.readTree(mail.build()), mapper.readTree(actual));
+  }
+
+  @Test
+  public void render_MultiplePersonalizations() throws Exception {
+    SendGridMailTemplate template = new SendGridMailTemplate("d-1234",
+        new Email(Constants.SENDGRID_NOREPLY_EMAIL, Constants.SENDGRID_ASALMI_NAME));
+
+    String actual = template.render(null, List.of(
+        template.personalization(new Email("one@test.com", "One"), Constants.SENDGRID_PERSONALIZATION_NAME, "One"),
+        template.personalization(new Email("two@test.com", "Two"), Constants.SENDGRID_PERSONALIZATION_NAME, "Two")));
+
+    Assert.assertEquals(2, mapper.readTree(actual).get("personalizations").size());
+    Assert.assertEquals("two@test.com",
+        mapper.readTree(actual).get("personalizations").get(1).get("to").get(0).get("email").asText());
+  }
+}
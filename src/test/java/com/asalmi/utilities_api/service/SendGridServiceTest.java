@@ -6,6 +6,13 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
 
 import com.asalmi.utilities_api.constants.Constants;
 import com.asalmi.utilities_api.exception.UtilitiesApiException;
@@ -13,6 +20,7 @@ import com.asalmi.utilities_api.model.ContactRequestBody;
 import com.asalmi.utilities_api.model.CustomResponse;
 import com.asalmi.utilities_api.model.ErrorResponse;
 import com.asalmi.utilities_api.model.SuccessResponse;
+import com.asalmi.utilities_api.service.serviceImpl.SendGridCircuitBreaker;
 import com.asalmi.utilities_api.service.serviceImpl.SendGridService;
 import com.sendgrid.Request;
 import com.sendgrid.Response;
@@ -22,11 +30,13 @@ import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.Mockito;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.util.ReflectionTestUtils;
 
 @SpringBootTest
 @RunWith(SpringRunner.class)
@@ -53,7 +63,13 @@ public class SendGridServiceTest {
 
     sgResponse = new Response(Constants.SENDGRID_SEND_SUCCESS_CODE, "Success", new HashMap<>());
 
-    sendGridService.sendGrid = this.sendGrid;
+    ReflectionTestUtils.setField(sendGridService, "executor", Executors.newFixedThreadPool(2));
+    ReflectionTestUtils.setField(sendGridService, "bulkhead", new Semaphore(10));
+    ReflectionTestUtils.setField(sendGridService, "bulkheadMaxWait", 100L);
+    ReflectionTestUtils.setField(sendGridService, "circuitBreaker", new SendGridCircuitBreaker(10, 4, 50, 60000, 1));
+    ReflectionTestUtils.setField(sendGridService, "retryMaxAttempts", 3);
+    ReflectionTestUtils.setField(sendGridService, "retryBackoff", 1L);
+    ReflectionTestUtils.setField(sendGridService, "retryMaxBackoff", 10L);
   }
 
   @Test
@@ -133,4 +149,286 @@ public class SendGridServiceTest {
           actualException.getErrorResponse().getDetails());
     }
   }
+
+  @Test
+  public void sendContactRequestEmails_Success() throws Exception {
+    Mockito.when(sendGrid.api(any(Request.class))).thenReturn(sgResponse);
+
+    CustomResponse actualResponse = sendGridService.sendContactRequestEmails(contactRequestBody);
+    Assert.assertEquals(successResponse.getCode(), actualResponse.getCode());
+    Assert.assertEquals(successResponse.getMessage(), actualResponse.getMessage());
+    Mockito.verify(sendGrid, Mockito.times(2)).api(any(Request.class));
+  }
+
+  @Test
+  public void sendContactRequestEmails_Failed_ContactRequestFirst() throws Exception {
+    Response contactRequestResponse = new Response(400, "Contact request error", new HashMap<>());
+    Response notificationResponse = new Response(400, "Notification error", new HashMap<>());
+
+    // Only the contact request email has a reply-to address
+    Mockito.when(sendGrid.api(any(Request.class))).thenAnswer(invocation -> {
+      Request request = invocation.getArgument(0);
+      return request.getBody().contains("reply_to") ? contactRequestResponse : notificationResponse;
+    });
+
+    CustomResponse actualResponse = sendGridService.sendContactRequestEmails(contactRequestBody);
+    Assert.assertEquals(Constants.ERROR_CODE_SENDGRID_SEND_FAILED, actualResponse.getCode());
+    Assert.assertEquals("Contact request error", actualResponse.getDetails());
+    Mockito.verify(sendGrid, Mockito.times(2)).api(any(Request.class));
+  }
+
+  @Test
+  public void sendContactRequestEmails_Failed_Notification() throws Exception {
+    Response notificationResponse = new Response(400, "Notification error", new HashMap<>());
+
+    Mockito.when(sendGrid.api(any(Request.class))).thenAnswer(invocation -> {
+      Request request = invocation.getArgument(0);
+      return request.getBody().contains("reply_to") ? sgResponse : notificationResponse;
+    });
+
+    CustomResponse actualResponse = sendGridService.sendContactRequestEmails(contactRequestBody);
+    Assert.assertEquals(Constants.ERROR_CODE_SENDGRID_SEND_FAILED, actualResponse.getCode());
+    Assert.assertEquals("Notification error", actualResponse.getDetails());
+  }
+
+  @Test
+  public void sendContactRequestEmails_SendException() throws Exception {
+    IOException exception = new IOException("Test exception");
+
+    Mockito.when(sendGrid.api(any(Request.class))).thenThrow(exception);
+
+    try {
+      sendGridService.sendContactRequestEmails(contactRequestBody);
+      Assert.fail();
+    } catch (UtilitiesApiException actualException) {
+      Assert.assertEquals(Constants.ERROR_CODE_SENDGRID_SEND_ERROR, actualException.getErrorResponse().getCode());
+      Assert.assertEquals("Test exception", actualException.getErrorResponse().getDetails());
+    }
+  }
+
+  @Test
+  public void sendNotificationEmail_Batched_SingleRequest() throws Exception {
+    enableBatching(60000, 3);
+    Mockito.when(sendGrid.api(any(Request.class))).thenReturn(sgResponse);
+
+    // The third email fills the batch, so none of them wait for the linger time
+    List<CustomResponse> actualResponses = sendConcurrently(3);
+    for (CustomResponse actualResponse : actualResponses) {
+      Assert.assertEquals(successResponse.getCode(), actualResponse.getCode());
+    }
+
+    ArgumentCaptor<Request> captor = ArgumentCaptor.forClass(Request.class);
+    Mockito.verify(sendGrid, Mockito.times(1)).api(captor.capture());
+    Assert.assertEquals(3, countOccurrences(captor.getValue().getBody(), "\"dynamic_template_data\""));
+  }
+
+  @Test
+  public void sendNotificationEmail_Batched_Linger() throws Exception {
+    enableBatching(10, 100);
+    Mockito.when(sendGrid.api(any(Request.class))).thenReturn(sgResponse);
+
+    CustomResponse actualResponse = sendGridService.sendNotificationEmail(contactRequestBody);
+    Assert.assertEquals(successResponse.getCode(), actualResponse.getCode());
+    Mockito.verify(sendGrid, Mockito.times(1)).api(any(Request.class));
+  }
+
+  @Test
+  public void sendNotificationEmail_Batched_SendException() throws Exception {
+    enableBatching(60000, 2);
+    Mockito.when(sendGrid.api(any(Request.class))).thenThrow(new IOException("Test exception"));
+
+    // Every email in the batch gets the batch's exception
+    try {
+      sendConcurrently(2);
+      Assert.fail();
+    } catch (CompletionException ex) {
+      UtilitiesApiException actualException = (UtilitiesApiException) ex.getCause();
+      Assert.assertEquals(Constants.ERROR_CODE_SENDGRID_SEND_ERROR, actualException.getErrorResponse().getCode());
+      Assert.assertEquals("Test exception", actualException.getErrorResponse().getDetails());
+    }
+    Mockito.verify(sendGrid, Mockito.times(1)).api(any(Request.class));
+  }
+
+  @Test
+  public void sendNotificationEmail_Batched_Rejected_SentOneAtATime() throws Exception {
+    enableBatching(60000, 3);
+    Response rejectedSGResponse = new Response(400, "Invalid recipient", new HashMap<>());
+    Mockito.when(sendGrid.api(any(Request.class))).thenAnswer(invocation -> {
+      String body = invocation.getArgument(0, Request.class).getBody();
+      // The batch, and the email to the invalid recipient on its own
+      return countOccurrences(body, "\"dynamic_template_data\"") > 1 || body.contains("test0@test.com")
+          ? rejectedSGResponse
+          : sgResponse;
+    });
+
+    List<CustomResponse> actualResponses = sendConcurrently(3);
+    Assert.assertEquals(2, actualResponses.stream().filter(response -> !response.hasError()).count());
+    Assert.assertEquals(1, actualResponses.stream().filter(CustomResponse::hasError).count());
+    Mockito.verify(sendGrid, Mockito.times(4)).api(any(Request.class));
+  }
+
+  @Test
+  public void sendNotificationEmail_Batched_Rejected_SentConcurrently() throws Exception {
+    enableBatching(60000, 2);
+    Response rejectedSGResponse = new Response(400, "Invalid recipient", new HashMap<>());
+    CountDownLatch sentOnTheirOwn = new CountDownLatch(2);
+    Mockito.when(sendGrid.api(any(Request.class))).thenAnswer(invocation -> {
+      String body = invocation.getArgument(0, Request.class).getBody();
+      if (countOccurrences(body, "\"dynamic_template_data\"") > 1) {
+        return rejectedSGResponse;
+      }
+      // Only succeeds if the other email is being sent at the same time
+      sentOnTheirOwn.countDown();
+      return sentOnTheirOwn.await(5, TimeUnit.SECONDS) ? sgResponse : rejectedSGResponse;
+    });
+
+    List<CustomResponse> actualResponses = sendConcurrently(2);
+    Assert.assertTrue(actualResponses.stream().noneMatch(CustomResponse::hasError));
+    Mockito.verify(sendGrid, Mockito.times(3)).api(any(Request.class));
+  }
+
+  @Test
+  public void shutdown_PendingBatchSent() throws Exception {
+    enableBatching(60000, 100);
+    Mockito.when(sendGrid.api(any(Request.class))).thenReturn(sgResponse);
+
+    CompletableFuture<CustomResponse> send = CompletableFuture.supplyAsync(() -> {
+      try {
+        return sendGridService.sendNotificationEmail(contactRequestBody);
+      } catch (UtilitiesApiException ex) {
+        throw new CompletionException(ex);
+      }
+    });
+    Mockito.verify(sendGrid, Mockito.after(200).never()).api(any(Request.class));
+
+    // The batch is sent instead of waiting for a linger time that never comes
+    sendGridService.shutdown();
+    Assert.assertEquals(successResponse.getCode(), send.get(1, TimeUnit.SECONDS).getCode());
+
+    // And emails sent after the shutdown aren't batched
+    CustomResponse actualResponse = sendGridService.sendNotificationEmail(contactRequestBody);
+    Assert.assertEquals(successResponse.getCode(), actualResponse.getCode());
+    Mockito.verify(sendGrid, Mockito.times(2)).api(any(Request.class));
+  }
+
+  @Test
+  public void sendEmail_Retry_Success() throws Exception {
+    Response unavailableResponse = new Response(503, "Unavailable", new HashMap<>());
+
+    Mockito.when(sendGrid.api(any(Request.class))).thenReturn(unavailableResponse, sgResponse);
+
+    CustomResponse actualResponse = sendGridService.sendNotificationEmail(contactRequestBody);
+    Assert.assertEquals(successResponse.getCode(), actualResponse.getCode());
+    Mockito.verify(sendGrid, Mockito.times(2)).api(any(Request.class));
+  }
+
+  @Test
+  public void sendEmail_Retry_Exhausted() throws Exception {
+    Response tooManyRequestsResponse = new Response(429, "Too many requests", new HashMap<>());
+
+    Mockito.when(sendGrid.api(any(Request.class))).thenReturn(tooManyRequestsResponse);
+
+    CustomResponse actualResponse = sendGridService.sendNotificationEmail(contactRequestBody);
+    Assert.assertEquals(Constants.ERROR_CODE_SENDGRID_SEND_FAILED, actualResponse.getCode());
+    Assert.assertEquals("Too many requests", actualResponse.getDetails());
+    Mockito.verify(sendGrid, Mockito.times(3)).api(any(Request.class));
+  }
+
+  @Test
+  public void sendEmail_CircuitBreakerOpen() throws Exception {
+    Mockito.when(sendGrid.api(any(Request.class))).thenThrow(new IOException("Test exception"));
+
+    // Four failed calls open the breaker
+    for (int i = 0; i < 4; i++) {
+      try {
+        sendGridService.sendNotificationEmail(contactRequestBody);
+        Assert.fail();
+      } catch (UtilitiesApiException ex) {
+        Assert.assertEquals("Test exception", ex.getErrorResponse().getDetails());
+      }
+    }
+
+    try {
+      sendGridService.sendNotificationEmail(contactRequestBody);
+      Assert.fail();
+    } catch (UtilitiesApiException actualException) {
+      Assert.assertEquals(Constants.ERROR_CODE_SENDGRID_SEND_ERROR, actualException.getErrorResponse().getCode());
+      Assert.assertEquals("SendGrid circuit breaker is open", actualException.getErrorResponse().getDetails());
+    }
+    Mockito.verify(sendGrid, Mockito.times(4)).api(any(Request.class));
+  }
+
+  @Test
+  public void sendEmail_CircuitBreakerClosesAfterTrialCall() throws Exception {
+    SendGridCircuitBreaker circuitBreaker = new SendGridCircuitBreaker(10, 4, 50, 0, 1);
+    ReflectionTestUtils.setField(sendGridService, "circuitBreaker", circuitBreaker);
+    IOException exception = new IOException("Test exception");
+
+    Mockito.when(sendGrid.api(any(Request.class)))
+        .thenThrow(exception, exception, exception, exception)
+        .thenReturn(sgResponse);
+
+    for (int i = 0; i < 4; i++) {
+      try {
+        sendGridService.sendNotificationEmail(contactRequestBody);
+        Assert.fail();
+      } catch (UtilitiesApiException ex) {
+        Assert.assertEquals("Test exception", ex.getErrorResponse().getDetails());
+      }
+    }
+    Assert.assertEquals(SendGridCircuitBreaker.State.OPEN, circuitBreaker.getState());
+
+    // The open time is over, so the next call is a trial call
+    CustomResponse actualResponse = sendGridService.sendNotificationEmail(contactRequestBody);
+    Assert.assertEquals(successResponse.getCode(), actualResponse.getCode());
+    Assert.assertEquals(SendGridCircuitBreaker.State.CLOSED, circuitBreaker.getState());
+  }
+
+  @Test
+  public void sendEmail_BulkheadFull() throws Exception {
+    ReflectionTestUtils.setField(sendGridService, "bulkhead", new Semaphore(0));
+
+    try {
+      sendGridService.sendNotificationEmail(contactRequestBody);
+      Assert.fail();
+    } catch (UtilitiesApiException actualException) {
+      Assert.assertEquals(Constants.ERROR_CODE_SENDGRID_SEND_ERROR, actualException.getErrorResponse().getCode());
+    }
+    Mockito.verify(sendGrid, Mockito.never()).api(any(Request.class));
+  }
+
+  private void enableBatching(long linger, int maxSize) {
+    ReflectionTestUtils.setField(sendGridService, "batchEnabled", true);
+    ReflectionTestUtils.setField(sendGridService, "batchLinger", linger);
+    ReflectionTestUtils.setField(sendGridService, "batchMaxSize", maxSize);
+    ReflectionTestUtils.setField(sendGridService, "batchExecutor", Executors.newCachedThreadPool());
+  }
+
+  private List<CustomResponse> sendConcurrently(int count) {
+    ExecutorService callers = Executors.newFixedThreadPool(count);
+    try {
+      List<CompletableFuture<CustomResponse>> sends = new ArrayList<>();
+      for (int i = 0; i < count; i++) {
+        ContactRequestBody request = ContactRequestBody.builder()
+            .email("test" + i + "@test.com")
+            .name("Test Name " + i)
+            .message("Test Message")
+            .build();
+        sends.add(CompletableFuture.supplyAsync(() -> {
+          try {
+            return sendGridService.sendNotificationEmail(request);
+          } catch (UtilitiesApiException ex) {
+            throw new CompletionException(ex);
+          }
+        }, callers));
+      }
+      return sends.stream().map(CompletableFuture::join).toList();
+    } finally {
+      callers.shutdown();
+    }
+  }
+
+  private int countOccurrences(String body, String value) {
+    return body.split(value, -1).length - 1;
+  }
 }
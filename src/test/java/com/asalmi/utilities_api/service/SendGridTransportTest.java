@@ -0,0 +1,99 @@
+package com.asalmi.utilities_api.service;
+
+import java.util.List;
+
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import com.asalmi.utilities_api.constants.Constants;
+import com.asalmi.utilities_api.model.ContactRequestBody;
+import com.asalmi.utilities_api.model.CustomResponse;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Sends emails through the pooled transport to an in-process stand-in for the
+ * SendGrid API
+ */
+@SpringBootTest(properties = {
+    "spring.datasource.url=jdbc:h2:mem:sendgridtransport;MODE=MySQL;DB_CLOSE_DELAY=-1",
+    "spring.datasource.username=sa",
+    "spring.datasource.password=",
+    "spring.jpa.hibernate.ddl-auto=validate",
+    "sendgrid.apikey=Test API Key",
+    "sendgrid.batch.enabled=false"
+})
+@RunWith(SpringRunner.class)
+public class SendGridTransportTest {
+
+  private static final FakeSendGridServer server = new FakeSendGridServer();
+
+  @DynamicPropertySource
+  static void sendGridProperties(DynamicPropertyRegistry registry) {
+    registry.add("sendgrid.baseurl", server::getBaseUrl);
+  }
+
+  @AfterClass
+  public static void stopServer() {
+    server.stop();
+  }
+
+  @Autowired
+  private ISendGridService sendGridService;
+
+  @Autowired
+  private MeterRegistry meterRegistry;
+
+  private ContactRequestBody contactRequestBody;
+
+  @Before
+  public void Setup() {
+    server.reset();
+    contactRequestBody = ContactRequestBody.builder()
+        .email("test@test.com")
+        .name("Test Name")
+        .message("Test Message")
+        .build();
+  }
+
+  @Test
+  public void sendNotificationEmail_Success() throws Exception {
+    for (int i = 0; i < 5; i++) {
+      CustomResponse actualResponse = sendGridService.sendNotificationEmail(contactRequestBody);
+      Assert.assertEquals(Constants.SUCCESS_CODE, actualResponse.getCode());
+    }
+
+    Assert.assertEquals(5, server.getRequests().size());
+    FakeSendGridServer.ReceivedRequest request = server.getRequests().get(0);
+    Assert.assertEquals("POST", request.method());
+    Assert.assertEquals("Bearer Test API Key", request.authorization());
+    Assert.assertTrue(request.body().contains("test@test.com"));
+    Assert.assertTrue(meterRegistry.get("sendgrid.requests").tag("status", "202").timer().count() >= 5);
+  }
+
+  @Test
+  public void sendNotificationEmail_Failed() throws Exception {
+    server.respondWith(400, "Test error");
+
+    CustomResponse actualResponse = sendGridService.sendNotificationEmail(contactRequestBody);
+    Assert.assertEquals(Constants.ERROR_CODE_SENDGRID_SEND_FAILED, actualResponse.getCode());
+    Assert.assertEquals("Test error", actualResponse.getDetails());
+    Assert.assertEquals(1, meterRegistry.get("sendgrid.requests").tag("status", "400").timer().count());
+  }
+
+  @Test
+  public void sendSummaryEmail_Success() throws Exception {
+    CustomResponse actualResponse = sendGridService.sendSummaryEmail(List.of(), 0);
+    Assert.assertEquals(Constants.SUCCESS_CODE, actualResponse.getCode());
+    Assert.assertEquals(1, server.getRequests().size());
+    Assert.assertTrue(server.getRequests().get(0).body().contains("\"monthly_number\":0"));
+  }
+}
@@ -0,0 +1,44 @@
+package com.asalmi.utilities_api.utils;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ObjectPoolTest {
+
+  @Test
+  public void acquire_ReusesReleasedObject() {
+    AtomicInteger created = new AtomicInteger();
+    ObjectPool<StringBuilder> pool = new ObjectPool<>(() -> {
+      created.incrementAndGet();
+      return new StringBuilder();
+    }, 4);
+
+    StringBuilder first = pool.acquire();
+    pool.release(first);
+
+    Assert.assertSame(first, pool.acquire());
+    Assert.assertEquals(1, created.get());
+  }
+
+  @Test
+  public void acquire_Empty_CreatesObject() {
+    ObjectPool<StringBuilder> pool = new ObjectPool<>(StringBuilder::new, 4);
+
+    Assert.assertNotSame(pool.acquire(), pool.acquire());
+  }
+
+  @Test
+  public void release_Full_DropsObject() {
+    ObjectPool<StringBuilder> pool = new ObjectPool<>(StringBuilder::new, 1);
+    StringBuilder first = pool.acquire();
+    StringBuilder second = pool.acquire();
+
+    pool.release(first);
+    pool.release(second);
+
+    Assert.assertSame(first, pool.acquire());
+    Assert.assertNotSame(second, pool.acquire());
+  }
+}
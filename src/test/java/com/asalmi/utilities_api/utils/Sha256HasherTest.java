@@ -0,0 +1,80 @@
+package com.asalmi.utilities_api.utils;
+
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.UUID;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+
+@SpringBootTest
+@RunWith(SpringRunner.class)
+public class Sha256HasherTest {
+
+  @Test
+  public void digest_Success() throws Exception {
+    String input = UUID.randomUUID().toString();
+    byte[] expected = MessageDigest.getInstance("SHA-256").digest(input.getBytes(StandardCharsets.UTF_8));
+
+    Assert.assertArrayEquals(expected, Sha256Hasher.digest(input));
+  }
+
+  @Test
+  public void digest_Success_NonAscii() throws Exception {
+    String input = "clé-ключ-鍵";
+    byte[] expected = MessageDigest.getInstance("SHA-256").digest(input.getBytes(StandardCharsets.UTF_8));
+
+    Assert.assertArrayEquals(expected, Sha256Hasher.digest(input));
+  }
+
+  @Test
+  public void digest_Success_Bytes() throws Exception {
+    byte[] input = UUID.randomUUID().toString().getBytes(StandardCharsets.UTF_8);
+    byte[] expected = MessageDigest.getInstance("SHA-256").digest(input);
+
+    Assert.assertArrayEquals(expected, Sha256Hasher.digest(input));
+    // The pooled digest is reset for the next caller
+    Assert.assertArrayEquals(expected, Sha256Hasher.digest(input));
+  }
+
+  @Test
+  public void toHex_Success() throws Exception {
+    byte[] digest = Sha256Hasher.digest("string");
+
+    String hex = Sha256Hasher.toHex(digest);
+    Assert.assertEquals(64, hex.length());
+    Assert.assertEquals(new BigInteger(1, digest), new BigInteger(hex, 16));
+  }
+
+  @Test
+  public void toLegacyHex_MatchesLegacyFormat() throws Exception {
+    // Enough inputs to include digests starting with one or more zeros
+    for (int i = 0; i < 2000; i++) {
+      byte[] digest = Sha256Hasher.digest("key-" + i);
+
+      Assert.assertEquals(legacyHex(digest), Sha256Hasher.toLegacyHex(digest));
+      Assert.assertEquals(Sha256Hasher.hasDistinctLegacyHex(digest),
+          !Sha256Hasher.toLegacyHex(digest).equals(Sha256Hasher.toHex(digest)));
+    }
+  }
+
+  @Test
+  public void toLegacyHex_AllZeros() throws Exception {
+    Assert.assertEquals("00000000000000000000000000000000", Sha256Hasher.toLegacyHex(new byte[32]));
+  }
+
+  /*
+   * The encoding that hashString used before Sha256Hasher was added
+   */
+  private static String legacyHex(byte[] digest) {
+    String hexText = new BigInteger(1, digest).toString(16);
+    while (hexText.length() < 32) {
+      hexText = "0".concat(hexText);
+    }
+    return hexText;
+  }
+}
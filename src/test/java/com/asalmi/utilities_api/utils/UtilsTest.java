@@ -1,5 +1,6 @@
 package com.asalmi.utilities_api.utils;
 
+import org.junit.Assert;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.InjectMocks;
@@ -17,4 +18,11 @@ public class UtilsTest {
   public void hashString_Success() throws Exception {
     utils.hashString("string");
   }
+
+  @Test
+  public void parseHash_Success() throws Exception {
+    String input = "string";
+
+    Assert.assertArrayEquals(utils.digest(input), Utils.parseHash(utils.hashString(input)));
+  }
 }
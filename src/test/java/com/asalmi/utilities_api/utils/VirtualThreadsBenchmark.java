@@ -0,0 +1,99 @@
+package com.asalmi.utilities_api.utils;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Compares running a burst of requests that block on I/O, like a JDBC query or
+ * a SendGrid call, on a platform thread pool the size of Tomcat's default with
+ * running each on its own virtual thread, and the same for requests that hash
+ * an API key, which reuse pooled digests rather than caching them per thread.
+ * The virtual thread runs need Java 21 or later. Not run with the tests, run
+ * its main method on the test classpath after mvn test-compile, and add -prof
+ * gc to compare allocations.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class VirtualThreadsBenchmark {
+
+  // Tomcat's default maximum number of request threads
+  private static final int PLATFORM_THREADS = 200;
+
+  @Param({ "platform", "virtual" })
+  private String threads;
+
+  @Param({ "1000", "5000" })
+  private int requests;
+
+  @Param({ "10" })
+  private long blockingMillis;
+
+  private ExecutorService executor;
+
+  @Setup
+  public void setup() {
+    executor = "virtual".equals(threads)
+        ? VirtualThreads.newPerTaskExecutor("benchmark-")
+        : Executors.newFixedThreadPool(PLATFORM_THREADS);
+  }
+
+  @TearDown
+  public void tearDown() {
+    executor.shutdownNow();
+  }
+
+  @Benchmark
+  public void blockingRequests() throws InterruptedException {
+    CountDownLatch done = new CountDownLatch(requests);
+    for (int i = 0; i < requests; i++) {
+      executor.execute(() -> {
+        try {
+          Thread.sleep(blockingMillis);
+        } catch (InterruptedException ex) {
+          Thread.currentThread().interrupt();
+        }
+        done.countDown();
+      });
+    }
+    done.await();
+  }
+
+  @Benchmark
+  public void hashingRequests() throws InterruptedException {
+    CountDownLatch done = new CountDownLatch(requests);
+    for (int i = 0; i < requests; i++) {
+      String apiKey = "benchmark-api-key-" + i;
+      executor.execute(() -> {
+        Sha256Hasher.toLegacyHex(Sha256Hasher.digest(apiKey));
+        done.countDown();
+      });
+    }
+    done.await();
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    new Runner(new OptionsBuilder().include(VirtualThreadsBenchmark.class.getSimpleName()).build()).run();
+  }
+}
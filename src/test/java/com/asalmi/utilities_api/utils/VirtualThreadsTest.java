@@ -0,0 +1,28 @@
+package com.asalmi.utilities_api.utils;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class VirtualThreadsTest {
+
+  @Test
+  public void isSupported_MatchesRuntime() {
+    Assert.assertEquals(Runtime.version().feature() >= 21, VirtualThreads.isSupported());
+  }
+
+  @Test
+  public void newPerTaskExecutor() throws Exception {
+    if (!VirtualThreads.isSupported()) {
+      Assert.assertThrows(IllegalStateException.class, () -> VirtualThreads.newPerTaskExecutor("test-"));
+      return;
+    }
+
+    ExecutorService executor = VirtualThreads.newPerTaskExecutor("test-");
+    String name = executor.submit(() -> Thread.currentThread().getName()).get(5, TimeUnit.SECONDS);
+    Assert.assertTrue(name.startsWith("test-"));
+    executor.shutdown();
+  }
+}